@@ -1,16 +1,118 @@
 package runners;
 
+import java.util.Iterator;
+
+import org.testng.ITestContext;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
 import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
 
 import io.cucumber.testng.AbstractTestNGCucumberTests;
 import io.cucumber.testng.CucumberOptions;
+import io.cucumber.testng.FeatureWrapper;
+import io.cucumber.testng.PickleWrapper;
+import utilities.Base;
+import utilities.BrowserMatrix;
+import utilities.LoadMode;
+import utilities.RunJournal;
+import utilities.RunSummary;
+import utilities.ScenarioDataSource;
+import utilities.StartupProfiler;
+import utilities.WorkQueueWorker;
 
 @CucumberOptions(monochrome = true, dryRun = false, publish = true, plugin = {
-		"com.aventstack.extentreports.cucumber.adapter.ExtentCucumberAdapter:" })
+		"com.aventstack.extentreports.cucumber.adapter.ExtentCucumberAdapter:", "utilities.ShardReportPlugin",
+		"utilities.RunEventPlugin", "utilities.RunJournal", "utilities.ScenarioTrace" })
 public class TestNGParallelScenarioTesting extends AbstractTestNGCucumberTests {
 	@Override
+	@BeforeClass(alwaysRun = true)
+	public void setUpClass() {
+		StartupProfiler.begin("Runner setup");
+		super.setUpClass();
+		StartupProfiler.end("Runner setup");
+	}
+
+	@Override
+	@Test(groups = "cucumber", description = "Runs Cucumber Scenarios", dataProvider = "scenarioRows")
+	public void runScenario(PickleWrapper pickleWrapper, FeatureWrapper featureWrapper) {
+		StartupProfiler.scenarioStarting();
+
+		if (pickleWrapper instanceof LoadMode.VirtualUserPickleWrapper)
+			LoadMode.runVirtualUser((LoadMode.VirtualUserPickleWrapper) pickleWrapper, this::runScenarioRow);
+		else if (pickleWrapper instanceof WorkQueueWorker.WorkerSlotPickleWrapper)
+			WorkQueueWorker.runSlot((WorkQueueWorker.WorkerSlotPickleWrapper) pickleWrapper, this::runScenarioRow);
+		else if (pickleWrapper instanceof ScenarioDataSource.DataSlotPickleWrapper)
+			ScenarioDataSource.runSlot((ScenarioDataSource.DataSlotPickleWrapper) pickleWrapper, this::runScenarioRow);
+		else {
+			try {
+				runScenarioRow(pickleWrapper, featureWrapper);
+			} finally {
+				RunJournal.record(pickleWrapper);
+			}
+		}
+	}
+
+	private void runScenarioRow(PickleWrapper pickleWrapper, FeatureWrapper featureWrapper) {
+		ScenarioDataSource.checkRow(pickleWrapper);
+
+		if (!(pickleWrapper instanceof BrowserMatrix.BrowserPickleWrapper)) {
+			super.runScenario(pickleWrapper, featureWrapper);
+			return;
+		}
+
+		String strBrowser = ((BrowserMatrix.BrowserPickleWrapper) pickleWrapper).getBrowser();
+		long lngStartMillis = System.currentTimeMillis();
+
+		Base.setBrowserVariableValue(strBrowser);
+
+		try {
+			super.runScenario(pickleWrapper, featureWrapper);
+		} finally {
+			BrowserMatrix.recordTiming(pickleWrapper.getPickle().getUri() + ":" + pickleWrapper.getPickle().getLine()
+					+ " " + pickleWrapper.getPickle().getName(), strBrowser, System.currentTimeMillis() - lngStartMillis);
+			Base.clearExecutionVariables();
+		}
+	}
+
+	/**
+	 * Streams the scenario rows: Cucumber scenarios, expanded per data source row
+	 * and per matrix browser while TestNG pulls them, without the rows a resumed
+	 * run already has in its journal. In load mode the rows are replaced by one row
+	 * per virtual user, and the data provider pool grows to run every user at once.
+	 * With a work queue coordinator the rows are replaced by one worker slot per
+	 * data provider thread, and each slot pulls scenarios from the coordinator.
+	 * Otherwise data source rows are run from one slot per data provider thread,
+	 * so TestNG does not collect them all up front.
+	 */
 	@DataProvider(parallel = true)
-	public Object[][] scenarios() {
-		return super.scenarios();
+	public Iterator<Object[]> scenarioRows(ITestContext testContext) {
+		StartupProfiler.begin("Scenario matrix");
+
+		Iterator<Object[]> iteratorScenarios = RunJournal
+				.expand(BrowserMatrix.expand(ScenarioDataSource.expand(scenarios())));
+
+		if (WorkQueueWorker.isEnabled())
+			iteratorScenarios = WorkQueueWorker.expand(iteratorScenarios,
+					testContext.getSuite().getXmlSuite().getDataProviderThreadCount());
+		else if (LoadMode.isEnabled())
+			iteratorScenarios = LoadMode.expand(iteratorScenarios);
+		else
+			iteratorScenarios = ScenarioDataSource.slots(iteratorScenarios,
+					testContext.getSuite().getXmlSuite().getDataProviderThreadCount());
+
+		if (LoadMode.isEnabled() && !WorkQueueWorker.isEnabled())
+			testContext.getSuite().getXmlSuite().setDataProviderThreadCount(LoadMode.getUsers());
+
+		StartupProfiler.end("Scenario matrix");
+
+		return iteratorScenarios;
+	}
+
+	@Override
+	@AfterClass(alwaysRun = true)
+	public void tearDownClass() {
+		RunSummary.publish();
+		super.tearDownClass();
 	}
 }
\ No newline at end of file
@@ -2,7 +2,7 @@ package runners;
 
 import io.cucumber.testng.CucumberOptions;
 
-@CucumberOptions(glue = { "stepDefinitions" }, features = "src/test/resources/features/", tags = "@Regression")
+@CucumberOptions(glue = { "stepDefinitions" }, features = "src/test/resources/features/", tags = "@Regression and not @Performance")
 public class TestRunner extends TestNGParallelScenarioTesting {
 
 }
\ No newline at end of file
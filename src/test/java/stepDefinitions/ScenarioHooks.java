@@ -5,55 +5,132 @@ import org.openqa.selenium.TakesScreenshot;
 import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.WebDriverException;
 
+import com.aventstack.extentreports.cucumber.adapter.ExtentCucumberAdapter;
+
 import io.cucumber.java.After;
 import io.cucumber.java.AfterStep;
 import io.cucumber.java.Before;
+import io.cucumber.java.BeforeStep;
 import io.cucumber.java.Scenario;
 import net.rcarz.jiraclient.BasicCredentials;
 import net.rcarz.jiraclient.Field;
 import net.rcarz.jiraclient.Issue;
 import net.rcarz.jiraclient.JiraClient;
 import net.rcarz.jiraclient.JiraException;
+import utilities.AccountPool;
 import utilities.Base;
+import utilities.BrowserLogCollector;
+import utilities.BrowserTelemetry;
+import utilities.EnvironmentCircuitBreaker;
+import utilities.HttpStub;
+import utilities.LazyWebDriver;
+import utilities.PageTiming;
+import utilities.ScreenshotStore;
+import utilities.StartupProfiler;
+import utilities.StepRetry;
+import utilities.WebDriverLifecycle;
 
 public class ScenarioHooks {
 	WebDriver webDriver = Base.getWebDriver();
 
 	// ==================================================|Hooks|==================================================
 	@Before
-	public void scenarioBefore() {
-		launchBrowser();
+	public void scenarioBefore(Scenario scenario) {
+		StartupProfiler.scenarioStarted();
+		Base.setScenario(scenario);
+		StepRetry.resetScenarioBudget();
+
+		webDriver = null;
+		WebDriverLifecycle.reapThread();
+		WebDriverLifecycle.scenarioStarted();
+
+		if (!HttpStub.isReplaying())
+			EnvironmentCircuitBreaker.checkEnvironment(Base.dataVariables("url"));
+
+		HttpStub.start(scenario);
+
+		launchBrowser(scenario);
+		BrowserTelemetry.start(scenario);
+		BrowserLogCollector.start(webDriver);
+	}
+
+	@BeforeStep
+	public void scenarioStepBefore() {
+		BrowserLogCollector.stepStarted();
 	}
 
 	@After
-	public void scenarioAfter() {
-		quitBrowser();
+	public void scenarioAfter(Scenario scenario) {
+		try {
+			BrowserTelemetry.finish(scenario);
+			BrowserLogCollector.finish(scenario);
+			PageTiming.attachToScenario(scenario);
+			quitBrowser();
+		} finally {
+			WebDriverLifecycle.reapThread();
+			WebDriverLifecycle.scenarioFinished();
+			HttpStub.stop();
+			AccountPool.release();
+			Base.setScenario(null);
+		}
 	}
 
 	@AfterStep
 	public void scenarioStepAfter(Scenario scenario) {
 		screenshotFailedScenario(scenario);
+		attachBrowserLogsFailedScenario(scenario);
 		raiseJIRATicketFailedScenario(scenario);
 	}
 
 	// ==================================================|Helpers|==================================================
-	private void launchBrowser() {
-		webDriver = Base.initializeWebDriver(Base.configurationVariables("browser"));
+	private void launchBrowser(Scenario scenario) {
+		for (String strTag : Base.configurationVariables("browserSkipTags").split(";")) {
+			if (!strTag.isBlank() && scenario.getSourceTagNames().contains(strTag.trim())) {
+				Base.removeWebDriver();
+				LazyWebDriver.countAvoided();
+
+				return;
+			}
+		}
+
+		if (Base.configurationVariables("browserLazyLaunch").equals("true"))
+			webDriver = Base.initializeLazyWebDriver(Base.executionVariables("browser"));
+		else
+			webDriver = Base.initializeWebDriver(Base.executionVariables("browser"));
 	}
 
 	private void quitBrowser() {
 		if (webDriver != null)
-			webDriver.quit();
+			Base.quitWebDriver(webDriver);
 	}
 
 	public void screenshotFailedScenario(Scenario scenario) {
-		if (webDriver != null && scenario.isFailed()) {
+		if (LazyWebDriver.isStarted(webDriver) && scenario.isFailed()) {
 			try {
 				byte[] byteScreenshot = ((TakesScreenshot) webDriver).getScreenshotAs(OutputType.BYTES);
+				String strFileName = ScreenshotStore.store(byteScreenshot);
 
-				scenario.attach(byteScreenshot, "image/png", "AttachedScreenshots");
+				if (ExtentCucumberAdapter.getCurrentStep() != null) {
+					ExtentCucumberAdapter.addTestStepScreenCaptureFromPath(
+							ScreenshotStore.getReportRelativePath(strFileName), strFileName);
+					scenario.log("AttachedScreenshots: " + strFileName);
+				} else {
+					scenario.attach(byteScreenshot, "image/png", "AttachedScreenshots");
+				}
 			} catch (WebDriverException webDriverException) {
 				webDriverException.printStackTrace();
+			} catch (Exception exception) {
+				exception.printStackTrace();
+			}
+		}
+	}
+
+	public void attachBrowserLogsFailedScenario(Scenario scenario) {
+		if (LazyWebDriver.isStarted(webDriver) && scenario.isFailed()) {
+			try {
+				BrowserLogCollector.attachFailedStep(scenario);
+			} catch (Exception exception) {
+				exception.printStackTrace();
 			}
 		}
 	}
@@ -1,5 +1,7 @@
 package stepDefinitions;
 
+import java.util.List;
+
 import org.testng.Assert;
 
 import io.cucumber.java.en.Given;
@@ -8,6 +10,7 @@ import io.cucumber.java.en.When;
 import pageObjects.Pages;
 import utilities.Base;
 import utilities.Keywords;
+import utilities.PageTiming;
 
 public class StepDefinitions {
 	Keywords keywords = new Keywords(Base.getWebDriver());
@@ -34,14 +37,14 @@ public class StepDefinitions {
 	public void the_user_is_logged_in() throws Throwable {
 		try {
 			goToLoginPage();
-			loginWithCredentials(Base.dataVariables("username"), Base.dataVariables("password"));
+			loginWithCredentials(Base.accountVariables("username"), Base.accountVariables("password"));
 
 			keywords.waitUntilWebElementVisible(pages.getPageGeneral().label_Username);
 			keywords.waitUntilWebElementVisible(pages.getPageGeneral().button_Logout);
 
 			Assert.assertEquals(Base.dataVariables("pageTitleDashboard"), keywords.getPageTitle());
 			Assert.assertTrue(keywords.isWebElementDisplayed(pages.getPageGeneral().label_Username));
-			Assert.assertEquals(Base.dataVariables("user"),
+			Assert.assertEquals(Base.accountVariables("user"),
 					keywords.getWebElementText(pages.getPageGeneral().label_Username));
 			Assert.assertTrue(keywords.isWebElementDisplayed(pages.getPageGeneral().button_Logout));
 		} catch (AssertionError assertionError) {
@@ -124,6 +127,32 @@ public class StepDefinitions {
 		}
 	}
 
+	@Then("^the (.*) page loads within (\\d+) ms$")
+	public void the_page_loads_within_ms(String strPageName, int intBudgetMillis) throws Throwable {
+		the_page_loads_within_ms_at_the_percentile_over_samples(strPageName, intBudgetMillis,
+				Integer.parseInt(Base.configurationVariables("pageBudgetPercentile")),
+				Integer.parseInt(Base.configurationVariables("pageBudgetSamples")));
+	}
+
+	@Then("^the (.*) page loads within (\\d+) ms at the (\\d+)th percentile over (\\d+) samples$")
+	public void the_page_loads_within_ms_at_the_percentile_over_samples(String strPageName, int intBudgetMillis,
+			int intPercentile, int intSamples) throws Throwable {
+		try {
+			List<Long> listLoadMillis = keywords.getPageLoadTimes(keywords.getCurrentPageUrl(), strPageName,
+					intSamples);
+			long lngLoadMillis = PageTiming.getPercentile(listLoadMillis, intPercentile);
+
+			Assert.assertTrue(lngLoadMillis <= intBudgetMillis,
+					"The " + strPageName + " page loaded in " + lngLoadMillis + " ms at the " + intPercentile
+							+ "th percentile, over the budget of " + intBudgetMillis + " ms (samples: "
+							+ listLoadMillis + ")");
+		} catch (AssertionError assertionError) {
+			throw new Exception(assertionError.getMessage());
+		} catch (Exception exception) {
+			throw new Exception(exception.getMessage());
+		}
+	}
+
 	// ==================================================|Reusable_Functions|==================================================
 	private void goToLoginPage() throws Throwable {
 		keywords.navigateToUrl(Base.dataVariables("url"));
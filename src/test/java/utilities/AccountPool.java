@@ -0,0 +1,205 @@
+package utilities;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.configuration.PropertiesConfiguration;
+
+/**
+ * Hands out test accounts to parallel scenarios so no two scenarios are logged
+ * in as the same user. Accounts come from accountPoolSource: a CSV or Excel
+ * file with one account per row (username, password, user columns), or a
+ * properties file with account.field keys (northwind1.username=...). A lease
+ * is a compare-and-set on a free slot; only when every account is leased does
+ * a scenario wait, up to accountPoolWaitSeconds.
+ */
+public class AccountPool {
+	// ==================================================|Settings|==================================================
+	private static final long lngWaitTimeoutMillis = Long.parseLong(Base.configurationVariables("accountPoolWaitSeconds"))
+			* 1000;
+
+	// ==================================================|State|==================================================
+	private static final List<Map<String, String>> listAccounts = load(Base.configurationVariables("accountPoolSource"));
+	private static final AtomicIntegerArray atomicLeased = new AtomicIntegerArray(listAccounts.size());
+	private static final AtomicInteger atomicCursor = new AtomicInteger();
+	private static final AtomicInteger atomicWaiters = new AtomicInteger();
+	private static final AtomicInteger atomicInUse = new AtomicInteger();
+	private static final AtomicInteger atomicPeakInUse = new AtomicInteger();
+	private static final AtomicLong atomicLeases = new AtomicLong();
+	private static final AtomicLong atomicContended = new AtomicLong();
+	private static final AtomicLong atomicWaitMillis = new AtomicLong();
+	private static final AtomicLong atomicMaxWaitMillis = new AtomicLong();
+	private static final Object objLock = new Object();
+	private static final ThreadLocal<Integer> threadLocalLease = new ThreadLocal<>();
+
+	static {
+		RunSummary.register("Account Pool", AccountPool::getSummary);
+	}
+
+	// ==================================================|Leases|==================================================
+	public static boolean isEnabled() {
+		return !listAccounts.isEmpty();
+	}
+
+	/**
+	 * Gets a value of the account leased to the current scenario. Leases an
+	 * account on first use; the lease is held until release.
+	 *
+	 * @param strFieldName - column or field name (username, password, user).
+	 * @return Returns the value, or an empty string if the account has no such
+	 *         field.
+	 */
+	public static String getAccountValue(String strFieldName) throws Exception {
+		Integer intLease = threadLocalLease.get();
+
+		if (intLease == null) {
+			intLease = acquire();
+			threadLocalLease.set(intLease);
+		}
+
+		return listAccounts.get(intLease).getOrDefault(strFieldName, "");
+	}
+
+	/**
+	 * Returns the account leased by the current scenario, if any, to the pool.
+	 */
+	public static void release() {
+		Integer intLease = threadLocalLease.get();
+
+		if (intLease == null)
+			return;
+
+		threadLocalLease.remove();
+		atomicInUse.decrementAndGet();
+		atomicLeased.set(intLease, 0);
+
+		if (atomicWaiters.get() > 0) {
+			synchronized (objLock) {
+				objLock.notifyAll();
+			}
+		}
+	}
+
+	private static int acquire() throws Exception {
+		int intLease = tryAcquire();
+
+		if (intLease < 0) {
+			long lngStartMillis = System.currentTimeMillis();
+			long lngDeadlineMillis = lngStartMillis + lngWaitTimeoutMillis;
+
+			atomicContended.incrementAndGet();
+			atomicWaiters.incrementAndGet();
+
+			try {
+				synchronized (objLock) {
+					while ((intLease = tryAcquire()) < 0) {
+						long lngRemainingMillis = lngDeadlineMillis - System.currentTimeMillis();
+
+						if (lngRemainingMillis <= 0)
+							throw new Exception("No free test account within " + lngWaitTimeoutMillis / 1000 + " s ("
+									+ listAccounts.size() + " accounts in the pool)");
+
+						objLock.wait(lngRemainingMillis);
+					}
+				}
+			} finally {
+				atomicWaiters.decrementAndGet();
+
+				long lngWaitedMillis = System.currentTimeMillis() - lngStartMillis;
+
+				atomicWaitMillis.addAndGet(lngWaitedMillis);
+				atomicMaxWaitMillis.accumulateAndGet(lngWaitedMillis, Math::max);
+			}
+		}
+
+		atomicLeases.incrementAndGet();
+		atomicPeakInUse.accumulateAndGet(atomicInUse.incrementAndGet(), Math::max);
+
+		return intLease;
+	}
+
+	/**
+	 * Claims the first free account after a rotating start slot, so parallel
+	 * scenarios start their search in different places.
+	 */
+	private static int tryAcquire() {
+		int intAccounts = listAccounts.size();
+		int intStart = Math.floorMod(atomicCursor.getAndIncrement(), intAccounts);
+
+		for (int intOffset = 0; intOffset < intAccounts; intOffset++) {
+			int intIndex = (intStart + intOffset) % intAccounts;
+
+			if (atomicLeased.get(intIndex) == 0 && atomicLeased.compareAndSet(intIndex, 0, 1))
+				return intIndex;
+		}
+
+		return -1;
+	}
+
+	// ==================================================|Report|==================================================
+	public static String getSummary() {
+		if (atomicLeases.get() == 0)
+			return null;
+
+		return atomicLeases.get() + " leases of " + listAccounts.size() + " accounts, peak " + atomicPeakInUse.get()
+				+ " in use, " + atomicContended.get() + " waited for a free account, " + atomicWaitMillis.get()
+				+ " ms total wait, " + atomicMaxWaitMillis.get() + " ms max wait";
+	}
+
+	// ==================================================|Load|==================================================
+	private static List<Map<String, String>> load(String strSource) {
+		List<Map<String, String>> listLoaded = new ArrayList<>();
+
+		if (strSource.isBlank())
+			return listLoaded;
+
+		File fileSource = new File(System.getProperty("user.dir"), strSource.trim());
+
+		try {
+			if (fileSource.getName().toLowerCase().endsWith(".properties")) {
+				PropertiesConfiguration propertiesConfiguration = new PropertiesConfiguration();
+				Map<String, Map<String, String>> mapAccounts = new LinkedHashMap<>();
+
+				propertiesConfiguration.setDelimiterParsingDisabled(true);
+				propertiesConfiguration.load(fileSource);
+
+				for (Iterator<String> iterator = propertiesConfiguration.getKeys(); iterator.hasNext();) {
+					String strKey = iterator.next();
+					int intDot = strKey.lastIndexOf('.');
+
+					if (intDot > 0)
+						mapAccounts.computeIfAbsent(strKey.substring(0, intDot), strAccount -> new LinkedHashMap<>())
+								.put(strKey.substring(intDot + 1), propertiesConfiguration.getString(strKey));
+				}
+
+				listLoaded.addAll(mapAccounts.values());
+			} else {
+				try (DataRowReader dataRowReader = DataRowReader.open(fileSource, "")) {
+					String[] strHeader = dataRowReader.hasNext() ? dataRowReader.next() : new String[0];
+
+					while (dataRowReader.hasNext()) {
+						String[] strRow = dataRowReader.next();
+						Map<String, String> mapAccount = new LinkedHashMap<>();
+
+						for (int intIndex = 0; intIndex < strHeader.length; intIndex++)
+							mapAccount.put(strHeader[intIndex].trim(), intIndex < strRow.length ? strRow[intIndex] : "");
+
+						listLoaded.add(mapAccount);
+					}
+				}
+			}
+		} catch (Exception exception) {
+			exception.printStackTrace();
+		}
+
+		return Collections.unmodifiableList(listLoaded);
+	}
+}
\ No newline at end of file
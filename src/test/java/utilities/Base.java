@@ -1,14 +1,19 @@
 package utilities;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import org.apache.commons.configuration.ConfigurationException;
 import org.apache.commons.configuration.PropertiesConfiguration;
 import org.openqa.selenium.Dimension;
 import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
 import org.openqa.selenium.chrome.ChromeDriver;
 import org.openqa.selenium.chrome.ChromeOptions;
 import org.openqa.selenium.firefox.FirefoxDriver;
 import org.openqa.selenium.firefox.FirefoxOptions;
 
+import io.cucumber.java.Scenario;
 import io.github.bonigarcia.wdm.WebDriverManager;
 
 public class Base {
@@ -20,65 +25,154 @@ public class Base {
 	}
 
 	public static WebDriver initializeWebDriver(String strBrowser) {
-		WebDriver webDriver = null;
+		threadLocalWebDriver.set(createWebDriver(strBrowser));
 
-		switch (strBrowser.toLowerCase()) {
-		case "chrome":
-			WebDriverManager.chromedriver().setup();
+		return getWebDriver();
+	}
 
-			ChromeOptions chromeOptions = new ChromeOptions();
+	/**
+	 * Sets a lazy web driver handle for the current thread. The browser is only
+	 * launched when the handle is first used.
+	 */
+	public static WebDriver initializeLazyWebDriver(String strBrowser) {
+		threadLocalWebDriver.set(LazyWebDriver.create(() -> createWebDriver(strBrowser)));
 
-			if (configurationVariables("browserHeadless").equals("true"))
-				chromeOptions.setHeadless(true);
+		return getWebDriver();
+	}
 
-			threadLocalWebDriver.set(new ChromeDriver(chromeOptions));
+	public static void removeWebDriver() {
+		threadLocalWebDriver.remove();
+	}
 
-			break;
-		case "firefox":
-			WebDriverManager.firefoxdriver().setup();
+	public static boolean isWebDriverStarted() {
+		return LazyWebDriver.isStarted(getWebDriver());
+	}
 
-			FirefoxOptions firefoxOptions = new FirefoxOptions();
+	private static WebDriver createWebDriver(String strBrowser) {
+		WebDriver webDriver = TestDaemon.takeWarmBrowser(strBrowser);
+		boolean blnRemote = RemoteNodePool.isEnabled();
 
-			if (configurationVariables("browserHeadless").equals("true"))
-				firefoxOptions.setHeadless(true);
+		if (webDriver != null)
+			return webDriver;
 
-			threadLocalWebDriver.set(new FirefoxDriver(firefoxOptions));
+		ScenarioTrace.begin("browser", "Launch " + strBrowser, blnRemote ? "remote" : null);
 
-			break;
+		try {
+			switch (strBrowser.toLowerCase()) {
+			case "chrome":
+				ChromeOptions chromeOptions = new ChromeOptions();
+
+				if (executionVariables("browserHeadless").equals("true"))
+					chromeOptions.setHeadless(true);
+
+				if (BrowserLogCollector.isEnabled())
+					chromeOptions.setCapability("goog:loggingPrefs", BrowserLogCollector.getLoggingPreferences());
+
+				if (BrowserContextPool.isEnabled()) {
+					webDriver = BrowserContextPool.createWebDriver(chromeOptions);
+				} else if (blnRemote) {
+					webDriver = RemoteNodePool.createWebDriver(chromeOptions);
+				} else {
+					WebDriverManager.chromedriver().setup();
+					webDriver = new ChromeDriver(chromeOptions);
+				}
+
+				break;
+			case "firefox":
+				FirefoxOptions firefoxOptions = new FirefoxOptions();
+
+				if (executionVariables("browserHeadless").equals("true"))
+					firefoxOptions.setHeadless(true);
+
+				if (blnRemote) {
+					webDriver = RemoteNodePool.createWebDriver(firefoxOptions);
+				} else {
+					WebDriverManager.firefoxdriver().setup();
+					webDriver = new FirefoxDriver(firefoxOptions);
+				}
+
+				break;
+			}
+		} catch (WebDriverException webDriverException) {
+			throw webDriverException;
+		} catch (Exception exception) {
+			throw new WebDriverException(exception);
+		} finally {
+			ScenarioTrace.end();
 		}
 
-		webDriver = getWebDriver();
+		LazyWebDriver.countLaunched();
+		WebDriverLifecycle.register(webDriver);
+		ScenarioTrace.instrument(webDriver);
 
-		webDriver.manage().window().setSize(new Dimension(Integer.parseInt(Base.configurationVariables("browserWidth")),
-				Integer.parseInt(Base.configurationVariables("browserHeight"))));
+		webDriver.manage().window().setSize(new Dimension(Integer.parseInt(executionVariables("browserWidth")),
+				Integer.parseInt(executionVariables("browserHeight"))));
 
 		return webDriver;
 	}
 
-	// ==================================================|Properties_File|==================================================
-	private static void setPropertiesVariableValue(String strPropertiesFilePath, String strVariableName,
-			String strVariableValue) {
-		PropertiesConfiguration propertiesConfiguration = null;
-		Boolean savePropertiesFile = true;
+	public static void quitWebDriver(WebDriver webDriver) {
+		WebDriver startedWebDriver = LazyWebDriver.unwrap(webDriver);
 
-		try {
-			propertiesConfiguration = new PropertiesConfiguration(strPropertiesFilePath);
+		if (startedWebDriver != null && TestDaemon.parkWarmBrowser(startedWebDriver)) {
+			if (threadLocalWebDriver.get() == webDriver)
+				threadLocalWebDriver.remove();
 
-			propertiesConfiguration.setProperty(strVariableName, strVariableValue);
-		} catch (ConfigurationException configurationException) {
-			configurationException.printStackTrace();
-			savePropertiesFile = false;
+			return;
 		}
 
 		try {
-			if (savePropertiesFile) {
-				propertiesConfiguration.save();
-			}
-		} catch (ConfigurationException configurationException) {
-			configurationException.printStackTrace();
+			webDriver.quit();
+
+			if (startedWebDriver != null)
+				WebDriverLifecycle.unregister(startedWebDriver);
+		} finally {
+			if (startedWebDriver != null)
+				RemoteNodePool.release(startedWebDriver);
+
+			if (threadLocalWebDriver.get() == webDriver)
+				threadLocalWebDriver.remove();
 		}
 	}
 
+	// ==================================================|Scenario|==================================================
+	protected static ThreadLocal<Scenario> threadLocalScenario = new ThreadLocal<>();
+
+	public static Scenario getScenario() {
+		return threadLocalScenario.get();
+	}
+
+	public static void setScenario(Scenario scenario) {
+		if (scenario == null)
+			threadLocalScenario.remove();
+		else
+			threadLocalScenario.set(scenario);
+	}
+
+	// ==================================================|Execution_Context|==================================================
+	protected static ThreadLocal<Map<String, String>> threadLocalExecutionVariables = ThreadLocal
+			.withInitial(HashMap::new);
+
+	/**
+	 * Overrides a configuration variable (browser, browserHeadless, browserWidth,
+	 * browserHeight, ...) for the current thread only. Nothing is written to
+	 * configuration.properties, so parallel threads can use different browsers.
+	 */
+	public static void setExecutionVariable(String strVariableName, String strVariableValue) {
+		threadLocalExecutionVariables.get().put(strVariableName, strVariableValue);
+	}
+
+	public static void clearExecutionVariables() {
+		threadLocalExecutionVariables.remove();
+	}
+
+	public static String executionVariables(String strVariableName) {
+		String strVariableValue = threadLocalExecutionVariables.get().get(strVariableName);
+
+		return strVariableValue != null ? strVariableValue : configurationVariables(strVariableName);
+	}
+
+	// ==================================================|Properties_File|==================================================
 	private static String getPropertiesVariableValue(String strPropertiesFilePath, String strVariableName) {
 		String strVariableValue = "";
 
@@ -93,9 +187,7 @@ public class Base {
 	}
 
 	public static void setBrowserVariableValue(String strBrowser) {
-		String strPropertiesFilePath = System.getProperty("user.dir") + "/src/test/resources/configuration.properties";
-
-		setPropertiesVariableValue(strPropertiesFilePath, "browser", strBrowser);
+		setExecutionVariable("browser", strBrowser);
 	}
 
 	public static String configurationVariables(String strVariableName) {
@@ -109,4 +201,16 @@ public class Base {
 
 		return getPropertiesVariableValue(strPropertiesFilePath, strVariableName);
 	}
+
+	/**
+	 * Gets a value (username, password, user) of the test account leased to the
+	 * current scenario. Without an account pool the value comes from
+	 * data.properties.
+	 */
+	public static String accountVariables(String strVariableName) throws Exception {
+		if (AccountPool.isEnabled())
+			return AccountPool.getAccountValue(strVariableName);
+
+		return dataVariables(strVariableName);
+	}
 }
\ No newline at end of file
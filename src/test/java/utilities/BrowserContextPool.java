@@ -0,0 +1,582 @@
+package utilities;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.Cookie;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.NoSuchSessionException;
+import org.openqa.selenium.NoSuchWindowException;
+import org.openqa.selenium.Platform;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.chrome.ChromeDriver;
+import org.openqa.selenium.chrome.ChromeOptions;
+import org.openqa.selenium.remote.Command;
+import org.openqa.selenium.remote.CommandExecutor;
+import org.openqa.selenium.remote.CommandInfo;
+import org.openqa.selenium.remote.DriverCommand;
+import org.openqa.selenium.remote.ErrorCodes;
+import org.openqa.selenium.remote.ErrorHandler;
+import org.openqa.selenium.remote.HttpCommandExecutor;
+import org.openqa.selenium.remote.RemoteWebDriver;
+import org.openqa.selenium.remote.Response;
+import org.openqa.selenium.remote.http.HttpMethod;
+
+import com.sun.net.httpserver.HttpServer;
+
+import io.github.bonigarcia.wdm.WebDriverManager;
+
+/**
+ * Runs several scenarios in one Chrome process instead of one process each.
+ * With browserContexts=true every local Chrome browser a scenario asks for is a
+ * new browser context (own cookies, storage and cache, like an incognito
+ * profile) with its own window, opened over the DevTools protocol in a shared
+ * host session. A host takes up to browserContextsPerProcess contexts; the next
+ * scenario launches another host. ChromeDriver runs one command at a time per
+ * session, so the commands of all contexts of a host go through one fair lock
+ * and switch to the context's window first. Remote nodes and Firefox keep one
+ * process per scenario. Console and driver logs belong to the host session and
+ * are shared by its contexts.
+ *
+ * Usage: java -cp [test classpath] utilities.BrowserContextPool [scenarios]
+ * [threads] runs the same workload with one browser process per scenario and
+ * with shared processes, and prints memory per scenario, throughput and
+ * isolation failures of both.
+ */
+public class BrowserContextPool {
+	private static final String STR_EXECUTE_CDP = "executeCdpCommand";
+
+	static final class Host {
+		final RemoteWebDriver webDriver;
+		final CommandExecutor commandExecutor;
+		final String strHomeHandle;
+		final ReentrantLock reentrantLock = new ReentrantLock(true);
+		// Guarded by reentrantLock.
+		String strCurrentHandle;
+		// Guarded by BrowserContextPool.class.
+		int intContexts;
+
+		Host(RemoteWebDriver webDriver) throws Exception {
+			Method method = HttpCommandExecutor.class.getDeclaredMethod("defineCommand", String.class,
+					CommandInfo.class);
+
+			this.webDriver = webDriver;
+			this.commandExecutor = ScenarioTrace.unwrap(webDriver.getCommandExecutor());
+			method.setAccessible(true);
+			method.invoke(commandExecutor, STR_EXECUTE_CDP,
+					new CommandInfo("/session/:sessionId/goog/cdp/execute", HttpMethod.POST));
+			strHomeHandle = webDriver.getWindowHandle();
+			strCurrentHandle = strHomeHandle;
+		}
+
+		/**
+		 * Runs a host command and throws if it failed. Call with the lock held.
+		 */
+		Object execute(String strCommand, Map<String, ?> mapParameters) throws IOException {
+			Response response = commandExecutor.execute(new Command(webDriver.getSessionId(), strCommand, mapParameters));
+
+			return new ErrorHandler(true).throwIfResponseFailed(response, 0).getValue();
+		}
+
+		/**
+		 * Runs a DevTools command from the host's own window, which no context can
+		 * close. Call with the lock held.
+		 */
+		@SuppressWarnings("unchecked")
+		Map<String, Object> executeCdp(String strCommand, Map<String, Object> mapParameters) throws IOException {
+			Map<String, Object> mapCommand = new HashMap<>();
+
+			switchTo(strHomeHandle);
+			mapCommand.put("cmd", strCommand);
+			mapCommand.put("params", mapParameters);
+
+			return (Map<String, Object>) execute(STR_EXECUTE_CDP, mapCommand);
+		}
+
+		void switchTo(String strHandle) throws IOException {
+			if (strHandle.equals(strCurrentHandle))
+				return;
+
+			Map<String, Object> mapParameters = new HashMap<>();
+
+			mapParameters.put("handle", strHandle);
+			mapParameters.put("name", strHandle);
+			// A failed switch leaves the host window unknown; the next command switches again.
+			strCurrentHandle = null;
+			execute(DriverCommand.SWITCH_TO_WINDOW, mapParameters);
+			strCurrentHandle = strHandle;
+		}
+
+		/**
+		 * Gets the window handles of a browser context. ChromeDriver window handles
+		 * are DevTools target ids. Call with the lock held.
+		 */
+		@SuppressWarnings("unchecked")
+		Set<String> getHandles(String strBrowserContextId) throws IOException {
+			Set<String> setTargetIds = new HashSet<>();
+			Set<String> setHandles = new HashSet<>();
+
+			for (Map<String, Object> mapTarget : (List<Map<String, Object>>) executeCdp("Target.getTargets",
+					new HashMap<>()).get("targetInfos")) {
+				if (strBrowserContextId.equals(mapTarget.get("browserContextId")) && "page".equals(mapTarget.get("type")))
+					setTargetIds.add(String.valueOf(mapTarget.get("targetId")));
+			}
+
+			for (Object objHandle : (List<Object>) execute(DriverCommand.GET_WINDOW_HANDLES, new HashMap<>())) {
+				for (String strTargetId : setTargetIds) {
+					if (String.valueOf(objHandle).endsWith(strTargetId))
+						setHandles.add(String.valueOf(objHandle));
+				}
+			}
+
+			return setHandles;
+		}
+	}
+
+	/**
+	 * Command executor of one browser context: runs every command in the host
+	 * session, on the context's window, under the host lock.
+	 */
+	static final class ContextCommandExecutor implements CommandExecutor {
+		final Host host;
+		final String strBrowserContextId;
+		// Guarded by host.reentrantLock.
+		String strCurrentHandle;
+		boolean blnClosed;
+
+		ContextCommandExecutor(Host host, String strBrowserContextId, String strHandle) {
+			this.host = host;
+			this.strBrowserContextId = strBrowserContextId;
+			this.strCurrentHandle = strHandle;
+		}
+
+		@Override
+		public Response execute(Command command) throws IOException {
+			switch (command.getName()) {
+			case DriverCommand.NEW_SESSION:
+				Map<String, Object> mapCapabilities = new HashMap<>(host.webDriver.getCapabilities().asMap());
+
+				// RemoteWebDriver reads the platform of a new session as a string.
+				mapCapabilities.replaceAll(
+						(strName, objValue) -> objValue instanceof Platform ? objValue.toString() : objValue);
+
+				return getResponse(mapCapabilities);
+			case DriverCommand.QUIT:
+				close();
+				return getResponse(null);
+			}
+
+			long lngWaitStartNanos = System.nanoTime();
+
+			host.reentrantLock.lock();
+
+			try {
+				atomicLockWaitNanos.addAndGet(System.nanoTime() - lngWaitStartNanos);
+				atomicCommands.incrementAndGet();
+
+				if (blnClosed)
+					throw new NoSuchSessionException("Browser context " + strBrowserContextId + " was closed");
+
+				switch (command.getName()) {
+				case DriverCommand.SWITCH_TO_WINDOW:
+					Object objHandle = command.getParameters().containsKey("handle")
+							? command.getParameters().get("handle")
+							: command.getParameters().get("name");
+
+					// Windows of other scenarios are not reachable from this one.
+					if (!host.getHandles(strBrowserContextId).contains(String.valueOf(objHandle)))
+						throw new NoSuchWindowException("No window " + objHandle + " in this browser context");
+
+					host.switchTo(String.valueOf(objHandle));
+					strCurrentHandle = String.valueOf(objHandle);
+
+					return getResponse(null);
+				case DriverCommand.GET_WINDOW_HANDLES:
+					return getResponse(new ArrayList<>(host.getHandles(strBrowserContextId)));
+				}
+
+				host.switchTo(strCurrentHandle);
+
+				return host.commandExecutor.execute(command);
+			} finally {
+				host.reentrantLock.unlock();
+			}
+		}
+
+		private void close() {
+			host.reentrantLock.lock();
+
+			try {
+				if (blnClosed)
+					return;
+
+				blnClosed = true;
+				host.executeCdp("Target.disposeBrowserContext", Map.of("browserContextId", strBrowserContextId));
+			} catch (Exception exception) {
+				exception.printStackTrace();
+			} finally {
+				host.reentrantLock.unlock();
+				release(host);
+			}
+		}
+
+		private Response getResponse(Object objValue) {
+			Response response = new Response(host.webDriver.getSessionId());
+
+			response.setStatus(ErrorCodes.SUCCESS);
+			response.setState("success");
+			response.setValue(objValue);
+
+			return response;
+		}
+	}
+
+	// ==================================================|Settings|==================================================
+	private static final boolean blnEnabled = Base.configurationVariables("browserContexts").equals("true");
+	private static final int intContextsPerProcess = Integer
+			.parseInt(Base.configurationVariables("browserContextsPerProcess"));
+
+	// ==================================================|State|==================================================
+	// Guarded by BrowserContextPool.class.
+	private static final Map<String, List<Host>> mapHosts = new HashMap<>();
+	private static int intOpenContexts;
+	private static long lngPeakRssKb;
+	private static int intContextsAtPeak;
+	private static ScheduledExecutorService scheduledExecutorService;
+	private static final AtomicLong atomicContexts = new AtomicLong();
+	private static final AtomicLong atomicHosts = new AtomicLong();
+	private static final AtomicLong atomicCommands = new AtomicLong();
+	private static final AtomicLong atomicLockWaitNanos = new AtomicLong();
+
+	static {
+		RunSummary.register("Browser Contexts", BrowserContextPool::getSummary);
+	}
+
+	// ==================================================|Contexts|==================================================
+	public static boolean isEnabled() {
+		return blnEnabled && !RemoteNodePool.isEnabled();
+	}
+
+	/**
+	 * Checks if a web driver is a browser context of a shared process.
+	 *
+	 * @param webDriver - started web driver (not a lazy handle).
+	 * @return True for a browser context, false otherwise.
+	 */
+	public static boolean isContext(WebDriver webDriver) {
+		return webDriver instanceof RemoteWebDriver && ScenarioTrace
+				.unwrap(((RemoteWebDriver) webDriver).getCommandExecutor()) instanceof ContextCommandExecutor;
+	}
+
+	/**
+	 * Opens a new browser context with one blank window in a Chrome process with a
+	 * free slot, launching the process if none has one. Quitting the web driver
+	 * closes the context and frees the slot; the process stays open for the next
+	 * scenario.
+	 *
+	 * @param chromeOptions - browser options; contexts share processes started
+	 *                      with equal options.
+	 * @return Returns the web driver of the browser context.
+	 */
+	public static WebDriver createWebDriver(ChromeOptions chromeOptions) throws Exception {
+		Host host = acquire(chromeOptions);
+		ContextCommandExecutor contextCommandExecutor;
+
+		host.reentrantLock.lock();
+
+		try {
+			Map<String, Object> mapTarget = new HashMap<>();
+			String strBrowserContextId = String
+					.valueOf(host.executeCdp("Target.createBrowserContext", new HashMap<>()).get("browserContextId"));
+
+			mapTarget.put("url", "about:blank");
+			mapTarget.put("browserContextId", strBrowserContextId);
+			mapTarget.put("newWindow", true);
+			host.executeCdp("Target.createTarget", mapTarget);
+
+			Set<String> setHandles = host.getHandles(strBrowserContextId);
+
+			if (setHandles.isEmpty())
+				throw new WebDriverException("Window of browser context " + strBrowserContextId + " not found");
+
+			contextCommandExecutor = new ContextCommandExecutor(host, strBrowserContextId,
+					setHandles.iterator().next());
+		} catch (Exception exception) {
+			release(host);
+			throw exception;
+		} finally {
+			host.reentrantLock.unlock();
+		}
+
+		atomicContexts.incrementAndGet();
+
+		return new RemoteWebDriver(contextCommandExecutor, chromeOptions);
+	}
+
+	private static synchronized Host acquire(ChromeOptions chromeOptions) {
+		List<Host> listHosts = mapHosts.computeIfAbsent(chromeOptions.asMap().toString(), strKey -> new ArrayList<>());
+		Host host = null;
+
+		for (Host hostFree : listHosts) {
+			if (hostFree.intContexts < intContextsPerProcess) {
+				host = hostFree;
+				break;
+			}
+		}
+
+		if (host == null) {
+			// Launched under the pool lock, so scenarios starting together share the first process.
+			host = launch(chromeOptions);
+			listHosts.add(host);
+		}
+
+		host.intContexts++;
+		intOpenContexts++;
+
+		return host;
+	}
+
+	private static synchronized void release(Host host) {
+		host.intContexts--;
+		intOpenContexts--;
+	}
+
+	private static Host launch(ChromeOptions chromeOptions) {
+		WebDriverManager.chromedriver().setup();
+
+		ChromeDriver chromeDriver = new ChromeDriver(chromeOptions);
+
+		// Owned by the pool, not by the scenario thread; the shutdown hook quits it.
+		WebDriverLifecycle.register(chromeDriver);
+		WebDriverLifecycle.detach(chromeDriver);
+		atomicHosts.incrementAndGet();
+
+		if (scheduledExecutorService == null) {
+			scheduledExecutorService = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "browser-context-sampler");
+
+				thread.setDaemon(true);
+
+				return thread;
+			});
+			scheduledExecutorService.scheduleWithFixedDelay(BrowserContextPool::sample, 1, 1, TimeUnit.SECONDS);
+		}
+
+		try {
+			return new Host(chromeDriver);
+		} catch (Exception exception) {
+			chromeDriver.quit();
+			WebDriverLifecycle.unregister(chromeDriver);
+			throw new WebDriverException("Chrome does not support browser contexts over DevTools", exception);
+		}
+	}
+
+	/**
+	 * Samples the resident memory of every host process tree, to report memory per
+	 * open context at the peak.
+	 */
+	private static void sample() {
+		List<ProcessHandle> listProcesses = new ArrayList<>();
+		long lngRssKb = 0;
+
+		synchronized (BrowserContextPool.class) {
+			for (List<Host> listHosts : mapHosts.values()) {
+				for (Host host : listHosts) {
+					ProcessHandle processHandle = WebDriverLifecycle.getDriverProcess(host.webDriver);
+
+					if (processHandle != null) {
+						listProcesses.add(processHandle);
+						processHandle.descendants().forEach(listProcesses::add);
+					}
+				}
+			}
+		}
+
+		for (ProcessHandle processHandle : listProcesses)
+			lngRssKb += BrowserTelemetry.readRssKb(processHandle.pid());
+
+		synchronized (BrowserContextPool.class) {
+			if (lngRssKb > lngPeakRssKb) {
+				lngPeakRssKb = lngRssKb;
+				intContextsAtPeak = intOpenContexts;
+			}
+		}
+	}
+
+	// ==================================================|Benchmark|==================================================
+	public static void main(String[] args) throws Exception {
+		int intScenarios = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+		int intThreads = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+		HttpServer httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		ChromeOptions chromeOptions = new ChromeOptions();
+
+		httpServer.createContext("/", httpExchange -> {
+			byte[] bytPage = ("<html><head><title>Benchmark</title></head><body><h1>Benchmark</h1>"
+					+ "<input id='text'><button id='submit'>Submit</button></body></html>")
+					.getBytes(StandardCharsets.UTF_8);
+
+			httpExchange.getResponseHeaders().add("Content-Type", "text/html; charset=utf-8");
+			httpExchange.sendResponseHeaders(200, bytPage.length);
+
+			try (OutputStream outputStream = httpExchange.getResponseBody()) {
+				outputStream.write(bytPage);
+			}
+		});
+		httpServer.start();
+		chromeOptions.setHeadless(Base.configurationVariables("browserHeadless").equals("true"));
+
+		String strUrl = "http://127.0.0.1:" + httpServer.getAddress().getPort() + "/";
+
+		try {
+			benchmark("One process per scenario", intScenarios, intThreads, strUrl, () -> {
+				WebDriverManager.chromedriver().setup();
+
+				return new ChromeDriver(chromeOptions);
+			});
+			benchmark("Shared processes, " + intContextsPerProcess + " contexts each", intScenarios, intThreads,
+					strUrl, () -> createWebDriver(chromeOptions));
+		} finally {
+			httpServer.stop(0);
+		}
+
+		System.exit(0);
+	}
+
+	private interface WebDriverFactory {
+		WebDriver create() throws Exception;
+	}
+
+	/**
+	 * Runs the benchmark scenarios on a thread pool and prints wall time,
+	 * throughput and the peak resident memory of all browser processes of this
+	 * JVM divided by the scenarios open at that moment.
+	 */
+	private static void benchmark(String strMode, int intScenarios, int intThreads, String strUrl,
+			WebDriverFactory webDriverFactory) throws Exception {
+		ExecutorService executorService = Executors.newFixedThreadPool(intThreads);
+		ScheduledExecutorService scheduledExecutorServiceSampler = Executors.newSingleThreadScheduledExecutor();
+		AtomicInteger atomicOpen = new AtomicInteger();
+		AtomicInteger atomicIsolationFailures = new AtomicInteger();
+		AtomicInteger atomicFailures = new AtomicInteger();
+		long[] lngPeak = new long[2];
+		List<Future<?>> listFutures = new ArrayList<>();
+		long lngStartMillis = System.currentTimeMillis();
+
+		scheduledExecutorServiceSampler.scheduleWithFixedDelay(() -> {
+			long lngRssKb = ProcessHandle.current().descendants()
+					.mapToLong(processHandle -> BrowserTelemetry.readRssKb(processHandle.pid())).sum();
+
+			synchronized (lngPeak) {
+				if (lngRssKb > lngPeak[0]) {
+					lngPeak[0] = lngRssKb;
+					lngPeak[1] = atomicOpen.get();
+				}
+			}
+		}, 0, 250, TimeUnit.MILLISECONDS);
+
+		for (int intScenario = 0; intScenario < intScenarios; intScenario++) {
+			String strScenario = String.valueOf(intScenario);
+
+			listFutures.add(executorService.submit(() -> {
+				WebDriver webDriver = null;
+
+				try {
+					webDriver = webDriverFactory.create();
+					WebDriverLifecycle.register(webDriver);
+					atomicOpen.incrementAndGet();
+
+					if (!runScenario(webDriver, strUrl, strScenario))
+						atomicIsolationFailures.incrementAndGet();
+				} catch (Exception exception) {
+					exception.printStackTrace();
+					atomicFailures.incrementAndGet();
+				} finally {
+					if (webDriver != null) {
+						webDriver.quit();
+						WebDriverLifecycle.unregister(webDriver);
+						atomicOpen.decrementAndGet();
+					}
+				}
+			}));
+		}
+
+		for (Future<?> future : listFutures)
+			future.get();
+
+		long lngDurationMillis = System.currentTimeMillis() - lngStartMillis;
+
+		executorService.shutdown();
+		scheduledExecutorServiceSampler.shutdownNow();
+
+		System.out.println("[Browser Contexts] " + strMode + ": " + intScenarios + " scenarios on " + intThreads
+				+ " threads in " + lngDurationMillis / 1000.0 + " s ("
+				+ intScenarios * 60000 / Math.max(1, lngDurationMillis) + " per minute), peak RSS " + lngPeak[0] / 1024 + " MB with " + lngPeak[1] + " open ("
+				+ lngPeak[0] / 1024 / Math.max(1, lngPeak[1]) + " MB per scenario), " + atomicIsolationFailures.get()
+				+ " isolation failures, " + atomicFailures.get() + " errors");
+	}
+
+	/**
+	 * Loads pages, sets a cookie and local storage, and checks that no value of
+	 * another scenario is visible.
+	 *
+	 * @return True if the scenario saw only its own cookie and storage.
+	 */
+	private static boolean runScenario(WebDriver webDriver, String strUrl, String strScenario) {
+		boolean blnIsolated = true;
+
+		webDriver.get(strUrl);
+		webDriver.manage().addCookie(new Cookie("scenario", strScenario));
+		((JavascriptExecutor) webDriver).executeScript("window.localStorage.setItem('scenario', arguments[0]);",
+				strScenario);
+
+		for (int intPage = 0; intPage < 5; intPage++) {
+			webDriver.get(strUrl + "?page=" + intPage);
+			webDriver.findElement(By.id("text")).sendKeys("scenario " + strScenario);
+			webDriver.findElement(By.id("submit")).click();
+
+			Cookie cookie = webDriver.manage().getCookieNamed("scenario");
+			Object objStorage = ((JavascriptExecutor) webDriver)
+					.executeScript("return window.localStorage.getItem('scenario');");
+
+			blnIsolated &= cookie != null && strScenario.equals(cookie.getValue()) && strScenario.equals(objStorage)
+					&& webDriver.manage().getCookies().size() == 1;
+		}
+
+		return blnIsolated;
+	}
+
+	// ==================================================|Report|==================================================
+	public static synchronized String getSummary() {
+		if (atomicContexts.get() == 0)
+			return null;
+
+		String strMemory = lngPeakRssKb == 0 ? ""
+				: "; peak browser RSS " + lngPeakRssKb / 1024 + " MB with " + intContextsAtPeak + " contexts open ("
+						+ lngPeakRssKb / 1024 / Math.max(1, intContextsAtPeak) + " MB per context)";
+
+		return atomicContexts.get() + " contexts on " + atomicHosts.get() + " browser processes (up to "
+				+ intContextsPerProcess + " each); lock wait "
+				+ String.format("%.1f", atomicLockWaitNanos.get() / 1e6 / Math.max(1, atomicCommands.get()))
+				+ " ms avg over " + atomicCommands.get() + " commands" + strMemory;
+	}
+}
\ No newline at end of file
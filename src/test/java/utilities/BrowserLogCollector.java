@@ -0,0 +1,236 @@
+package utilities;
+
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
+import java.util.Date;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.logging.LogEntry;
+import org.openqa.selenium.logging.LogType;
+import org.openqa.selenium.logging.LoggingPreferences;
+
+import io.cucumber.java.Scenario;
+
+/**
+ * Collects the browser console and driver logs of every running scenario into a
+ * ring buffer of browserLogBufferSize lines per scenario. The browser keeps its
+ * logs until they are read, so they are only read when a step fails and when
+ * the scenario finishes, on the scenario's own thread: a web driver must not be
+ * called from two threads at once, and passing steps never wait for the logs.
+ * On a failed step the lines from browserLogWindowSeconds before the step
+ * started are attached to the report. Browsers without a log endpoint
+ * (geckodriver) are skipped.
+ *
+ * Browser contexts share one browser session and therefore one log, so reading
+ * it in one scenario also takes the lines of the other contexts. Their
+ * attachments say so.
+ */
+public class BrowserLogCollector {
+	static final class LogLine {
+		final long lngTimestampMillis;
+		final String strType;
+		final Level level;
+		final String strMessage;
+
+		LogLine(String strType, LogEntry logEntry) {
+			this.lngTimestampMillis = logEntry.getTimestamp();
+			this.strType = strType;
+			this.level = logEntry.getLevel();
+			this.strMessage = logEntry.getMessage();
+		}
+	}
+
+	static final class ScenarioLogs {
+		final WebDriver webDriver;
+		final Deque<LogLine> dequeLines = new ArrayDeque<>();
+		long lngStepStartMillis = System.currentTimeMillis();
+		boolean blnDrained;
+		boolean blnUnsupported;
+		boolean blnContext;
+		int intErrors;
+		int intNetworkErrors;
+
+		ScenarioLogs(WebDriver webDriver) {
+			this.webDriver = webDriver;
+		}
+	}
+
+	// ==================================================|Settings|==================================================
+	private static final boolean blnEnabled = Base.configurationVariables("browserLogCollection").equals("true");
+	private static final int intBufferSize = Integer.parseInt(Base.configurationVariables("browserLogBufferSize"));
+	private static final long lngWindowMillis = Long.parseLong(Base.configurationVariables("browserLogWindowSeconds"))
+			* 1000;
+	private static final Level levelDriver = Level.parse(Base.configurationVariables("browserLogDriverLevel"));
+
+	// ==================================================|State|==================================================
+	private static final Map<Thread, ScenarioLogs> mapRunning = new ConcurrentHashMap<>();
+	private static final AtomicLong atomicLines = new AtomicLong();
+	private static final AtomicLong atomicDropped = new AtomicLong();
+	private static final AtomicLong atomicErrors = new AtomicLong();
+	private static final AtomicLong atomicNetworkErrors = new AtomicLong();
+	private static final AtomicLong atomicScenariosWithErrors = new AtomicLong();
+
+	static {
+		RunSummary.register("Browser Logs", BrowserLogCollector::getSummary);
+	}
+
+	// ==================================================|Scenarios|==================================================
+	/**
+	 * Gets the logging preferences to set on the browser options, so the browser
+	 * keeps its console and driver logs.
+	 */
+	public static LoggingPreferences getLoggingPreferences() {
+		LoggingPreferences loggingPreferences = new LoggingPreferences();
+
+		loggingPreferences.enable(LogType.BROWSER, Level.ALL);
+		loggingPreferences.enable(LogType.DRIVER, levelDriver);
+
+		return loggingPreferences;
+	}
+
+	public static boolean isEnabled() {
+		return blnEnabled;
+	}
+
+	/**
+	 * Starts collecting the logs of the scenario's browser. A lazy browser is only
+	 * read once it has been launched.
+	 *
+	 * @param webDriver - web driver of the scenario, or null for none.
+	 */
+	public static void start(WebDriver webDriver) {
+		if (!blnEnabled || webDriver == null)
+			return;
+
+		mapRunning.put(Thread.currentThread(), new ScenarioLogs(webDriver));
+	}
+
+	/**
+	 * Marks the start of a step, for the window attached when it fails. Does not
+	 * call the browser.
+	 */
+	public static void stepStarted() {
+		ScenarioLogs scenarioLogs = mapRunning.get(Thread.currentThread());
+
+		if (scenarioLogs != null)
+			scenarioLogs.lngStepStartMillis = System.currentTimeMillis();
+	}
+
+	/**
+	 * Attaches the log lines around the failed step to the report.
+	 *
+	 * @param scenario - scenario with the failed step.
+	 */
+	public static void attachFailedStep(Scenario scenario) {
+		ScenarioLogs scenarioLogs = mapRunning.get(Thread.currentThread());
+
+		if (scenarioLogs == null)
+			return;
+
+		drain(scenarioLogs);
+
+		StringBuilder stringBuilder = new StringBuilder();
+		SimpleDateFormat simpleDateFormat = new SimpleDateFormat("HH:mm:ss.SSS");
+		long lngFromMillis = scenarioLogs.lngStepStartMillis - lngWindowMillis;
+
+		for (LogLine logLine : scenarioLogs.dequeLines) {
+			if (logLine.lngTimestampMillis >= lngFromMillis)
+				stringBuilder.append(simpleDateFormat.format(new Date(logLine.lngTimestampMillis))).append(" [")
+						.append(logLine.strType).append(' ').append(logLine.level).append("] ")
+						.append(logLine.strMessage).append('\n');
+		}
+
+		if (stringBuilder.length() > 0 && scenarioLogs.blnContext)
+			stringBuilder.insert(0, "Browser context: the browser log is shared with the other contexts of this"
+					+ " browser, so these lines may come from other scenarios and lines of this scenario may have been"
+					+ " read by them.\n\n");
+
+		if (stringBuilder.length() > 0)
+			scenario.attach(stringBuilder.toString().getBytes(StandardCharsets.UTF_8), "text/plain", "BrowserLogs");
+	}
+
+	/**
+	 * Drains the last lines, logs the error counts of the scenario and stops
+	 * collecting. Must be called before the browser is quit.
+	 *
+	 * @param scenario - scenario that is finishing.
+	 */
+	public static void finish(Scenario scenario) {
+		ScenarioLogs scenarioLogs = mapRunning.remove(Thread.currentThread());
+
+		if (scenarioLogs == null)
+			return;
+
+		drain(scenarioLogs);
+
+		if (scenarioLogs.intErrors > 0) {
+			atomicScenariosWithErrors.incrementAndGet();
+			scenario.log("Browser console: " + scenarioLogs.intErrors + " errors, " + scenarioLogs.intNetworkErrors
+					+ " network failures");
+		}
+	}
+
+	// ==================================================|Drain|==================================================
+	private static void drain(ScenarioLogs scenarioLogs) {
+		WebDriver webDriver = LazyWebDriver.unwrap(scenarioLogs.webDriver);
+
+		if (webDriver == null || scenarioLogs.blnUnsupported)
+			return;
+
+		if (!scenarioLogs.blnDrained)
+			scenarioLogs.blnContext = BrowserContextPool.isContext(webDriver);
+
+		scenarioLogs.blnDrained = true;
+
+		for (String strType : new String[] { LogType.BROWSER, LogType.DRIVER }) {
+			try {
+				for (LogEntry logEntry : webDriver.manage().logs().get(strType))
+					add(scenarioLogs, new LogLine(strType, logEntry));
+			} catch (UnsupportedOperationException unsupportedOperationException) {
+				scenarioLogs.blnUnsupported = true;
+			} catch (Exception exception) {
+				// The log endpoint is missing (geckodriver) or the session is closing.
+				if (String.valueOf(exception.getMessage()).contains("unknown command"))
+					scenarioLogs.blnUnsupported = true;
+
+				return;
+			}
+		}
+	}
+
+	private static void add(ScenarioLogs scenarioLogs, LogLine logLine) {
+		if (scenarioLogs.dequeLines.size() >= intBufferSize) {
+			scenarioLogs.dequeLines.removeFirst();
+			atomicDropped.incrementAndGet();
+		}
+
+		scenarioLogs.dequeLines.addLast(logLine);
+		atomicLines.incrementAndGet();
+
+		if (logLine.strType.equals(LogType.BROWSER) && logLine.level.intValue() >= Level.SEVERE.intValue()) {
+			scenarioLogs.intErrors++;
+			atomicErrors.incrementAndGet();
+
+			if (logLine.strMessage.contains("Failed to load resource") || logLine.strMessage.contains("net::ERR_")) {
+				scenarioLogs.intNetworkErrors++;
+				atomicNetworkErrors.incrementAndGet();
+			}
+		}
+	}
+
+	// ==================================================|Report|==================================================
+	public static String getSummary() {
+		if (atomicLines.get() == 0)
+			return null;
+
+		return atomicLines.get() + " log lines collected, " + atomicErrors.get() + " console errors ("
+				+ atomicNetworkErrors.get() + " network failures) in " + atomicScenariosWithErrors.get()
+				+ " scenarios, " + atomicDropped.get() + " lines dropped from full buffers";
+	}
+}
\ No newline at end of file
@@ -0,0 +1,164 @@
+package utilities;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import io.cucumber.testng.Pickle;
+import io.cucumber.testng.PickleWrapper;
+
+/**
+ * Runs every scenario once per browser listed in browserMatrix. The expanded
+ * rows stay in the same parallel data provider, so all browsers share the TestNG
+ * thread pool. The browser is set per thread through the execution variables.
+ */
+public class BrowserMatrix {
+	public static final class BrowserPickleWrapper implements PickleWrapper {
+		private final PickleWrapper pickleWrapper;
+		private final String strBrowser;
+
+		BrowserPickleWrapper(PickleWrapper pickleWrapper, String strBrowser) {
+			this.pickleWrapper = pickleWrapper;
+			this.strBrowser = strBrowser;
+		}
+
+		@Override
+		public Pickle getPickle() {
+			return pickleWrapper.getPickle();
+		}
+
+		public PickleWrapper getPickleWrapper() {
+			return pickleWrapper;
+		}
+
+		public String getBrowser() {
+			return strBrowser;
+		}
+
+		@Override
+		public String toString() {
+			return pickleWrapper.toString() + " [" + strBrowser + "]";
+		}
+	}
+
+	// ==================================================|Timings|==================================================
+	private static final Map<String, Map<String, Long>> mapScenarioTimings = new ConcurrentSkipListMap<>();
+
+	static {
+		RunSummary.register("Browser Matrix", BrowserMatrix::getSummary);
+	}
+
+	// ==================================================|Expand|==================================================
+	public static List<String> getBrowsers() {
+		List<String> listBrowsers = new ArrayList<>();
+
+		for (String strBrowser : Base.configurationVariables("browserMatrix").split(";")) {
+			if (!strBrowser.isBlank())
+				listBrowsers.add(strBrowser.trim());
+		}
+
+		return listBrowsers;
+	}
+
+	/**
+	 * Repeats every scenario row once per matrix browser, scenario by scenario, so
+	 * the browsers of one scenario run at about the same time. Returns the rows
+	 * unchanged when the matrix is empty.
+	 *
+	 * @param iteratorScenarios - rows of [PickleWrapper, FeatureWrapper].
+	 * @return Returns an iterator over the expanded rows.
+	 */
+	public static Iterator<Object[]> expand(Iterator<Object[]> iteratorScenarios) {
+		List<String> listBrowsers = getBrowsers();
+
+		if (listBrowsers.isEmpty())
+			return iteratorScenarios;
+
+		return new Iterator<Object[]>() {
+			private Object[] objScenario;
+			private int intBrowserIndex = listBrowsers.size();
+
+			@Override
+			public boolean hasNext() {
+				return intBrowserIndex < listBrowsers.size() || iteratorScenarios.hasNext();
+			}
+
+			@Override
+			public Object[] next() {
+				if (intBrowserIndex >= listBrowsers.size()) {
+					objScenario = iteratorScenarios.next();
+					intBrowserIndex = 0;
+				}
+
+				return new Object[] {
+						new BrowserPickleWrapper((PickleWrapper) objScenario[0], listBrowsers.get(intBrowserIndex++)),
+						objScenario[1] };
+			}
+		};
+	}
+
+	public static void recordTiming(String strScenario, String strBrowser, long lngDurationMillis) {
+		mapScenarioTimings.computeIfAbsent(strScenario, strKey -> new ConcurrentHashMap<>()).put(strBrowser,
+				lngDurationMillis);
+	}
+
+	// ==================================================|Report|==================================================
+	public static String getSummary() {
+		if (mapScenarioTimings.isEmpty())
+			return null;
+
+		List<String> listBrowsers = getBrowsers();
+		Map<String, long[]> mapTotals = new TreeMap<>();
+		StringBuilder stringBuilder = new StringBuilder("Scenario");
+
+		for (String strBrowser : listBrowsers)
+			stringBuilder.append(',').append(strBrowser).append(" (ms)");
+
+		stringBuilder.append('\n');
+
+		for (Map.Entry<String, Map<String, Long>> entry : mapScenarioTimings.entrySet()) {
+			stringBuilder.append('"').append(entry.getKey().replace("\"", "'")).append('"');
+
+			for (String strBrowser : listBrowsers) {
+				Long lngDurationMillis = entry.getValue().get(strBrowser);
+
+				stringBuilder.append(',').append(lngDurationMillis != null ? lngDurationMillis : "");
+
+				if (lngDurationMillis != null) {
+					long[] lngTotals = mapTotals.computeIfAbsent(strBrowser, strKey -> new long[2]);
+
+					lngTotals[0]++;
+					lngTotals[1] += lngDurationMillis;
+				}
+			}
+
+			stringBuilder.append('\n');
+		}
+
+		File fileReport = new File(Base.configurationVariables("browserMatrixReportFile"));
+
+		try {
+			if (fileReport.getParentFile() != null)
+				fileReport.getParentFile().mkdirs();
+
+			Files.write(fileReport.toPath(), stringBuilder.toString().getBytes(StandardCharsets.UTF_8));
+		} catch (Exception exception) {
+			exception.printStackTrace();
+		}
+
+		StringBuilder summaryBuilder = new StringBuilder();
+
+		for (Map.Entry<String, long[]> entry : mapTotals.entrySet())
+			summaryBuilder.append(entry.getKey()).append(": ").append(entry.getValue()[0]).append(" scenarios, avg ")
+					.append(entry.getValue()[1] / entry.getValue()[0]).append(" ms; ");
+
+		return summaryBuilder.append("(").append(fileReport.getPath()).append(")").toString();
+	}
+}
\ No newline at end of file
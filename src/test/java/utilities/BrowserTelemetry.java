@@ -0,0 +1,263 @@
+package utilities;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import io.cucumber.java.Scenario;
+
+/**
+ * Samples CPU time and resident memory of the driver and browser process tree
+ * of every running scenario from /proc (Linux only). One daemon thread reads
+ * the process files every browserTelemetryIntervalMillis. Each scenario gets
+ * its peak and average values in the report, and the heaviest scenarios are
+ * listed in the run summary. CPU counts from the scenario start: a process that
+ * was already running (a reused warm browser) is measured from its first
+ * reading in the scenario.
+ */
+public class BrowserTelemetry {
+	private static final int INT_CLOCK_TICKS_PER_SECOND = 100;
+	private static final int INT_TOP_SCENARIOS = 3;
+
+	static final class ScenarioUsage {
+		final String strScenario;
+		final Thread thread;
+		final long lngStartMillis = System.currentTimeMillis();
+		final Map<Long, Long> mapCpuTicks = new HashMap<>();
+		final Map<Long, Long> mapBaseTicks = new HashMap<>();
+		long lngPeakRssKb;
+		long lngRssSumKb;
+		int intSamples;
+		long lngDurationMillis;
+
+		ScenarioUsage(String strScenario, Thread thread) {
+			this.strScenario = strScenario;
+			this.thread = thread;
+		}
+
+		synchronized long getCpuMillis() {
+			long lngTicks = 0;
+
+			for (Map.Entry<Long, Long> entry : mapCpuTicks.entrySet())
+				lngTicks += entry.getValue() - mapBaseTicks.getOrDefault(entry.getKey(), 0L);
+
+			return lngTicks * 1000 / INT_CLOCK_TICKS_PER_SECOND;
+		}
+
+		synchronized long getAverageRssKb() {
+			return intSamples == 0 ? 0 : lngRssSumKb / intSamples;
+		}
+	}
+
+	// ==================================================|Settings|==================================================
+	private static final boolean blnEnabled = Base.configurationVariables("browserTelemetry").equals("true")
+			&& new File("/proc/self/stat").exists();
+	private static final long lngIntervalMillis = Long
+			.parseLong(Base.configurationVariables("browserTelemetryIntervalMillis"));
+
+	// ==================================================|State|==================================================
+	private static final Map<Thread, ScenarioUsage> mapRunning = new ConcurrentHashMap<>();
+	private static final List<ScenarioUsage> listFinished = new CopyOnWriteArrayList<>();
+	private static final AtomicLong atomicPeakTotalRssKb = new AtomicLong();
+	private static ScheduledExecutorService scheduledExecutorService;
+
+	static {
+		RunSummary.register("Browser Telemetry", BrowserTelemetry::getSummary);
+	}
+
+	// ==================================================|Scenarios|==================================================
+	/**
+	 * Starts sampling the browser of the current thread for the scenario.
+	 *
+	 * @param scenario - scenario that is starting.
+	 */
+	public static void start(Scenario scenario) {
+		if (!blnEnabled)
+			return;
+
+		synchronized (BrowserTelemetry.class) {
+			if (scheduledExecutorService == null) {
+				scheduledExecutorService = Executors.newSingleThreadScheduledExecutor(runnable -> {
+					Thread thread = new Thread(runnable, "browser-telemetry");
+
+					thread.setDaemon(true);
+
+					return thread;
+				});
+				scheduledExecutorService.scheduleAtFixedRate(BrowserTelemetry::sampleAll, lngIntervalMillis,
+						lngIntervalMillis, TimeUnit.MILLISECONDS);
+			}
+		}
+
+		ScenarioUsage scenarioUsage = new ScenarioUsage(scenario.getName(), Thread.currentThread());
+
+		mapRunning.put(Thread.currentThread(), scenarioUsage);
+		// Takes the CPU baseline of a browser that is already running.
+		sample(scenarioUsage);
+	}
+
+	/**
+	 * Takes a last sample and logs the peak and average values to the scenario.
+	 * Must be called before the browser is quit.
+	 *
+	 * @param scenario - scenario that is finishing.
+	 */
+	public static void finish(Scenario scenario) {
+		ScenarioUsage scenarioUsage = mapRunning.remove(Thread.currentThread());
+
+		if (scenarioUsage == null)
+			return;
+
+		sample(scenarioUsage);
+		scenarioUsage.lngDurationMillis = System.currentTimeMillis() - scenarioUsage.lngStartMillis;
+
+		if (scenarioUsage.intSamples == 0)
+			return;
+
+		listFinished.add(scenarioUsage);
+		scenario.log("Browser resources: peak RSS " + scenarioUsage.lngPeakRssKb / 1024 + " MB, average RSS "
+				+ scenarioUsage.getAverageRssKb() / 1024 + " MB, CPU " + scenarioUsage.getCpuMillis() + " ms ("
+				+ scenarioUsage.getCpuMillis() * 100 / Math.max(1, scenarioUsage.lngDurationMillis)
+				+ "% of one core) over " + scenarioUsage.intSamples + " samples");
+	}
+
+	// ==================================================|Sampling|==================================================
+	private static void sampleAll() {
+		try {
+			long lngTotalRssKb = 0;
+
+			for (ScenarioUsage scenarioUsage : mapRunning.values())
+				lngTotalRssKb += sample(scenarioUsage);
+
+			atomicPeakTotalRssKb.accumulateAndGet(lngTotalRssKb, Math::max);
+		} catch (Exception exception) {
+			exception.printStackTrace();
+		}
+	}
+
+	/**
+	 * Reads the process tree of the scenario's driver once. CPU ticks are kept per
+	 * process, so time of browser processes that already exited still counts. The
+	 * first reading of a process that started before the scenario is its baseline.
+	 *
+	 * @return Returns the resident memory of the tree in kB.
+	 */
+	private static long sample(ScenarioUsage scenarioUsage) {
+		ProcessHandle processHandle = WebDriverLifecycle.getDriverProcess(scenarioUsage.thread);
+
+		if (processHandle == null)
+			return 0;
+
+		List<ProcessHandle> listProcesses = new ArrayList<>();
+		long lngRssKb = 0;
+
+		listProcesses.add(processHandle);
+		processHandle.descendants().forEach(listProcesses::add);
+
+		synchronized (scenarioUsage) {
+			for (ProcessHandle processHandleTree : listProcesses) {
+				long lngPid = processHandleTree.pid();
+				long lngCpuTicks = readCpuTicks(lngPid);
+
+				if (lngCpuTicks >= 0) {
+					scenarioUsage.mapBaseTicks.computeIfAbsent(lngPid,
+							lngKey -> isStartedBefore(processHandleTree, scenarioUsage.lngStartMillis) ? lngCpuTicks : 0L);
+					scenarioUsage.mapCpuTicks.merge(lngPid, lngCpuTicks, Math::max);
+				}
+
+				lngRssKb += readRssKb(lngPid);
+			}
+
+			scenarioUsage.lngPeakRssKb = Math.max(scenarioUsage.lngPeakRssKb, lngRssKb);
+			scenarioUsage.lngRssSumKb += lngRssKb;
+			scenarioUsage.intSamples++;
+		}
+
+		return lngRssKb;
+	}
+
+	/**
+	 * Checks if the process started before the given time. A process without a
+	 * known start time counts as started before, so its earlier CPU time is not
+	 * charged to the scenario.
+	 */
+	private static boolean isStartedBefore(ProcessHandle processHandle, long lngMillis) {
+		return processHandle.info().startInstant().map(instant -> instant.toEpochMilli() < lngMillis).orElse(true);
+	}
+
+	/**
+	 * Reads user plus system time from /proc/pid/stat. The process name may contain
+	 * spaces, so fields are counted from the closing parenthesis.
+	 */
+	private static long readCpuTicks(long lngPid) {
+		try {
+			String strStat = new String(Files.readAllBytes(Paths.get("/proc", String.valueOf(lngPid), "stat")),
+					StandardCharsets.US_ASCII);
+			String[] strFields = strStat.substring(strStat.lastIndexOf(')') + 2).split(" ");
+
+			return Long.parseLong(strFields[11]) + Long.parseLong(strFields[12]);
+		} catch (Exception exception) {
+			return -1;
+		}
+	}
+
+	static long readRssKb(long lngPid) {
+		try {
+			for (String strLine : Files.readAllLines(Paths.get("/proc", String.valueOf(lngPid), "status"),
+					StandardCharsets.US_ASCII)) {
+				if (strLine.startsWith("VmRSS:"))
+					return Long.parseLong(strLine.replaceAll("[^0-9]", ""));
+			}
+		} catch (Exception exception) {
+			// The process exited between listing and reading.
+		}
+
+		return 0;
+	}
+
+	// ==================================================|Report|==================================================
+	public static String getSummary() {
+		if (listFinished.isEmpty())
+			return null;
+
+		String strTopMemory = listFinished.stream()
+				.sorted(Comparator.comparingLong((ScenarioUsage scenarioUsage) -> scenarioUsage.lngPeakRssKb).reversed())
+				.limit(INT_TOP_SCENARIOS)
+				.map(scenarioUsage -> scenarioUsage.strScenario + " " + scenarioUsage.lngPeakRssKb / 1024 + " MB")
+				.collect(Collectors.joining(", "));
+		String strTopCpu = listFinished.stream()
+				.sorted(Comparator.comparingLong(ScenarioUsage::getCpuMillis).reversed()).limit(INT_TOP_SCENARIOS)
+				.map(scenarioUsage -> scenarioUsage.strScenario + " " + scenarioUsage.getCpuMillis() + " ms")
+				.collect(Collectors.joining(", "));
+
+		return listFinished.size() + " scenarios sampled; peak browser RSS across parallel scenarios "
+				+ atomicPeakTotalRssKb.get() / 1024 + " MB of " + readMemTotalKb() / 1024
+				+ " MB host memory; top peak RSS: " + strTopMemory + "; top CPU: " + strTopCpu;
+	}
+
+	private static long readMemTotalKb() {
+		try {
+			for (String strLine : Files.readAllLines(Paths.get("/proc/meminfo"), StandardCharsets.US_ASCII)) {
+				if (strLine.startsWith("MemTotal:"))
+					return Long.parseLong(strLine.replaceAll("[^0-9]", ""));
+			}
+		} catch (Exception exception) {
+			exception.printStackTrace();
+		}
+
+		return 0;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,264 @@
+package utilities;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler.SheetContentsHandler;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+
+/**
+ * Reads the rows of a CSV file or an Excel (.xlsx) sheet one at a time. Excel
+ * sheets are parsed with the POI streaming (SAX) reader on a background thread
+ * that hands rows over through a small bounded queue, so only a few rows are in
+ * memory whatever the size of the sheet.
+ */
+public abstract class DataRowReader implements Iterator<String[]>, Closeable {
+	private String[] strNextRow;
+	private boolean blnFinished;
+
+	/**
+	 * Opens a reader for the file. Files ending in .csv are read as CSV, anything
+	 * else as an Excel workbook.
+	 *
+	 * @param fileData     - CSV or Excel file.
+	 * @param strSheetName - Excel sheet name, or empty for the first sheet.
+	 * @return Returns the row reader; the first row is the header.
+	 */
+	public static DataRowReader open(File fileData, String strSheetName) throws Exception {
+		if (fileData.getName().toLowerCase().endsWith(".csv"))
+			return new CsvRowReader(fileData);
+
+		return new ExcelRowReader(fileData, strSheetName);
+	}
+
+	protected abstract String[] readRow() throws Exception;
+
+	@Override
+	public abstract void close();
+
+	@Override
+	public boolean hasNext() {
+		if (strNextRow == null && !blnFinished) {
+			try {
+				strNextRow = readRow();
+			} catch (Exception exception) {
+				throw new IllegalStateException(exception);
+			}
+
+			blnFinished = strNextRow == null;
+		}
+
+		return strNextRow != null;
+	}
+
+	@Override
+	public String[] next() {
+		if (!hasNext())
+			throw new NoSuchElementException();
+
+		String[] strRow = strNextRow;
+
+		strNextRow = null;
+
+		return strRow;
+	}
+
+	// ==================================================|CSV|==================================================
+	static final class CsvRowReader extends DataRowReader {
+		private final BufferedReader bufferedReader;
+
+		CsvRowReader(File fileData) throws Exception {
+			bufferedReader = Files.newBufferedReader(fileData.toPath(), StandardCharsets.UTF_8);
+		}
+
+		/**
+		 * Reads one record. Quoted values may contain commas, doubled quotes and line
+		 * breaks.
+		 */
+		@Override
+		protected String[] readRow() throws Exception {
+			String strLine = bufferedReader.readLine();
+
+			if (strLine == null)
+				return null;
+
+			List<String> listValues = new ArrayList<>();
+			StringBuilder stringBuilder = new StringBuilder();
+			boolean blnQuoted = false;
+
+			while (true) {
+				for (int intIndex = 0; intIndex < strLine.length(); intIndex++) {
+					char chrCurrent = strLine.charAt(intIndex);
+
+					if (blnQuoted) {
+						if (chrCurrent == '"' && intIndex + 1 < strLine.length() && strLine.charAt(intIndex + 1) == '"') {
+							stringBuilder.append('"');
+							intIndex++;
+						} else if (chrCurrent == '"') {
+							blnQuoted = false;
+						} else {
+							stringBuilder.append(chrCurrent);
+						}
+					} else if (chrCurrent == '"') {
+						blnQuoted = true;
+					} else if (chrCurrent == ',') {
+						listValues.add(stringBuilder.toString());
+						stringBuilder.setLength(0);
+					} else {
+						stringBuilder.append(chrCurrent);
+					}
+				}
+
+				if (!blnQuoted)
+					break;
+
+				strLine = bufferedReader.readLine();
+
+				if (strLine == null)
+					break;
+
+				stringBuilder.append('\n');
+			}
+
+			listValues.add(stringBuilder.toString());
+
+			return listValues.toArray(new String[0]);
+		}
+
+		@Override
+		public void close() {
+			try {
+				bufferedReader.close();
+			} catch (Exception exception) {
+				exception.printStackTrace();
+			}
+		}
+	}
+
+	// ==================================================|Excel|==================================================
+	static final class ExcelRowReader extends DataRowReader {
+		private static final String[] STR_END = new String[0];
+
+		private final BlockingQueue<Object> blockingQueue = new ArrayBlockingQueue<>(256);
+		private final Thread threadParser;
+		private volatile boolean blnClosed;
+
+		ExcelRowReader(File fileData, String strSheetName) {
+			threadParser = new Thread(() -> parse(fileData, strSheetName), "excel-row-reader");
+			threadParser.setDaemon(true);
+			threadParser.start();
+		}
+
+		@Override
+		protected String[] readRow() throws Exception {
+			Object objRow = blockingQueue.take();
+
+			if (objRow instanceof Exception)
+				throw (Exception) objRow;
+
+			return objRow == STR_END ? null : (String[]) objRow;
+		}
+
+		@Override
+		public void close() {
+			blnClosed = true;
+			threadParser.interrupt();
+		}
+
+		private void parse(File fileData, String strSheetName) {
+			try (OPCPackage opcPackage = OPCPackage.open(fileData, PackageAccess.READ)) {
+				XSSFReader xssfReader = new XSSFReader(opcPackage);
+				XSSFReader.SheetIterator sheetIterator = (XSSFReader.SheetIterator) xssfReader.getSheetsData();
+				XMLReader xmlReader = XMLHelper.newXMLReader();
+
+				xmlReader.setContentHandler(new XSSFSheetXMLHandler(xssfReader.getStylesTable(),
+						new ReadOnlySharedStringsTable(opcPackage), new RowHandler(), new DataFormatter(), false));
+
+				while (sheetIterator.hasNext()) {
+					try (InputStream inputStream = sheetIterator.next()) {
+						if (strSheetName.isEmpty() || sheetIterator.getSheetName().equals(strSheetName)) {
+							xmlReader.parse(new InputSource(inputStream));
+							put(STR_END);
+
+							return;
+						}
+					}
+				}
+
+				throw new Exception("Sheet " + strSheetName + " not found in " + fileData);
+			} catch (InterruptedException interruptedException) {
+				// Closed by the consumer.
+			} catch (Exception exception) {
+				if (!blnClosed)
+					putQuietly(exception);
+			}
+		}
+
+		private void put(Object objRow) throws InterruptedException {
+			blockingQueue.put(objRow);
+		}
+
+		private void putQuietly(Object objRow) {
+			try {
+				blockingQueue.put(objRow);
+			} catch (InterruptedException interruptedException) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		/**
+		 * Collects the cells of a row in column order, leaving gaps for empty cells.
+		 */
+		private final class RowHandler implements SheetContentsHandler {
+			private final List<String> listCells = new ArrayList<>();
+
+			@Override
+			public void startRow(int intRowNumber) {
+				listCells.clear();
+			}
+
+			@Override
+			public void endRow(int intRowNumber) {
+				if (blnClosed)
+					throw new IllegalStateException("Reader closed");
+
+				try {
+					put(listCells.toArray(new String[0]));
+				} catch (InterruptedException interruptedException) {
+					throw new IllegalStateException(interruptedException);
+				}
+			}
+
+			@Override
+			public void cell(String strCellReference, String strFormattedValue, XSSFComment xssfComment) {
+				int intColumn = strCellReference == null ? listCells.size()
+						: new CellReference(strCellReference).getCol();
+
+				while (listCells.size() < intColumn)
+					listCells.add("");
+
+				listCells.add(strFormattedValue);
+			}
+		}
+	}
+}
\ No newline at end of file
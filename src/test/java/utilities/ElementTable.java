@@ -0,0 +1,251 @@
+package utilities;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+/**
+ * Rows of a dropdown, list, table or grid read with one script execution and
+ * kept column by column. SELECT elements give text, value, selected and
+ * disabled columns; tables and role="grid" elements give one column per header
+ * cell (or 1, 2, ... without headers); any other element gives a text column
+ * with one row per child. Large grids can be read in chunks of rows.
+ */
+public class ElementTable {
+	private static final String STR_SCRIPT = "var root = arguments[0], intStart = arguments[1], intCount = arguments[2];"
+			+ "var strTag = root.tagName.toLowerCase(), strRole = (root.getAttribute('role') || '').toLowerCase();"
+			+ "var listColumns = [], listRows = [], cells;"
+			+ "function text(element) { return (element.innerText === undefined ? element.textContent : element.innerText).trim(); }"
+			+ "if (strTag === 'select') {"
+			+ "  listColumns = ['text', 'value', 'selected', 'disabled'];"
+			+ "  listRows = Array.prototype.slice.call(root.options);"
+			+ "  cells = function(option) { return [option.text.trim(), option.value, String(option.selected), String(option.disabled)]; };"
+			+ "} else if (strTag === 'table' || strRole === 'grid' || strRole === 'treegrid' || strRole === 'table') {"
+			+ "  var blnTable = strTag === 'table';"
+			+ "  var strCells = blnTable ? 'th, td' : '[role=columnheader], [role=rowheader], [role=gridcell], [role=cell]';"
+			+ "  var listAllRows = Array.prototype.slice.call(blnTable ? root.rows : root.querySelectorAll('[role=row]'));"
+			+ "  var headerRow = null;"
+			+ "  if (blnTable && root.tHead && root.tHead.rows.length) headerRow = root.tHead.rows[root.tHead.rows.length - 1];"
+			+ "  else if (listAllRows.length && listAllRows[0].querySelectorAll(blnTable ? 'td' : '[role=gridcell], [role=cell]').length === 0) headerRow = listAllRows[0];"
+			+ "  cells = function(row) { return Array.prototype.map.call(row.querySelectorAll(strCells), text); };"
+			+ "  if (headerRow) listColumns = cells(headerRow);"
+			+ "  listRows = listAllRows.filter(function(row) { return row !== headerRow && !(blnTable && row.parentNode === root.tHead); });"
+			+ "} else {"
+			+ "  listColumns = ['text'];"
+			+ "  listRows = Array.prototype.slice.call(root.children);"
+			+ "  cells = function(element) { return [text(element)]; };"
+			+ "}"
+			+ "var listData = [], listChunk = listRows.slice(intStart, intStart + intCount);"
+			+ "for (var intRow = 0; intRow < listChunk.length; intRow++) {"
+			+ "  var listCells = cells(listChunk[intRow]);"
+			+ "  for (var intColumn = 0; intColumn < listCells.length; intColumn++) {"
+			+ "    while (listData.length <= intColumn) listData.push(new Array(listChunk.length).fill(''));"
+			+ "    listData[intColumn][intRow] = listCells[intColumn];"
+			+ "  }"
+			+ "}"
+			+ "for (var intColumn = listColumns.length; intColumn < listData.length; intColumn++) listColumns.push(String(intColumn + 1));"
+			+ "while (listData.length < listColumns.length) listData.push(new Array(listChunk.length).fill(''));"
+			+ "return JSON.stringify({ columns: listColumns, start: intStart, total: listRows.length, rows: listChunk.length, data: listData });";
+
+	private final List<String> listColumns;
+	private final String[][] strColumnValues;
+	private final int intStartRow;
+	private final int intRowCount;
+	private final int intTotalRows;
+
+	private ElementTable(List<String> listColumns, String[][] strColumnValues, int intStartRow, int intRowCount,
+			int intTotalRows) {
+		this.listColumns = listColumns;
+		this.strColumnValues = strColumnValues;
+		this.intStartRow = intStartRow;
+		this.intRowCount = intRowCount;
+		this.intTotalRows = intTotalRows;
+	}
+
+	// ==================================================|Read|==================================================
+	/**
+	 * Reads rows of the element with one script execution.
+	 *
+	 * @param webDriver   - web driver showing the element.
+	 * @param webElement  - SELECT, TABLE, role="grid" or list element.
+	 * @param intStartRow - first row to read, from 0 (header rows excluded).
+	 * @param intMaxRows  - maximum number of rows to read.
+	 * @return Returns the rows read.
+	 */
+	public static ElementTable read(WebDriver webDriver, WebElement webElement, int intStartRow, int intMaxRows) {
+		JsonObject jsonTable = JsonParser.parseString((String) ((JavascriptExecutor) webDriver)
+				.executeScript(STR_SCRIPT, webElement, intStartRow, intMaxRows)).getAsJsonObject();
+		JsonArray jsonColumns = jsonTable.getAsJsonArray("columns");
+		JsonArray jsonData = jsonTable.getAsJsonArray("data");
+		int intRows = jsonTable.get("rows").getAsInt();
+		List<String> listColumnNames = new ArrayList<>();
+		String[][] strValues = new String[jsonColumns.size()][intRows];
+
+		for (int intColumn = 0; intColumn < jsonColumns.size(); intColumn++) {
+			JsonArray jsonColumn = jsonData.get(intColumn).getAsJsonArray();
+
+			listColumnNames.add(jsonColumns.get(intColumn).getAsString());
+
+			for (int intRow = 0; intRow < intRows; intRow++)
+				strValues[intColumn][intRow] = jsonColumn.get(intRow).getAsString();
+		}
+
+		return new ElementTable(Collections.unmodifiableList(listColumnNames), strValues, intStartRow, intRows,
+				jsonTable.get("total").getAsInt());
+	}
+
+	/**
+	 * Reads the rows of the element chunk by chunk, one script execution per chunk,
+	 * as the iterator is consumed.
+	 *
+	 * @param webDriver    - web driver showing the element.
+	 * @param webElement   - SELECT, TABLE, role="grid" or list element.
+	 * @param intChunkRows - rows per chunk.
+	 * @return Returns an iterator over the chunks.
+	 */
+	public static Iterator<ElementTable> stream(WebDriver webDriver, WebElement webElement, int intChunkRows) {
+		return new Iterator<ElementTable>() {
+			private int intNextRow;
+			private int intTotalRows = -1;
+
+			@Override
+			public boolean hasNext() {
+				return intTotalRows < 0 || intNextRow < intTotalRows;
+			}
+
+			@Override
+			public ElementTable next() {
+				if (!hasNext())
+					throw new NoSuchElementException();
+
+				ElementTable elementTable = read(webDriver, webElement, intNextRow, intChunkRows);
+
+				intTotalRows = elementTable.intTotalRows;
+				intNextRow += Math.max(1, elementTable.intRowCount);
+
+				return elementTable;
+			}
+		};
+	}
+
+	// ==================================================|Values|==================================================
+	public List<String> getColumns() {
+		return listColumns;
+	}
+
+	public int getRowCount() {
+		return intRowCount;
+	}
+
+	public int getStartRow() {
+		return intStartRow;
+	}
+
+	/**
+	 * Gets the number of rows of the element, including rows outside this chunk.
+	 */
+	public int getTotalRows() {
+		return intTotalRows;
+	}
+
+	public List<String> getColumn(String strColumn) {
+		return Arrays.asList(strColumnValues[getColumnIndex(strColumn)]);
+	}
+
+	public List<String> getColumn(int intColumn) {
+		return Arrays.asList(strColumnValues[intColumn]);
+	}
+
+	/**
+	 * Gets the cells of a row of this chunk.
+	 *
+	 * @param intRow - row index within the chunk, from 0.
+	 * @return Returns the cell values in column order.
+	 */
+	public List<String> getRow(int intRow) {
+		List<String> listRow = new ArrayList<>();
+
+		for (String[] strValues : strColumnValues)
+			listRow.add(strValues[intRow]);
+
+		return listRow;
+	}
+
+	public String getCell(int intRow, String strColumn) {
+		return strColumnValues[getColumnIndex(strColumn)][intRow];
+	}
+
+	private int getColumnIndex(String strColumn) {
+		int intColumn = listColumns.indexOf(strColumn);
+
+		if (intColumn < 0)
+			throw new IllegalArgumentException("No column " + strColumn + " in " + listColumns);
+
+		return intColumn;
+	}
+
+	// ==================================================|Compare|==================================================
+	/**
+	 * Gets the expected values that are not in the column.
+	 *
+	 * @param strColumn          - column name.
+	 * @param collectionExpected - expected values.
+	 * @return Returns the missing values in expected order.
+	 */
+	public Set<String> getMissingValues(String strColumn, Collection<String> collectionExpected) {
+		Set<String> setMissing = new LinkedHashSet<>(collectionExpected);
+
+		setMissing.removeAll(new HashSet<>(getColumn(strColumn)));
+
+		return setMissing;
+	}
+
+	/**
+	 * Gets the column values that are not expected.
+	 *
+	 * @param strColumn          - column name.
+	 * @param collectionExpected - expected values.
+	 * @return Returns the unexpected values in row order.
+	 */
+	public Set<String> getUnexpectedValues(String strColumn, Collection<String> collectionExpected) {
+		Set<String> setUnexpected = new LinkedHashSet<>(getColumn(strColumn));
+
+		setUnexpected.removeAll(new HashSet<>(collectionExpected));
+
+		return setUnexpected;
+	}
+
+	/**
+	 * Gets the expected values that are not in the column of any chunk. Reading
+	 * stops as soon as every expected value was found.
+	 *
+	 * @param iteratorChunks     - chunks from stream.
+	 * @param strColumn          - column name.
+	 * @param collectionExpected - expected values.
+	 * @return Returns the missing values in expected order.
+	 */
+	public static Set<String> getMissingValues(Iterator<ElementTable> iteratorChunks, String strColumn,
+			Collection<String> collectionExpected) {
+		Set<String> setMissing = new LinkedHashSet<>(collectionExpected);
+
+		while (!setMissing.isEmpty() && iteratorChunks.hasNext())
+			setMissing.removeAll(new HashSet<>(iteratorChunks.next().getColumn(strColumn)));
+
+		return setMissing;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,210 @@
+package utilities;
+
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.testng.SkipException;
+
+/**
+ * Suite level circuit breaker per application host. After a number of
+ * consecutive failed navigations (connection refused, DNS errors, page load
+ * timeouts) one thread probes the host over HTTP; only if the probe fails too is
+ * the host considered down and the remaining scenarios skipped before a browser
+ * is launched. Wait timeouts are never counted, since they are usually locator
+ * or application bugs on a healthy host. Once the half-open interval has
+ * passed, one thread probes the host again and closes the circuit if it answers.
+ */
+public class EnvironmentCircuitBreaker {
+	private enum State {
+		CLOSED, OPEN, HALF_OPEN
+	}
+
+	private static final class HostCircuit {
+		State state = State.CLOSED;
+		int intConsecutiveFailures;
+		long lngOpenedMillis;
+		long lngFailureMillis;
+		int intFailures;
+		boolean blnProbing;
+	}
+
+	// ==================================================|Settings|==================================================
+	private static final int intFailureThreshold = Integer
+			.parseInt(Base.configurationVariables("circuitBreakerFailureThreshold"));
+	private static final long lngHalfOpenMillis = Long
+			.parseLong(Base.configurationVariables("circuitBreakerHalfOpenMillis"));
+	private static final int intProbeTimeoutMillis = Integer
+			.parseInt(Base.configurationVariables("circuitBreakerProbeTimeoutMillis"));
+
+	// ==================================================|State|==================================================
+	private static final Map<String, HostCircuit> mapCircuits = new ConcurrentHashMap<>();
+	private static final ThreadLocal<String> threadLocalUrl = new ThreadLocal<>();
+	private static final AtomicLong atomicSkippedScenarios = new AtomicLong();
+	private static final AtomicLong atomicSavedMillis = new AtomicLong();
+
+	static {
+		RunSummary.register("Environment Circuit Breaker",
+				() -> atomicSkippedScenarios.get() == 0 ? null
+						: atomicSkippedScenarios.get() + " scenarios skipped, about "
+								+ atomicSavedMillis.get() / 1000 + " s saved");
+	}
+
+	// ==================================================|Check|==================================================
+	/**
+	 * Skips the current scenario when the circuit for the URL host is open. When
+	 * the half-open interval has passed, the calling thread probes the host and
+	 * lets the scenario run if it responds.
+	 *
+	 * @param strURL - application URL the scenario will use.
+	 */
+	public static void checkEnvironment(String strURL) {
+		String strHost = getHost(strURL);
+		HostCircuit hostCircuit = mapCircuits.computeIfAbsent(strHost, strKey -> new HostCircuit());
+		boolean blnProbe = false;
+
+		synchronized (hostCircuit) {
+			if (hostCircuit.state == State.CLOSED)
+				return;
+
+			if (hostCircuit.state == State.OPEN
+					&& System.currentTimeMillis() - hostCircuit.lngOpenedMillis >= lngHalfOpenMillis) {
+				hostCircuit.state = State.HALF_OPEN;
+				blnProbe = true;
+			}
+		}
+
+		if (blnProbe) {
+			boolean blnHealthy = isHealthy(strURL);
+
+			synchronized (hostCircuit) {
+				if (blnHealthy) {
+					hostCircuit.state = State.CLOSED;
+					hostCircuit.intConsecutiveFailures = 0;
+					System.out.println("[Circuit Breaker] " + strHost + " is reachable again, circuit closed");
+
+					return;
+				}
+
+				hostCircuit.state = State.OPEN;
+				hostCircuit.lngOpenedMillis = System.currentTimeMillis();
+			}
+		}
+
+		long lngEstimatedMillis;
+
+		synchronized (hostCircuit) {
+			lngEstimatedMillis = hostCircuit.intFailures == 0 ? 0
+					: hostCircuit.lngFailureMillis / hostCircuit.intFailures;
+		}
+
+		atomicSkippedScenarios.incrementAndGet();
+		atomicSavedMillis.addAndGet(lngEstimatedMillis);
+
+		throw new SkipException("Environment down: " + strHost + " failed " + intFailureThreshold
+				+ " consecutive navigations and the health probe, scenario skipped (saved about "
+				+ lngEstimatedMillis / 1000 + " s)");
+	}
+
+	// ==================================================|Record|==================================================
+	/**
+	 * Remembers the URL the current thread navigates to, so the outcome is counted
+	 * against its host and a failure can be confirmed by probing it.
+	 *
+	 * @param strURL - URL navigated to.
+	 */
+	public static void setCurrentUrl(String strURL) {
+		threadLocalUrl.set(strURL);
+	}
+
+	public static void recordSuccess() {
+		String strURL = threadLocalUrl.get();
+
+		if (strURL == null)
+			return;
+
+		HostCircuit hostCircuit = mapCircuits.computeIfAbsent(getHost(strURL), strKey -> new HostCircuit());
+
+		synchronized (hostCircuit) {
+			hostCircuit.intConsecutiveFailures = 0;
+		}
+	}
+
+	/**
+	 * Counts a failed navigation against the current host. Once the threshold is
+	 * reached the host is probed, and the circuit opens only if the probe fails;
+	 * a host that answers has its count reset.
+	 *
+	 * @param lngElapsedMillis - time spent before the failure.
+	 */
+	public static void recordFailure(long lngElapsedMillis) {
+		String strURL = threadLocalUrl.get();
+
+		if (strURL == null)
+			return;
+
+		String strHost = getHost(strURL);
+		HostCircuit hostCircuit = mapCircuits.computeIfAbsent(strHost, strKey -> new HostCircuit());
+
+		synchronized (hostCircuit) {
+			hostCircuit.intConsecutiveFailures++;
+			hostCircuit.intFailures++;
+			hostCircuit.lngFailureMillis += lngElapsedMillis;
+
+			if (hostCircuit.state != State.CLOSED || hostCircuit.blnProbing
+					|| hostCircuit.intConsecutiveFailures < intFailureThreshold)
+				return;
+
+			hostCircuit.blnProbing = true;
+		}
+
+		boolean blnHealthy = isHealthy(strURL);
+
+		synchronized (hostCircuit) {
+			hostCircuit.blnProbing = false;
+
+			if (blnHealthy) {
+				hostCircuit.intConsecutiveFailures = 0;
+				System.out.println("[Circuit Breaker] " + strHost + " answers the health probe after "
+						+ intFailureThreshold + " failed navigations, circuit stays closed");
+			} else if (hostCircuit.state == State.CLOSED) {
+				hostCircuit.state = State.OPEN;
+				hostCircuit.lngOpenedMillis = System.currentTimeMillis();
+				System.out.println("[Circuit Breaker] " + strHost + " failed " + hostCircuit.intConsecutiveFailures
+						+ " consecutive navigations and the health probe, circuit opened");
+			}
+		}
+	}
+
+	// ==================================================|Helpers|==================================================
+	private static boolean isHealthy(String strURL) {
+		try {
+			HttpURLConnection httpURLConnection = (HttpURLConnection) new URL(strURL).openConnection();
+
+			httpURLConnection.setConnectTimeout(intProbeTimeoutMillis);
+			httpURLConnection.setReadTimeout(intProbeTimeoutMillis);
+			httpURLConnection.setRequestMethod("GET");
+
+			int intResponseCode = httpURLConnection.getResponseCode();
+
+			httpURLConnection.disconnect();
+
+			return intResponseCode < 500;
+		} catch (Exception exception) {
+			return false;
+		}
+	}
+
+	private static String getHost(String strURL) {
+		try {
+			String strHost = URI.create(strURL).getHost();
+
+			return strHost != null ? strHost : strURL;
+		} catch (Exception exception) {
+			return strURL;
+		}
+	}
+}
\ No newline at end of file
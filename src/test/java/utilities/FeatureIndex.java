@@ -0,0 +1,138 @@
+package utilities;
+
+import java.net.URI;
+import java.util.Optional;
+import java.util.ServiceLoader;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import io.cucumber.core.gherkin.Feature;
+import io.cucumber.core.gherkin.FeatureParser;
+
+/**
+ * Feature parser that keeps the parsed Gherkin messages of every feature file in
+ * an index keyed by the SHA-256 of its content. Unchanged features are rebuilt
+ * from the index instead of being tokenized, parsed and compiled to pickles
+ * again. Registered through META-INF/services and picked by Cucumber because its
+ * version sorts after the built-in parser.
+ *
+ * The index rebuilds features through Cucumber internals, so it is pinned to
+ * Cucumber 6.10.3. This class only uses the public parser API: the index itself
+ * (GherkinMessagesIndex) is loaded reflectively once the version matches. With
+ * any other version, or any linkage problem, the index is disabled, the built-in
+ * parser wins the selection and features are parsed normally.
+ */
+public class FeatureIndex implements FeatureParser {
+	/**
+	 * Version specific part of the index.
+	 */
+	interface Index {
+		Optional<Feature> parse(URI uri, String strSource, Supplier<UUID> idGenerator);
+
+		long getLoadMillis();
+	}
+
+	private static final String STR_CUCUMBER_VERSION = "6.10.3";
+
+	// ==================================================|Settings|==================================================
+	private static final boolean blnEnabled = Base.configurationVariables("featureIndex").equals("true");
+
+	// ==================================================|State|==================================================
+	static final AtomicInteger atomicHits = new AtomicInteger();
+	static final AtomicInteger atomicMisses = new AtomicInteger();
+	private static final AtomicLong atomicParseNanos = new AtomicLong();
+	private static final FeatureParser gherkinParser = findGherkinParser();
+	private static volatile Index index = blnEnabled ? createIndex() : null;
+
+	// ==================================================|Parse|==================================================
+	@Override
+	public Optional<Feature> parse(URI uri, String strSource, Supplier<UUID> idGenerator) {
+		long lngStartNanos = System.nanoTime();
+
+		try {
+			Index indexCurrent = index;
+
+			if (indexCurrent != null) {
+				try {
+					return indexCurrent.parse(uri, strSource, idGenerator);
+				} catch (LinkageError linkageError) {
+					linkageError.printStackTrace();
+					index = null;
+				}
+			}
+
+			return gherkinParser.parse(uri, strSource, idGenerator);
+		} finally {
+			atomicParseNanos.addAndGet(System.nanoTime() - lngStartNanos);
+		}
+	}
+
+	/**
+	 * Sorts after the built-in parser ("8") only while the index is usable.
+	 */
+	@Override
+	public String version() {
+		return index != null ? "9" : "0";
+	}
+
+	// ==================================================|Statistics|==================================================
+	public static int getHits() {
+		return atomicHits.get();
+	}
+
+	public static int getMisses() {
+		return atomicMisses.get();
+	}
+
+	public static long getParseMillis() {
+		return atomicParseNanos.get() / 1000000;
+	}
+
+	public static long getLoadMillis() {
+		Index indexCurrent = index;
+
+		return indexCurrent == null ? 0 : indexCurrent.getLoadMillis();
+	}
+
+	// ==================================================|Helpers|==================================================
+	/**
+	 * Finds the highest versioned parser other than this one, which is the
+	 * built-in Gherkin parser.
+	 */
+	private static FeatureParser findGherkinParser() {
+		FeatureParser featureParserFound = null;
+
+		for (FeatureParser featureParser : ServiceLoader.load(FeatureParser.class, FeatureIndex.class.getClassLoader())) {
+			if (!(featureParser instanceof FeatureIndex) && (featureParserFound == null
+					|| featureParser.version().compareTo(featureParserFound.version()) > 0))
+				featureParserFound = featureParser;
+		}
+
+		if (featureParserFound == null)
+			throw new IllegalStateException("No Gherkin feature parser found on the classpath");
+
+		return featureParserFound;
+	}
+
+	private static Index createIndex() {
+		String strVersion = gherkinParser.getClass().getPackage().getImplementationVersion();
+
+		if (!STR_CUCUMBER_VERSION.equals(strVersion)) {
+			System.out.println("[Feature Index] Disabled: built for Cucumber " + STR_CUCUMBER_VERSION + ", found "
+					+ strVersion);
+
+			return null;
+		}
+
+		try {
+			return (Index) Class.forName(FeatureIndex.class.getPackage().getName() + ".GherkinMessagesIndex")
+					.getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException | LinkageError exception) {
+			exception.printStackTrace();
+
+			return null;
+		}
+	}
+}
@@ -0,0 +1,251 @@
+package utilities;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import io.cucumber.core.gherkin.Feature;
+import io.cucumber.core.gherkin.FeatureParser;
+import io.cucumber.core.gherkin.Pickle;
+import io.cucumber.core.gherkin.messages.GherkinMessagesFeatureParser;
+import io.cucumber.messages.Messages.Envelope;
+import io.cucumber.messages.Messages.GherkinDocument;
+
+/**
+ * The Cucumber 6.10.3 specific part of the feature index. Only created by
+ * FeatureIndex after the version check. The Gherkin internals and the
+ * package-private message classes are resolved reflectively in the
+ * constructor, so a mismatch fails the creation and leaves the normal parser in
+ * charge.
+ */
+final class GherkinMessagesIndex implements FeatureIndex.Index {
+	static final class Entry {
+		final String strHash;
+		final List<Envelope> listEnvelopes;
+
+		Entry(String strHash, List<Envelope> listEnvelopes) {
+			this.strHash = strHash;
+			this.listEnvelopes = listEnvelopes;
+		}
+	}
+
+	private static final String STR_PACKAGE = "io.cucumber.core.gherkin.messages.";
+
+	// ==================================================|Settings|==================================================
+	private static final File fileIndex = new File(Base.configurationVariables("featureIndexFile"));
+
+	// ==================================================|State|==================================================
+	private final FeatureParser gherkinParser = new GherkinMessagesFeatureParser();
+	private final Object objDialectProvider;
+	private final Method methodGetDialect;
+	private final Method methodMakeSourceEnvelope;
+	private final Constructor<?> constructorQuery;
+	private final Method methodQueryUpdate;
+	private final Constructor<?> constructorPickle;
+	private final Constructor<?> constructorFeature;
+	private final Map<String, Entry> mapLoaded;
+	private final long lngLoadMillis;
+	private final Map<String, Entry> mapUsed = new ConcurrentHashMap<>();
+
+	GherkinMessagesIndex() throws ReflectiveOperationException {
+		Class<?> classDialectProvider = Class.forName(STR_PACKAGE + "internal.gherkin.GherkinDialectProvider");
+		Class<?> classDialect = Class.forName(STR_PACKAGE + "internal.gherkin.GherkinDialect");
+		Class<?> classQuery = Class.forName(STR_PACKAGE + "CucumberQuery");
+
+		objDialectProvider = classDialectProvider.getDeclaredConstructor().newInstance();
+		methodGetDialect = classDialectProvider.getMethod("getDialect", String.class,
+				Class.forName(STR_PACKAGE + "internal.gherkin.Location"));
+		methodMakeSourceEnvelope = Class.forName(STR_PACKAGE + "internal.gherkin.Gherkin")
+				.getMethod("makeSourceEnvelope", String.class, String.class);
+		constructorQuery = classQuery.getDeclaredConstructor();
+		methodQueryUpdate = classQuery.getDeclaredMethod("update", GherkinDocument.class);
+		constructorPickle = Class.forName(STR_PACKAGE + "GherkinMessagesPickle").getDeclaredConstructor(
+				io.cucumber.messages.Messages.Pickle.class, URI.class, classDialect, classQuery);
+		constructorFeature = Class.forName(STR_PACKAGE + "GherkinMessagesFeature").getDeclaredConstructor(
+				GherkinDocument.Feature.class, URI.class, String.class, List.class, List.class);
+
+		constructorQuery.setAccessible(true);
+		methodQueryUpdate.setAccessible(true);
+		constructorPickle.setAccessible(true);
+		constructorFeature.setAccessible(true);
+
+		long lngStartMillis = System.currentTimeMillis();
+
+		mapLoaded = load();
+		lngLoadMillis = System.currentTimeMillis() - lngStartMillis;
+		Runtime.getRuntime().addShutdownHook(new Thread(this::save, "feature-index-save"));
+	}
+
+	// ==================================================|Parse|==================================================
+	@Override
+	public Optional<Feature> parse(URI uri, String strSource, Supplier<UUID> idGenerator) {
+		String strHash = hash(strSource);
+		Entry entry = mapLoaded.get(uri.toString());
+
+		if (entry != null && entry.strHash.equals(strHash)) {
+			Optional<Feature> optionalFeature = rebuild(uri, strSource, entry.listEnvelopes);
+
+			if (optionalFeature.isPresent()) {
+				FeatureIndex.atomicHits.incrementAndGet();
+				mapUsed.put(uri.toString(), entry);
+
+				return optionalFeature;
+			}
+		}
+
+		FeatureIndex.atomicMisses.incrementAndGet();
+
+		Optional<Feature> optionalFeature = gherkinParser.parse(uri, strSource, idGenerator);
+		List<Envelope> listEnvelopes = new ArrayList<>();
+
+		if (optionalFeature.isPresent()) {
+			for (Object objEvent : optionalFeature.get().getParseEvents()) {
+				if (!((Envelope) objEvent).hasSource())
+					listEnvelopes.add((Envelope) objEvent);
+			}
+
+			mapUsed.put(uri.toString(), new Entry(strHash, listEnvelopes));
+		}
+
+		return optionalFeature;
+	}
+
+	@Override
+	public long getLoadMillis() {
+		return lngLoadMillis;
+	}
+
+	// ==================================================|Helpers|==================================================
+	/**
+	 * Builds the Cucumber feature from indexed messages the same way the built-in
+	 * parser does after parsing. The source envelope is not indexed, it is made
+	 * again from the feature content.
+	 */
+	private Optional<Feature> rebuild(URI uri, String strSource, List<Envelope> listEnvelopes) {
+		try {
+			GherkinDocument gherkinDocument = null;
+
+			for (Envelope envelope : listEnvelopes) {
+				if (envelope.hasGherkinDocument())
+					gherkinDocument = envelope.getGherkinDocument();
+			}
+
+			if (gherkinDocument == null || !gherkinDocument.hasFeature())
+				return Optional.empty();
+
+			List<Envelope> listParseEvents = new ArrayList<>(listEnvelopes.size() + 1);
+			Object objQuery = constructorQuery.newInstance();
+			Object objDialect = methodGetDialect.invoke(objDialectProvider, gherkinDocument.getFeature().getLanguage(),
+					null);
+			List<Pickle> listPickles = new ArrayList<>();
+
+			methodQueryUpdate.invoke(objQuery, gherkinDocument);
+			listParseEvents.add((Envelope) methodMakeSourceEnvelope.invoke(null, strSource, uri.toString()));
+			listParseEvents.addAll(listEnvelopes);
+
+			for (Envelope envelope : listEnvelopes) {
+				if (envelope.hasPickle())
+					listPickles.add((Pickle) constructorPickle.newInstance(envelope.getPickle(), uri, objDialect, objQuery));
+			}
+
+			return Optional.of((Feature) constructorFeature.newInstance(gherkinDocument.getFeature(), uri, strSource,
+					listPickles, listParseEvents));
+		} catch (Exception exception) {
+			exception.printStackTrace();
+
+			return Optional.empty();
+		}
+	}
+
+	private static String hash(String strSource) {
+		try {
+			return Base64.getEncoder().encodeToString(
+					MessageDigest.getInstance("SHA-256").digest(strSource.getBytes(StandardCharsets.UTF_8)));
+		} catch (Exception exception) {
+			throw new IllegalStateException(exception);
+		}
+	}
+
+	// ==================================================|Persistence|==================================================
+	/**
+	 * Reads the index: per feature the URI, the content hash, the envelope count
+	 * and the length-delimited envelopes.
+	 */
+	private static Map<String, Entry> load() {
+		Map<String, Entry> mapEntries = new ConcurrentHashMap<>();
+
+		if (!fileIndex.exists())
+			return mapEntries;
+
+		try (DataInputStream dataInputStream = new DataInputStream(
+				new BufferedInputStream(new FileInputStream(fileIndex)))) {
+			while (true) {
+				String strURI;
+
+				try {
+					strURI = dataInputStream.readUTF();
+				} catch (EOFException eofException) {
+					break;
+				}
+
+				String strHash = dataInputStream.readUTF();
+				int intEnvelopes = dataInputStream.readInt();
+				List<Envelope> listEnvelopes = new ArrayList<>(intEnvelopes);
+
+				for (int intIndex = 0; intIndex < intEnvelopes; intIndex++)
+					listEnvelopes.add(Envelope.parseDelimitedFrom(dataInputStream));
+
+				mapEntries.put(strURI, new Entry(strHash, listEnvelopes));
+			}
+		} catch (Exception exception) {
+			exception.printStackTrace();
+			mapEntries.clear();
+		}
+
+		return mapEntries;
+	}
+
+	/**
+	 * Writes the features seen in this run, so deleted or renamed features drop out
+	 * of the index. Skipped when every feature came from the index unchanged.
+	 */
+	private void save() {
+		if (mapUsed.isEmpty() || (FeatureIndex.atomicMisses.get() == 0 && mapUsed.size() == mapLoaded.size()))
+			return;
+
+		if (fileIndex.getParentFile() != null)
+			fileIndex.getParentFile().mkdirs();
+
+		try (DataOutputStream dataOutputStream = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(fileIndex)))) {
+			for (Map.Entry<String, Entry> entry : mapUsed.entrySet()) {
+				dataOutputStream.writeUTF(entry.getKey());
+				dataOutputStream.writeUTF(entry.getValue().strHash);
+				dataOutputStream.writeInt(entry.getValue().listEnvelopes.size());
+
+				for (Envelope envelope : entry.getValue().listEnvelopes)
+					envelope.writeDelimitedTo(dataOutputStream);
+			}
+		} catch (Exception exception) {
+			exception.printStackTrace();
+		}
+	}
+}
@@ -0,0 +1,504 @@
+package utilities;
+
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import io.cucumber.java.Scenario;
+
+/**
+ * Puts an embedded local HTTP server between the browser and the application
+ * origin (the data.properties url). Each scenario gets its own server and the
+ * browser is sent to it instead of the origin. In record mode the server
+ * forwards every request to the origin and saves the exchanges of the scenario
+ * as a HAR file. In replay mode it answers from that file without any network
+ * access; requests are matched on the httpStubMatch parts (method, path, query,
+ * bodyHash). Only the application origin is stubbed.
+ */
+public class HttpStub {
+	private static final List<String> LIST_SKIPPED_REQUEST_HEADERS = Arrays.asList("connection", "content-length",
+			"expect", "host", "upgrade", "keep-alive", "transfer-encoding", "accept-encoding", "http2-settings", "te");
+	private static final List<String> LIST_SKIPPED_RESPONSE_HEADERS = Arrays.asList("connection", "content-length",
+			"keep-alive", "transfer-encoding", "content-encoding", "date", ":status");
+
+	static final class StubServer {
+		final HttpServer httpServer;
+		final ExecutorService executorService;
+		final String strLocalBase;
+		final File fileArchive;
+		final Map<String, List<JsonObject>> mapReplayEntries = new HashMap<>();
+		final Map<String, AtomicInteger> mapReplayCursors = new ConcurrentHashMap<>();
+		// Recorded exchanges of this scenario row only; dropped once the archive is written.
+		final JsonArray jsonRecordedEntries = new JsonArray();
+
+		StubServer(HttpServer httpServer, ExecutorService executorService, File fileArchive) {
+			this.httpServer = httpServer;
+			this.executorService = executorService;
+			this.strLocalBase = "http://" + httpServer.getAddress().getHostString() + ":"
+					+ httpServer.getAddress().getPort();
+			this.fileArchive = fileArchive;
+		}
+	}
+
+	// ==================================================|Settings|==================================================
+	private static final String strMode = Base.configurationVariables("httpStubMode").trim().toLowerCase();
+	private static final File fileArchiveDirectory = new File(Base.configurationVariables("httpStubArchiveDirectory"));
+	private static final List<String> listMatchParts = Arrays
+			.asList(Base.configurationVariables("httpStubMatch").replace(" ", "").split(";"));
+	private static final String strOrigin = getOrigin(Base.dataVariables("url"));
+
+	// ==================================================|State|==================================================
+	private static final ThreadLocal<StubServer> threadLocalServer = new ThreadLocal<>();
+	private static final AtomicLong atomicArchives = new AtomicLong();
+	private static final AtomicLong atomicRecorded = new AtomicLong();
+	private static final AtomicLong atomicHits = new AtomicLong();
+	private static final AtomicLong atomicMisses = new AtomicLong();
+	private static HttpClient httpClient;
+
+	static {
+		RunSummary.register("HTTP Stub", HttpStub::getSummary);
+	}
+
+	// ==================================================|Scenarios|==================================================
+	public static boolean isReplaying() {
+		return strMode.equals("replay");
+	}
+
+	/**
+	 * Starts the stub server of the scenario in record or replay mode. Does
+	 * nothing when httpStubMode is off.
+	 *
+	 * @param scenario - scenario that is starting.
+	 */
+	public static void start(Scenario scenario) {
+		if (!strMode.equals("record") && !strMode.equals("replay"))
+			return;
+
+		try {
+			ExecutorService executorService = Executors.newCachedThreadPool(runnable -> {
+				Thread thread = new Thread(runnable, "http-stub");
+
+				thread.setDaemon(true);
+
+				return thread;
+			});
+			HttpServer httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+			StubServer stubServer = new StubServer(httpServer, executorService, getArchiveFile(scenario));
+
+			if (isReplaying())
+				loadReplayEntries(stubServer);
+
+			httpServer.setExecutor(executorService);
+			httpServer.createContext("/", httpExchange -> handle(stubServer, httpExchange));
+			httpServer.start();
+			threadLocalServer.set(stubServer);
+		} catch (Exception exception) {
+			exception.printStackTrace();
+		}
+	}
+
+	/**
+	 * Stops the stub server of the scenario and, in record mode, writes its
+	 * archive.
+	 */
+	public static void stop() {
+		StubServer stubServer = threadLocalServer.get();
+
+		if (stubServer == null)
+			return;
+
+		threadLocalServer.remove();
+		stubServer.httpServer.stop(0);
+		stubServer.executorService.shutdownNow();
+
+		JsonArray jsonEntries = stubServer.jsonRecordedEntries;
+
+		synchronized (jsonEntries) {
+			if (jsonEntries.size() == 0)
+				return;
+
+			JsonObject jsonLog = new JsonObject();
+			JsonObject jsonCreator = new JsonObject();
+			JsonObject jsonArchive = new JsonObject();
+
+			jsonCreator.addProperty("name", "HttpStub");
+			jsonCreator.addProperty("version", "1.0");
+			jsonLog.addProperty("version", "1.2");
+			jsonLog.add("creator", jsonCreator);
+			jsonLog.add("entries", jsonEntries);
+			jsonArchive.add("log", jsonLog);
+
+			try {
+				stubServer.fileArchive.getParentFile().mkdirs();
+				Files.write(stubServer.fileArchive.toPath(), new GsonBuilder().setPrettyPrinting().create()
+						.toJson(jsonArchive).getBytes(StandardCharsets.UTF_8));
+				atomicArchives.incrementAndGet();
+			} catch (Exception exception) {
+				exception.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Points an application URL at the stub server of the current scenario.
+	 *
+	 * @param strURL - URL on the application origin.
+	 * @return Returns the local URL, or the URL unchanged when no stub is running
+	 *         or the URL is on another origin.
+	 */
+	public static String resolveUrl(String strURL) {
+		StubServer stubServer = threadLocalServer.get();
+
+		if (stubServer == null || strOrigin.isEmpty() || !strURL.startsWith(strOrigin))
+			return strURL;
+
+		return stubServer.strLocalBase + strURL.substring(strOrigin.length());
+	}
+
+	// ==================================================|Exchange|==================================================
+	private static void handle(StubServer stubServer, HttpExchange httpExchange) {
+		try (InputStream inputStream = httpExchange.getRequestBody()) {
+			byte[] byteRequestBody = inputStream.readAllBytes();
+			JsonObject jsonEntry = isReplaying() ? replay(stubServer, httpExchange, byteRequestBody)
+					: record(stubServer, httpExchange, byteRequestBody);
+
+			if (jsonEntry == null) {
+				byte[] byteMessage = ("No recorded response for " + getMatchKey(httpExchange.getRequestMethod(),
+						httpExchange.getRequestURI(), byteRequestBody)).getBytes(StandardCharsets.UTF_8);
+
+				httpExchange.sendResponseHeaders(404, byteMessage.length);
+
+				try (OutputStream outputStream = httpExchange.getResponseBody()) {
+					outputStream.write(byteMessage);
+				}
+
+				return;
+			}
+
+			respond(stubServer, httpExchange, jsonEntry.getAsJsonObject("response"));
+		} catch (Exception exception) {
+			exception.printStackTrace();
+		} finally {
+			httpExchange.close();
+		}
+	}
+
+	private static JsonObject record(StubServer stubServer, HttpExchange httpExchange, byte[] byteRequestBody)
+			throws Exception {
+		long lngStartMillis = System.currentTimeMillis();
+		String strURL = strOrigin + httpExchange.getRequestURI().toString();
+		HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(strURL)).method(
+				httpExchange.getRequestMethod(), byteRequestBody.length == 0 ? HttpRequest.BodyPublishers.noBody()
+						: HttpRequest.BodyPublishers.ofByteArray(byteRequestBody));
+		JsonArray jsonRequestHeaders = new JsonArray();
+
+		for (Map.Entry<String, List<String>> entry : httpExchange.getRequestHeaders().entrySet()) {
+			if (LIST_SKIPPED_REQUEST_HEADERS.contains(entry.getKey().toLowerCase()))
+				continue;
+
+			for (String strValue : entry.getValue()) {
+				strValue = strValue.replace(stubServer.strLocalBase, strOrigin);
+				builder.header(entry.getKey(), strValue);
+				jsonRequestHeaders.add(getHeader(entry.getKey(), strValue));
+			}
+		}
+
+		HttpResponse<byte[]> httpResponse = getHttpClient().send(builder.build(),
+				HttpResponse.BodyHandlers.ofByteArray());
+		JsonObject jsonRequest = new JsonObject();
+		JsonObject jsonResponse = new JsonObject();
+		JsonArray jsonResponseHeaders = new JsonArray();
+		JsonObject jsonEntry = new JsonObject();
+		String strContentType = httpResponse.headers().firstValue("content-type").orElse("");
+
+		jsonRequest.addProperty("method", httpExchange.getRequestMethod());
+		jsonRequest.addProperty("url", strURL);
+		jsonRequest.add("headers", jsonRequestHeaders);
+
+		if (byteRequestBody.length > 0)
+			jsonRequest.add("postData", getContent(byteRequestBody,
+					httpExchange.getRequestHeaders().getFirst("content-type")));
+
+		for (Map.Entry<String, List<String>> entry : httpResponse.headers().map().entrySet()) {
+			for (String strValue : entry.getValue())
+				jsonResponseHeaders.add(getHeader(entry.getKey(), strValue));
+		}
+
+		jsonResponse.addProperty("status", httpResponse.statusCode());
+		jsonResponse.add("headers", jsonResponseHeaders);
+		jsonResponse.add("content", getContent(httpResponse.body(), strContentType));
+		jsonEntry.addProperty("startedDateTime", Instant.ofEpochMilli(lngStartMillis).toString());
+		jsonEntry.addProperty("time", System.currentTimeMillis() - lngStartMillis);
+		jsonEntry.add("request", jsonRequest);
+		jsonEntry.add("response", jsonResponse);
+
+		synchronized (stubServer.jsonRecordedEntries) {
+			stubServer.jsonRecordedEntries.add(jsonEntry);
+		}
+
+		atomicRecorded.incrementAndGet();
+
+		return jsonEntry;
+	}
+
+	/**
+	 * Finds the recorded response for the request. Requests with the same match
+	 * key get the recorded responses in order; the last one is repeated.
+	 */
+	private static JsonObject replay(StubServer stubServer, HttpExchange httpExchange, byte[] byteRequestBody) {
+		String strMatchKey = getMatchKey(httpExchange.getRequestMethod(), httpExchange.getRequestURI(),
+				byteRequestBody);
+		List<JsonObject> listEntries = stubServer.mapReplayEntries.get(strMatchKey);
+
+		if (listEntries == null) {
+			atomicMisses.incrementAndGet();
+
+			return null;
+		}
+
+		int intIndex = stubServer.mapReplayCursors.computeIfAbsent(strMatchKey, strKey -> new AtomicInteger())
+				.getAndIncrement();
+
+		atomicHits.incrementAndGet();
+
+		return listEntries.get(Math.min(intIndex, listEntries.size() - 1));
+	}
+
+	/**
+	 * Sends a recorded response, pointing redirects, cookies and origin links in
+	 * text bodies at the local server.
+	 */
+	private static void respond(StubServer stubServer, HttpExchange httpExchange, JsonObject jsonResponse)
+			throws Exception {
+		JsonObject jsonContent = jsonResponse.getAsJsonObject("content");
+		byte[] byteBody = readContent(jsonContent);
+
+		for (JsonElement jsonElement : jsonResponse.getAsJsonArray("headers")) {
+			String strName = jsonElement.getAsJsonObject().get("name").getAsString();
+			String strValue = jsonElement.getAsJsonObject().get("value").getAsString();
+
+			if (LIST_SKIPPED_RESPONSE_HEADERS.contains(strName.toLowerCase()))
+				continue;
+
+			if (strName.equalsIgnoreCase("location"))
+				strValue = strValue.replace(strOrigin, stubServer.strLocalBase);
+			else if (strName.equalsIgnoreCase("set-cookie"))
+				strValue = strValue.replaceAll("(?i);\\s*domain=[^;]*", "");
+
+			httpExchange.getResponseHeaders().add(strName, strValue);
+		}
+
+		if (!jsonContent.has("encoding"))
+			byteBody = new String(byteBody, StandardCharsets.UTF_8).replace(strOrigin, stubServer.strLocalBase)
+					.getBytes(StandardCharsets.UTF_8);
+
+		httpExchange.sendResponseHeaders(jsonResponse.get("status").getAsInt(),
+				byteBody.length == 0 ? -1 : byteBody.length);
+
+		if (byteBody.length > 0) {
+			try (OutputStream outputStream = httpExchange.getResponseBody()) {
+				outputStream.write(byteBody);
+			}
+		}
+	}
+
+	// ==================================================|Archive|==================================================
+	/**
+	 * Gets the archive of a scenario row. Data rows have their row in the scenario
+	 * name, and matrix runs add the browser, so rows never share an archive.
+	 */
+	private static File getArchiveFile(Scenario scenario) {
+		String strFeature = new File(scenario.getUri().getPath()).getName().replace(".feature", "");
+		String strBrowser = BrowserMatrix.getBrowsers().isEmpty() ? "" : "-" + Base.executionVariables("browser");
+
+		return new File(fileArchiveDirectory, strFeature + "/" + scenario.getLine() + "-"
+				+ (scenario.getName() + strBrowser).replaceAll("[^A-Za-z0-9]+", "_") + ".har");
+	}
+
+	private static void loadReplayEntries(StubServer stubServer) throws Exception {
+		if (!stubServer.fileArchive.exists())
+			return;
+
+		JsonArray jsonEntries = JsonParser
+				.parseString(new String(Files.readAllBytes(stubServer.fileArchive.toPath()), StandardCharsets.UTF_8))
+				.getAsJsonObject().getAsJsonObject("log").getAsJsonArray("entries");
+
+		for (JsonElement jsonElement : jsonEntries) {
+			JsonObject jsonRequest = jsonElement.getAsJsonObject().getAsJsonObject("request");
+			URI uriRequest = URI.create(jsonRequest.get("url").getAsString());
+			byte[] byteRequestBody = jsonRequest.has("postData") ? readContent(jsonRequest.getAsJsonObject("postData"))
+					: new byte[0];
+
+			stubServer.mapReplayEntries.computeIfAbsent(
+					getMatchKey(jsonRequest.get("method").getAsString(), uriRequest, byteRequestBody),
+					strKey -> new ArrayList<>()).add(jsonElement.getAsJsonObject());
+		}
+	}
+
+	private static String getMatchKey(String strMethod, URI uriRequest, byte[] byteRequestBody) {
+		StringBuilder stringBuilder = new StringBuilder();
+
+		if (listMatchParts.contains("method"))
+			stringBuilder.append(strMethod.toUpperCase()).append(' ');
+
+		if (listMatchParts.contains("path"))
+			stringBuilder.append(uriRequest.getRawPath());
+
+		if (listMatchParts.contains("query") && uriRequest.getRawQuery() != null)
+			stringBuilder.append('?').append(uriRequest.getRawQuery());
+
+		if (listMatchParts.contains("bodyHash") && byteRequestBody.length > 0) {
+			try {
+				stringBuilder.append(" #");
+
+				for (byte byteDigest : MessageDigest.getInstance("SHA-256").digest(byteRequestBody))
+					stringBuilder.append(String.format("%02x", byteDigest));
+			} catch (Exception exception) {
+				exception.printStackTrace();
+			}
+		}
+
+		return stringBuilder.toString().trim();
+	}
+
+	private static JsonObject getHeader(String strName, String strValue) {
+		JsonObject jsonHeader = new JsonObject();
+
+		jsonHeader.addProperty("name", strName);
+		jsonHeader.addProperty("value", strValue);
+
+		return jsonHeader;
+	}
+
+	/**
+	 * Stores text as is and anything else as base64, like the HAR content object.
+	 */
+	private static JsonObject getContent(byte[] byteBody, String strMimeType) {
+		JsonObject jsonContent = new JsonObject();
+		String strType = strMimeType == null ? "" : strMimeType.toLowerCase();
+
+		jsonContent.addProperty("size", byteBody.length);
+		jsonContent.addProperty("mimeType", strType);
+
+		if (strType.startsWith("text/") || strType.contains("json") || strType.contains("javascript")
+				|| strType.contains("xml") || strType.contains("x-www-form-urlencoded")) {
+			jsonContent.addProperty("text", new String(byteBody, StandardCharsets.UTF_8));
+		} else {
+			jsonContent.addProperty("text", Base64.getEncoder().encodeToString(byteBody));
+			jsonContent.addProperty("encoding", "base64");
+		}
+
+		return jsonContent;
+	}
+
+	private static byte[] readContent(JsonObject jsonContent) {
+		String strText = jsonContent.has("text") ? jsonContent.get("text").getAsString() : "";
+
+		if (jsonContent.has("encoding"))
+			return Base64.getDecoder().decode(strText);
+
+		return strText.getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static synchronized HttpClient getHttpClient() {
+		if (httpClient == null)
+			httpClient = HttpClient.newBuilder().followRedirects(HttpClient.Redirect.NEVER)
+					.connectTimeout(Duration.ofSeconds(30)).build();
+
+		return httpClient;
+	}
+
+	private static String getOrigin(String strURL) {
+		try {
+			URI uriApplication = URI.create(strURL.trim());
+
+			return uriApplication.getScheme() + "://" + uriApplication.getRawAuthority();
+		} catch (Exception exception) {
+			return "";
+		}
+	}
+
+	// ==================================================|Report|==================================================
+	/**
+	 * Summarises the run. Record runs also save their page load times next to the
+	 * archives, so replay runs can show live and replay load times side by side.
+	 */
+	public static String getSummary() {
+		File filePageLoads = new File(fileArchiveDirectory, "page-load-times.json");
+
+		try {
+			if (strMode.equals("record") && atomicRecorded.get() > 0) {
+				fileArchiveDirectory.mkdirs();
+				Files.write(filePageLoads.toPath(),
+						new GsonBuilder().setPrettyPrinting().create().toJson(PageTiming.getPageLoadMillis())
+								.getBytes(StandardCharsets.UTF_8));
+
+				return "recorded " + atomicRecorded.get() + " exchanges in " + atomicArchives.get() + " archives ("
+						+ fileArchiveDirectory.getPath() + ")";
+			}
+
+			if (!isReplaying() || atomicHits.get() + atomicMisses.get() == 0)
+				return null;
+
+			StringBuilder stringBuilder = new StringBuilder("replayed " + atomicHits.get() + " of "
+					+ (atomicHits.get() + atomicMisses.get()) + " requests, hit rate "
+					+ Math.round(atomicHits.get() * 1000.0 / (atomicHits.get() + atomicMisses.get())) / 10.0 + "%");
+
+			if (filePageLoads.exists()) {
+				JsonObject jsonLiveLoads = JsonParser
+						.parseString(new String(Files.readAllBytes(filePageLoads.toPath()), StandardCharsets.UTF_8))
+						.getAsJsonObject();
+
+				for (Map.Entry<String, List<Long>> entry : PageTiming.getPageLoadMillis().entrySet()) {
+					if (!jsonLiveLoads.has(entry.getKey()))
+						continue;
+
+					List<Long> listLiveLoads = new ArrayList<>();
+
+					for (JsonElement jsonElement : jsonLiveLoads.getAsJsonArray(entry.getKey()))
+						listLiveLoads.add(jsonElement.getAsLong());
+
+					stringBuilder.append("; ").append(entry.getKey()).append(" p50 live ")
+							.append(PageTiming.getPercentile(listLiveLoads, 50)).append(" ms, replay ")
+							.append(PageTiming.getPercentile(entry.getValue(), 50)).append(" ms");
+				}
+			}
+
+			return stringBuilder.toString();
+		} catch (Exception exception) {
+			exception.printStackTrace();
+
+			return null;
+		}
+	}
+}
\ No newline at end of file
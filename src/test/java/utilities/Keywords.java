@@ -1,12 +1,17 @@
 package utilities;
 
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.text.SimpleDateFormat;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
 
@@ -24,10 +29,13 @@ import org.openqa.selenium.NoAlertPresentException;
 import org.openqa.selenium.OutputType;
 import org.openqa.selenium.Point;
 import org.openqa.selenium.TakesScreenshot;
+import org.openqa.selenium.TimeoutException;
 import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
 import org.openqa.selenium.WebElement;
 import org.openqa.selenium.interactions.Actions;
 import org.openqa.selenium.support.Color;
+import org.openqa.selenium.support.ui.ExpectedCondition;
 import org.openqa.selenium.support.ui.ExpectedConditions;
 import org.openqa.selenium.support.ui.Select;
 import org.openqa.selenium.support.ui.WebDriverWait;
@@ -209,7 +217,34 @@ public class Keywords {
 	 * @param strURL - web page URL to navigate to.
 	 */
 	public void navigateToUrl(String strURL) {
-		webDriver.navigate().to(strURL);
+		navigate(strURL);
+
+		if (Base.configurationVariables("pageTimingCapture").equals("true")) {
+			try {
+				PageTiming.capture(webDriver, strURL.replaceAll("[?#].*$", ""));
+			} catch (Exception exception) {
+				exception.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Loads the URL through the HTTP stub and the environment circuit breaker.
+	 */
+	private void navigate(String strURL) {
+		long lngStartMillis = System.currentTimeMillis();
+
+		EnvironmentCircuitBreaker.setCurrentUrl(strURL);
+		WaitTimeoutAdvisor.setCurrentPage(strURL);
+
+		try {
+			webDriver.navigate().to(HttpStub.resolveUrl(strURL));
+			EnvironmentCircuitBreaker.recordSuccess();
+		} catch (WebDriverException webDriverException) {
+			// Connection refused, DNS errors and page load timeouts; a timeout is a WebDriverException too.
+			EnvironmentCircuitBreaker.recordFailure(System.currentTimeMillis() - lngStartMillis);
+			throw webDriverException;
+		}
 	}
 
 	/**
@@ -335,28 +370,11 @@ public class Keywords {
 	 */
 	public void takeScreenshotOfWebElement(WebElement webElement, int intWidthPercentage, int intHeightPercentage,
 			String strFilePath) throws Exception {
-		File screenshot = ((TakesScreenshot) webDriver).getScreenshotAs(OutputType.FILE);
-		BufferedImage fullImage = ImageIO.read(screenshot);
-		Point point = webElement.getLocation();
-		int intWebElementWidth = webElement.getSize().getWidth();
-		int intWebElementHeight = webElement.getSize().getHeight();
-
-		if (intWidthPercentage != 0) {
-			intWebElementWidth = intWebElementWidth * (intWidthPercentage / 100);
-		}
-
-		if (intHeightPercentage != 0) {
-			intWebElementHeight = intWebElementHeight * (intHeightPercentage / 100);
-		}
-
-		BufferedImage webElementScreenshot = fullImage.getSubimage(point.getX(), point.getY(), intWebElementWidth,
-				intWebElementHeight);
-
-		ImageIO.write(webElementScreenshot, "png", screenshot);
-
+		BufferedImage webElementScreenshot = getWebElementScreenshot(webElement, intWidthPercentage,
+				intHeightPercentage);
 		File screenshotLocation = new File(strFilePath);
 
-		FileUtils.copyFile(screenshot, screenshotLocation);
+		ImageIO.write(webElementScreenshot, "png", screenshotLocation);
 	}
 
 	/**
@@ -366,11 +384,13 @@ public class Keywords {
 	 * @param webElement - web element to perform the action to.
 	 */
 	public void webElementClear(WebElement webElement) throws Exception {
-		waitUntilWebElementVisible(webElement);
+		StepRetry.run("webElementClear", () -> {
+			waitUntilWebElementVisible(webElement);
 
-		if (isWebElementDisplayed(webElement) && isWebElementEnabled(webElement)) {
-			webElement.clear();
-		}
+			if (isWebElementDisplayed(webElement) && isWebElementEnabled(webElement)) {
+				webElement.clear();
+			}
+		});
 	}
 
 	/**
@@ -379,11 +399,13 @@ public class Keywords {
 	 * @param webElement - web element to perform the action to.
 	 */
 	public void webElementClick(WebElement webElement) throws Exception {
-		waitUntilWebElementVisible(webElement);
+		StepRetry.run("webElementClick", () -> {
+			waitUntilWebElementVisible(webElement);
 
-		if (isWebElementDisplayed(webElement) && isWebElementEnabled(webElement)) {
-			webElement.click();
-		}
+			if (isWebElementDisplayed(webElement) && isWebElementEnabled(webElement)) {
+				webElement.click();
+			}
+		});
 	}
 
 	/**
@@ -393,13 +415,15 @@ public class Keywords {
 	 * @param webElement - web element to perform the action to.
 	 */
 	public void webElementActionClick(WebElement webElement) throws Exception {
-		waitUntilWebElementVisible(webElement);
+		StepRetry.run("webElementActionClick", () -> {
+			waitUntilWebElementVisible(webElement);
 
-		if (isWebElementDisplayed(webElement) && isWebElementEnabled(webElement)) {
-			Actions actions = new Actions(webDriver);
+			if (isWebElementDisplayed(webElement) && isWebElementEnabled(webElement)) {
+				Actions actions = new Actions(webDriver);
 
-			actions.click(webElement).build().perform();
-		}
+				actions.click(webElement).build().perform();
+			}
+		});
 	}
 
 	/**
@@ -454,7 +478,18 @@ public class Keywords {
 			if (strOption.equals("value")) {
 				select.selectByValue(strValue);
 			} else if (strOption.equals("index")) {
-				select.selectByIndex(Integer.parseInt(strValue));
+				int intIndex = Integer.parseInt(strValue);
+				List<WebElement> listOptions = webElement.findElements(By.tagName("option"));
+
+				if (intIndex < 0 || intIndex >= listOptions.size())
+					throw new IllegalArgumentException(
+							"No option with index " + intIndex + " in a dropdown of " + listOptions.size() + " options");
+
+				// A click replaces the selection of a multiple select, Select adds to it.
+				if (select.isMultiple())
+					select.selectByIndex(intIndex);
+				else if (!listOptions.get(intIndex).isSelected())
+					listOptions.get(intIndex).click();
 			} else if (strOption.equals("visibletext")) {
 				select.selectByVisibleText(strValue);
 			}
@@ -468,13 +503,15 @@ public class Keywords {
 	 * @implSpec Waits for the web element to be visible.
 	 */
 	public void webElementMouseHover(WebElement webElement) throws Exception {
-		waitUntilWebElementVisible(webElement);
+		StepRetry.run("webElementMouseHover", () -> {
+			waitUntilWebElementVisible(webElement);
 
-		if (isWebElementDisplayed(webElement) && isWebElementEnabled(webElement)) {
-			Actions actions = new Actions(webDriver);
+			if (isWebElementDisplayed(webElement) && isWebElementEnabled(webElement)) {
+				Actions actions = new Actions(webDriver);
 
-			actions.moveToElement(webElement).build().perform();
-		}
+				actions.moveToElement(webElement).build().perform();
+			}
+		});
 	}
 
 	/**
@@ -513,6 +550,27 @@ public class Keywords {
 	}
 
 	// ==================================================|See|==================================================
+	/**
+	 * Loads the URL a number of times and gets the load time of each load from the
+	 * Navigation Timing of the page. The loads are also kept in the scenario's page
+	 * timings.
+	 * 
+	 * @param strURL      - URL to load.
+	 * @param strPageName - page name the timings are stored under.
+	 * @param intSamples  - number of loads.
+	 * @return Returns the load times in milliseconds, in load order.
+	 */
+	public List<Long> getPageLoadTimes(String strURL, String strPageName, int intSamples) {
+		List<Long> listLoadMillis = new ArrayList<>();
+
+		for (int intSample = 0; intSample < intSamples; intSample++) {
+			navigate(strURL);
+			listLoadMillis.add(PageTiming.capture(webDriver, strPageName).get("load").getAsLong());
+		}
+
+		return listLoadMillis;
+	}
+
 	/**
 	 * Get all data from the specified row in the Excel file and return a array of
 	 * String.
@@ -544,8 +602,8 @@ public class Keywords {
 	}
 
 	/**
-	 * Checks the web element dropdown options.Web element dropdown must be a SELECT
-	 * tag.
+	 * Checks the web element dropdown options. Web element dropdown must be a
+	 * SELECT tag. All option texts are read with one script execution.
 	 * 
 	 * @param webElement         - web element to check. Web element dropdown must
 	 *                           be a SELECT tag.
@@ -554,21 +612,28 @@ public class Keywords {
 	 * @implNote Mostly used in Asserts.assertTrue, or in IF ELSE conditions.
 	 */
 	public boolean checkWebElementDropdownOptions(WebElement webElement, String[] strExpectedOptions) {
-		int intOptionsFound = 0;
-		Select select = new Select(webElement);
-		List<WebElement> options = select.getOptions();
+		return getWebElementDropdownOptions(webElement).getMissingValues("text", Arrays.asList(strExpectedOptions))
+				.isEmpty();
+	}
 
-		for (WebElement we : options) {
-			for (int i = 0; i < strExpectedOptions.length; i++) {
-				if (we.getText().equals(strExpectedOptions[i])) {
-				}
-			}
-		}
-		if (intOptionsFound == strExpectedOptions.length) {
-			return true;
-		} else {
-			return false;
-		}
+	/**
+	 * Compares the web element screenshot against its baseline image. The baseline
+	 * is created on the first run. A diff image is attached to the report when the
+	 * screenshot does not match.
+	 * 
+	 * @param webElement      - web element to compare.
+	 * @param strBaselineName - baseline image name.
+	 * @param ignoreRegions   - regions relative to the web element to skip.
+	 * @return True if the screenshot matches the baseline, false otherwise.
+	 * @implNote Mostly used in Asserts.assertTrue, or in IF ELSE conditions.
+	 */
+	public boolean checkWebElementMatchesBaseline(WebElement webElement, String strBaselineName,
+			Rectangle... ignoreRegions) throws Exception {
+		BufferedImage webElementScreenshot = getWebElementScreenshot(webElement, 0, 0);
+		VisualComparison visualComparison = new VisualComparison();
+
+		return visualComparison.compareToBaseline(webElementScreenshot, strBaselineName, Arrays.asList(ignoreRegions))
+				.blnMatched;
 	}
 
 	/**
@@ -752,6 +817,41 @@ public class Keywords {
 		return webElement.getCssValue(strCSS).toString();
 	}
 
+	/**
+	 * Gets all options of the web element dropdown with one script execution.
+	 * Web element dropdown must be a SELECT tag.
+	 * 
+	 * @param webElement - web element with SELECT tag.
+	 * @return Returns the options with text, value, selected and disabled columns.
+	 */
+	public ElementTable getWebElementDropdownOptions(WebElement webElement) {
+		return ElementTable.read(webDriver, webElement, 0, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Gets all rows of a table, grid or list with one script execution.
+	 * 
+	 * @param webElement - TABLE, role="grid" or list web element.
+	 * @return Returns the rows with one column per header cell, or a text column
+	 *         for lists.
+	 */
+	public ElementTable getWebElementTableData(WebElement webElement) {
+		return ElementTable.read(webDriver, webElement, 0, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Gets the rows of a large table, grid or list in chunks, one script execution
+	 * per chunk as the iterator is consumed.
+	 * 
+	 * @param webElement   - TABLE, role="grid" or list web element.
+	 * @param intChunkRows - rows per chunk.
+	 * @return Returns an iterator over the chunks.
+	 * @implNote Use with ElementTable.getMissingValues to check large grids.
+	 */
+	public Iterator<ElementTable> getWebElementTableDataChunks(WebElement webElement, int intChunkRows) {
+		return ElementTable.stream(webDriver, webElement, intChunkRows);
+	}
+
 	/**
 	 * Gets the web element dropdown selected value.
 	 * 
@@ -766,6 +866,36 @@ public class Keywords {
 		return webElementSelectedValue.getText();
 	}
 
+	/**
+	 * Gets the screenshot of the web element. Width and Height percentage optional.
+	 * 
+	 * @param webElement          - web element to screenshot.
+	 * @param intWidthPercentage  - width percentage of web element.
+	 * @param intHeightPercentage - height percentage of web element.
+	 * @return Returns the cropped web element image.
+	 */
+	public BufferedImage getWebElementScreenshot(WebElement webElement, int intWidthPercentage,
+			int intHeightPercentage) throws Exception {
+		byte[] byteScreenshot = ((TakesScreenshot) webDriver).getScreenshotAs(OutputType.BYTES);
+		BufferedImage fullImage = ImageIO.read(new ByteArrayInputStream(byteScreenshot));
+		Point point = webElement.getLocation();
+		int intWebElementWidth = webElement.getSize().getWidth();
+		int intWebElementHeight = webElement.getSize().getHeight();
+
+		if (intWidthPercentage != 0) {
+			intWebElementWidth = intWebElementWidth * intWidthPercentage / 100;
+		}
+
+		if (intHeightPercentage != 0) {
+			intWebElementHeight = intWebElementHeight * intHeightPercentage / 100;
+		}
+
+		intWebElementWidth = Math.min(intWebElementWidth, fullImage.getWidth() - point.getX());
+		intWebElementHeight = Math.min(intWebElementHeight, fullImage.getHeight() - point.getY());
+
+		return fullImage.getSubimage(point.getX(), point.getY(), intWebElementWidth, intWebElementHeight);
+	}
+
 	/**
 	 * Gets the web element text.
 	 * 
@@ -802,17 +932,20 @@ public class Keywords {
 			intDuration = intDuration * 60000;
 		}
 
-		Thread.sleep(intDuration);
+		ScenarioTrace.begin("wait", "wait", intDuration + " ms");
+
+		try {
+			Thread.sleep(intDuration);
+		} finally {
+			ScenarioTrace.end();
+		}
 	}
 
 	/**
 	 * Wait until a browser alert popup is present.
 	 */
 	public void waitUntilAlertPresent() {
-		WebDriverWait webDriverWait = new WebDriverWait(webDriver,
-				Long.parseLong(Base.configurationVariables("waitTimeout")));
-
-		webDriverWait.until(ExpectedConditions.alertIsPresent());
+		waitUntil("waitUntilAlertPresent", "alert", 0, ExpectedConditions.alertIsPresent());
 	}
 
 	/**
@@ -822,10 +955,22 @@ public class Keywords {
 	 * @param strText    - text to expect in the web element.
 	 */
 	public void waitUntilTextPresentInWebElement(WebElement webElement, String strText) {
-		WebDriverWait webDriverWait = new WebDriverWait(webDriver,
-				Long.parseLong(Base.configurationVariables("waitTimeout")));
+		waitUntilTextPresentInWebElement(webElement, strText, 0);
+	}
 
-		webDriverWait.until(ExpectedConditions.textToBePresentInElement(webElement, strText));
+	/**
+	 * Wait until text is present in the web element. Overrides the learned or
+	 * global timeout.
+	 * 
+	 * @param webElement        - web element to check.
+	 * @param strText           - text to expect in the web element.
+	 * @param lngTimeoutSeconds - timeout for this call, 0 to use the default.
+	 */
+	public void waitUntilTextPresentInWebElement(WebElement webElement, String strText, long lngTimeoutSeconds) {
+		StepRetry.run("waitUntilTextPresentInWebElement", () -> {
+			waitUntil("waitUntilTextPresentInWebElement", webElement, lngTimeoutSeconds,
+					ExpectedConditions.textToBePresentInElement(webElement, strText));
+		});
 	}
 
 	/**
@@ -834,10 +979,7 @@ public class Keywords {
 	 * @param strTitle - string to be expected.
 	 */
 	public void waitUntilWebBrowserTitleContains(String strTitle) {
-		WebDriverWait webDriverWait = new WebDriverWait(webDriver,
-				Long.parseLong(Base.configurationVariables("waitTimeout")));
-
-		webDriverWait.until(ExpectedConditions.titleContains(strTitle));
+		waitUntil("waitUntilWebBrowserTitleContains", strTitle, 0, ExpectedConditions.titleContains(strTitle));
 	}
 
 	/**
@@ -848,10 +990,8 @@ public class Keywords {
 	 * @param strValue     - expected attribute value.
 	 */
 	public void waitUntilWebElementAttributeValueContains(WebElement webElement, String strAttribute, String strValue) {
-		WebDriverWait webDriverWait = new WebDriverWait(webDriver,
-				Long.parseLong(Base.configurationVariables("waitTimeout")));
-
-		webDriverWait.until(ExpectedConditions.attributeContains(webElement, strAttribute, strValue));
+		waitUntil("waitUntilWebElementAttributeValueContains", webElement, 0,
+				ExpectedConditions.attributeContains(webElement, strAttribute, strValue));
 	}
 
 	/**
@@ -863,10 +1003,7 @@ public class Keywords {
 	 */
 	public void waitUntilWebElementAttributeValueDoesNotContains(WebElement webElement, String strAttribute,
 			String strValue) {
-		WebDriverWait webDriverWait = new WebDriverWait(webDriver,
-				Long.parseLong(Base.configurationVariables("waitTimeout")));
-
-		webDriverWait.until(
+		waitUntil("waitUntilWebElementAttributeValueDoesNotContains", webElement, 0,
 				ExpectedConditions.not(ExpectedConditions.attributeContains(webElement, strAttribute, strValue)));
 	}
 
@@ -876,10 +1013,21 @@ public class Keywords {
 	 * @param webElement - web element to check.
 	 */
 	public void waitUntilWebElementClickable(WebElement webElement) {
-		WebDriverWait webDriverWait = new WebDriverWait(webDriver,
-				Long.parseLong(Base.configurationVariables("waitTimeout")));
+		waitUntilWebElementClickable(webElement, 0);
+	}
 
-		webDriverWait.until(ExpectedConditions.elementToBeClickable(webElement));
+	/**
+	 * Wait until web element can be clicked. Overrides the learned or global
+	 * timeout.
+	 * 
+	 * @param webElement        - web element to check.
+	 * @param lngTimeoutSeconds - timeout for this call, 0 to use the default.
+	 */
+	public void waitUntilWebElementClickable(WebElement webElement, long lngTimeoutSeconds) {
+		StepRetry.run("waitUntilWebElementClickable", () -> {
+			waitUntil("waitUntilWebElementClickable", webElement, lngTimeoutSeconds,
+					ExpectedConditions.elementToBeClickable(webElement));
+		});
 	}
 
 	/**
@@ -888,10 +1036,21 @@ public class Keywords {
 	 * @param webElement - web element to check.
 	 */
 	public void waitUntilWebElementInvisible(WebElement webElement) {
-		WebDriverWait webDriverWait = new WebDriverWait(webDriver,
-				Long.parseLong(Base.configurationVariables("waitTimeout")));
+		waitUntilWebElementInvisible(webElement, 0);
+	}
 
-		webDriverWait.until(ExpectedConditions.invisibilityOf(webElement));
+	/**
+	 * Wait until web element is invisible. Overrides the learned or global
+	 * timeout.
+	 * 
+	 * @param webElement        - web element to check.
+	 * @param lngTimeoutSeconds - timeout for this call, 0 to use the default.
+	 */
+	public void waitUntilWebElementInvisible(WebElement webElement, long lngTimeoutSeconds) {
+		StepRetry.run("waitUntilWebElementInvisible", () -> {
+			waitUntil("waitUntilWebElementInvisible", webElement, lngTimeoutSeconds,
+					ExpectedConditions.invisibilityOf(webElement));
+		});
 	}
 
 	/**
@@ -900,10 +1059,8 @@ public class Keywords {
 	 * @param strWebElementXPath - web element XPath to check.
 	 */
 	public void waitUntilWebElementXPathNotExisting(String strWebElementXPath) {
-		WebDriverWait webDriverWait = new WebDriverWait(webDriver,
-				Long.parseLong(Base.configurationVariables("waitTimeout")));
-
-		webDriverWait.until(ExpectedConditions.invisibilityOfElementLocated(By.xpath(strWebElementXPath)));
+		waitUntil("waitUntilWebElementXPathNotExisting", strWebElementXPath, 0,
+				ExpectedConditions.invisibilityOfElementLocated(By.xpath(strWebElementXPath)));
 	}
 
 	/**
@@ -913,10 +1070,8 @@ public class Keywords {
 	 * @param blnIsSelected - selection state of the web element.
 	 */
 	public void waitUntilWebElementSelectionStateToBe(WebElement webElement, Boolean blnIsSelected) {
-		WebDriverWait webDriverWait = new WebDriverWait(webDriver,
-				Long.parseLong(Base.configurationVariables("waitTimeout")));
-
-		webDriverWait.until(ExpectedConditions.elementSelectionStateToBe(webElement, blnIsSelected));
+		waitUntil("waitUntilWebElementSelectionStateToBe", webElement, 0,
+				ExpectedConditions.elementSelectionStateToBe(webElement, blnIsSelected));
 	}
 
 	/**
@@ -925,9 +1080,55 @@ public class Keywords {
 	 * @param webElement - web element to check.
 	 */
 	public void waitUntilWebElementVisible(WebElement webElement) {
-		WebDriverWait webDriverWait = new WebDriverWait(webDriver,
-				Long.parseLong(Base.configurationVariables("waitTimeout")));
+		waitUntilWebElementVisible(webElement, 0);
+	}
+
+	/**
+	 * Wait until web element is visible. Overrides the learned or global timeout.
+	 * 
+	 * @param webElement        - web element to check.
+	 * @param lngTimeoutSeconds - timeout for this call, 0 to use the default.
+	 */
+	public void waitUntilWebElementVisible(WebElement webElement, long lngTimeoutSeconds) {
+		StepRetry.run("waitUntilWebElementVisible", () -> {
+			waitUntil("waitUntilWebElementVisible", webElement, lngTimeoutSeconds,
+					ExpectedConditions.visibilityOf(webElement));
+			EnvironmentCircuitBreaker.recordSuccess();
+		});
+	}
+
+	/**
+	 * Waits for the condition using the per call timeout, the learned timeout of
+	 * the wait, or the global waitTimeout, in that order. The observed duration is
+	 * recorded for the learned timeouts.
+	 * 
+	 * @param strKeyword        - wait keyword name.
+	 * @param locator           - web element or locator that identifies the wait.
+	 * @param lngTimeoutSeconds - timeout for this call, 0 to use the default.
+	 * @param expectedCondition - condition to wait for.
+	 */
+	private <T> T waitUntil(String strKeyword, Object locator, long lngTimeoutSeconds,
+			ExpectedCondition<T> expectedCondition) {
+		String strWaitKey = WaitTimeoutAdvisor.getWaitKey(strKeyword, locator);
+		long lngTimeoutMillis = lngTimeoutSeconds > 0 ? lngTimeoutSeconds * 1000
+				: WaitTimeoutAdvisor.getTimeoutMillis(strWaitKey);
+		WebDriverWait webDriverWait = new WebDriverWait(webDriver, 0);
+		long lngStartMillis = System.currentTimeMillis();
+
+		webDriverWait.withTimeout(Duration.ofMillis(lngTimeoutMillis));
+		ScenarioTrace.begin("wait", strKeyword, strWaitKey + " (timeout " + lngTimeoutMillis + " ms)");
 
-		webDriverWait.until(ExpectedConditions.visibilityOf(webElement));
+		try {
+			T result = webDriverWait.until(expectedCondition);
+
+			WaitTimeoutAdvisor.record(strWaitKey, System.currentTimeMillis() - lngStartMillis);
+
+			return result;
+		} catch (TimeoutException timeoutException) {
+			WaitTimeoutAdvisor.recordTimeout(strWaitKey, lngTimeoutMillis);
+			throw timeoutException;
+		} finally {
+			ScenarioTrace.end();
+		}
 	}
 }
\ No newline at end of file
@@ -0,0 +1,129 @@
+package utilities;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.openqa.selenium.HasCapabilities;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.TakesScreenshot;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.interactions.Interactive;
+
+/**
+ * WebDriver handle that starts the real browser on the first call that needs
+ * it. Scenarios that never touch the browser (REST or Excel only) never launch
+ * one, and quitting a handle that was never started is free.
+ */
+public class LazyWebDriver implements InvocationHandler {
+	// Implemented by every RemoteWebDriver; Actions falls back to Interactive when
+	// HasInputDevices (deprecated) is missing.
+	private static final Class<?>[] clsInterfaces = { WebDriver.class, JavascriptExecutor.class,
+			TakesScreenshot.class, HasCapabilities.class, Interactive.class };
+
+	private static final AtomicLong atomicLaunched = new AtomicLong();
+	private static final AtomicLong atomicAvoided = new AtomicLong();
+
+	static {
+		RunSummary.register("Browser Launches",
+				() -> atomicLaunched.get() + " launched, " + atomicAvoided.get() + " avoided");
+	}
+
+	private final Supplier<WebDriver> webDriverSupplier;
+	private WebDriver webDriver;
+
+	private LazyWebDriver(Supplier<WebDriver> webDriverSupplier) {
+		this.webDriverSupplier = webDriverSupplier;
+	}
+
+	// ==================================================|Create|==================================================
+	/**
+	 * Creates a lazy web driver handle.
+	 *
+	 * @param webDriverSupplier - starts the real browser on first use.
+	 * @return Returns the handle, usable anywhere a WebDriver is expected.
+	 */
+	public static WebDriver create(Supplier<WebDriver> webDriverSupplier) {
+		return (WebDriver) Proxy.newProxyInstance(LazyWebDriver.class.getClassLoader(), clsInterfaces,
+				new LazyWebDriver(webDriverSupplier));
+	}
+
+	/**
+	 * Counts a browser launch that was skipped without creating a handle (for
+	 * example an @api scenario).
+	 */
+	public static void countAvoided() {
+		atomicAvoided.incrementAndGet();
+	}
+
+	public static void countLaunched() {
+		atomicLaunched.incrementAndGet();
+	}
+
+	/**
+	 * Checks if the web driver is a real browser or a lazy handle that was started.
+	 *
+	 * @param webDriver - web driver or lazy handle.
+	 * @return True if a browser is running behind it, false otherwise.
+	 */
+	public static boolean isStarted(WebDriver webDriver) {
+		return unwrap(webDriver) != null;
+	}
+
+	/**
+	 * Gets the real web driver behind a lazy handle without starting it.
+	 *
+	 * @param webDriver - web driver or lazy handle.
+	 * @return Returns the real web driver, or null if the handle was not started.
+	 */
+	public static WebDriver unwrap(WebDriver webDriver) {
+		if (webDriver != null && Proxy.isProxyClass(webDriver.getClass())
+				&& Proxy.getInvocationHandler(webDriver) instanceof LazyWebDriver)
+			return ((LazyWebDriver) Proxy.getInvocationHandler(webDriver)).webDriver;
+
+		return webDriver;
+	}
+
+	// ==================================================|Invoke|==================================================
+	@Override
+	public Object invoke(Object objProxy, Method method, Object[] objArgs) throws Throwable {
+		switch (method.getName()) {
+		case "toString":
+			return "LazyWebDriver(" + (webDriver != null ? webDriver : "not started") + ")";
+		case "hashCode":
+			return System.identityHashCode(objProxy);
+		case "equals":
+			return objProxy == objArgs[0];
+		case "quit":
+		case "close":
+			if (webDriver == null) {
+				atomicAvoided.incrementAndGet();
+				return null;
+			}
+
+			break;
+		}
+
+		WebDriver webDriverTarget = getOrStart();
+
+		if (!method.getDeclaringClass().isInstance(webDriverTarget))
+			throw new UnsupportedOperationException(webDriverTarget.getClass().getSimpleName() + " does not implement "
+					+ method.getDeclaringClass().getSimpleName());
+
+		try {
+			return method.invoke(webDriverTarget, objArgs);
+		} catch (InvocationTargetException invocationTargetException) {
+			throw invocationTargetException.getCause();
+		}
+	}
+
+	private synchronized WebDriver getOrStart() {
+		if (webDriver == null)
+			webDriver = webDriverSupplier.get();
+
+		return webDriver;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,305 @@
+package utilities;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+import io.cucumber.testng.FeatureWrapper;
+import io.cucumber.testng.Pickle;
+import io.cucumber.testng.PickleWrapper;
+
+/**
+ * Reuses the Cucumber scenarios as a browser-driven load test. With loadMode
+ * on, the scenario rows matching loadTags are handed to loadUsers virtual
+ * users. Each user is one parallel data provider row that starts after its
+ * share of the ramp-up, then runs the scenarios in turn with headless browsers
+ * and a random think time between iterations. It stops after loadIterations or
+ * when loadDurationSeconds has passed. Step latency percentiles, throughput and
+ * error rates per loadIntervalSeconds are written as CSV reports.
+ */
+public class LoadMode {
+	public static final class VirtualUserPickleWrapper implements PickleWrapper {
+		private final int intUser;
+		private final List<Object[]> listRows;
+
+		VirtualUserPickleWrapper(int intUser, List<Object[]> listRows) {
+			this.intUser = intUser;
+			this.listRows = listRows;
+		}
+
+		@Override
+		public Pickle getPickle() {
+			return ((PickleWrapper) listRows.get(0)[0]).getPickle();
+		}
+
+		@Override
+		public String toString() {
+			return "\"Virtual user " + (intUser + 1) + "\"";
+		}
+	}
+
+	static final class Interval {
+		final AtomicLong atomicIterations = new AtomicLong();
+		final AtomicLong atomicErrors = new AtomicLong();
+		final AtomicInteger atomicPeakUsers = new AtomicInteger();
+		final List<Long> listDurations = Collections.synchronizedList(new ArrayList<>());
+	}
+
+	static final class StepLatency {
+		final List<Long> listDurations = Collections.synchronizedList(new ArrayList<>());
+		final AtomicLong atomicErrors = new AtomicLong();
+	}
+
+	// ==================================================|Settings|==================================================
+	private static final boolean blnEnabled = Base.configurationVariables("loadMode").equals("true");
+	private static final int intUsers = Math.max(1, Integer.parseInt(Base.configurationVariables("loadUsers")));
+	private static final long lngRampUpMillis = Long.parseLong(Base.configurationVariables("loadRampUpSeconds")) * 1000;
+	private static final long lngDurationMillis = Long.parseLong(Base.configurationVariables("loadDurationSeconds"))
+			* 1000;
+	private static final int intIterations = Integer.parseInt(Base.configurationVariables("loadIterations"));
+	private static final long lngThinkTimeMinMillis = Long
+			.parseLong(Base.configurationVariables("loadThinkTimeMinMillis"));
+	private static final long lngThinkTimeMaxMillis = Long
+			.parseLong(Base.configurationVariables("loadThinkTimeMaxMillis"));
+	private static final long lngIntervalMillis = Long.parseLong(Base.configurationVariables("loadIntervalSeconds"))
+			* 1000;
+	private static final double dblMaxErrorRate = Double.parseDouble(Base.configurationVariables("loadMaxErrorRate"));
+
+	// ==================================================|State|==================================================
+	private static final Map<Long, Interval> mapIntervals = new ConcurrentSkipListMap<>();
+	private static final Map<String, StepLatency> mapSteps = new ConcurrentSkipListMap<>();
+	private static final AtomicInteger atomicActiveUsers = new AtomicInteger();
+	private static final AtomicLong atomicIterations = new AtomicLong();
+	private static final AtomicLong atomicErrors = new AtomicLong();
+	private static volatile long lngLoadStartMillis;
+	private static volatile long lngLoadEndMillis;
+
+	static {
+		RunSummary.register("Load Test", LoadMode::getSummary);
+	}
+
+	// ==================================================|Expand|==================================================
+	public static boolean isEnabled() {
+		return blnEnabled;
+	}
+
+	public static int getUsers() {
+		return intUsers;
+	}
+
+	/**
+	 * Replaces the scenario rows by one row per virtual user. Every user runs all
+	 * rows tagged with one of loadTags (all rows when empty). Returns the rows
+	 * unchanged when load mode is off.
+	 *
+	 * @param iteratorScenarios - rows of [PickleWrapper, FeatureWrapper].
+	 * @return Returns an iterator over the virtual user rows.
+	 */
+	public static Iterator<Object[]> expand(Iterator<Object[]> iteratorScenarios) {
+		if (!blnEnabled)
+			return iteratorScenarios;
+
+		List<String> listTags = new ArrayList<>();
+		List<Object[]> listRows = new ArrayList<>();
+		List<Object[]> listUsers = new ArrayList<>();
+
+		for (String strTag : Base.configurationVariables("loadTags").split(";")) {
+			if (!strTag.isBlank())
+				listTags.add(strTag.trim());
+		}
+
+		while (iteratorScenarios.hasNext()) {
+			Object[] objScenario = iteratorScenarios.next();
+
+			if (listTags.isEmpty()
+					|| !Collections.disjoint(listTags, ((PickleWrapper) objScenario[0]).getPickle().getTags()))
+				listRows.add(objScenario);
+		}
+
+		if (listRows.isEmpty())
+			return listUsers.iterator();
+
+		for (int intUser = 0; intUser < intUsers; intUser++)
+			listUsers.add(new Object[] { new VirtualUserPickleWrapper(intUser, listRows), listRows.get(0)[1] });
+
+		return listUsers.iterator();
+	}
+
+	// ==================================================|Run|==================================================
+	/**
+	 * Runs the scenarios of one virtual user until the iteration count or the
+	 * duration is reached. Scenario failures are counted, not thrown, so the user
+	 * keeps going; the user fails at the end if its error rate is above
+	 * loadMaxErrorRate percent.
+	 *
+	 * @param virtualUserPickleWrapper - virtual user row.
+	 * @param scenarioRunner           - runs one scenario row on the current
+	 *                                 thread and throws if it fails.
+	 */
+	public static void runVirtualUser(VirtualUserPickleWrapper virtualUserPickleWrapper,
+			BiConsumer<PickleWrapper, FeatureWrapper> scenarioRunner) {
+		synchronized (LoadMode.class) {
+			if (lngLoadStartMillis == 0)
+				lngLoadStartMillis = System.currentTimeMillis();
+		}
+
+		List<Object[]> listRows = virtualUserPickleWrapper.listRows;
+		int intIterationLimit = intIterations > 0 ? intIterations : lngDurationMillis > 0 ? Integer.MAX_VALUE : 1;
+		long lngDeadlineMillis = lngDurationMillis > 0 ? lngLoadStartMillis + lngDurationMillis : Long.MAX_VALUE;
+		long lngUserIterations = 0;
+		long lngUserErrors = 0;
+
+		sleepUntil(lngLoadStartMillis + lngRampUpMillis * virtualUserPickleWrapper.intUser / intUsers,
+				lngDeadlineMillis);
+		atomicActiveUsers.incrementAndGet();
+
+		try {
+			for (int intIteration = 0; intIteration < intIterationLimit
+					&& System.currentTimeMillis() < lngDeadlineMillis; intIteration++) {
+				Object[] objScenario = listRows.get((virtualUserPickleWrapper.intUser + intIteration) % listRows.size());
+				long lngStartMillis = System.currentTimeMillis();
+				boolean blnFailed = false;
+
+				Base.setExecutionVariable("browserHeadless", "true");
+
+				try {
+					scenarioRunner.accept((PickleWrapper) objScenario[0], (FeatureWrapper) objScenario[1]);
+				} catch (Throwable throwable) {
+					blnFailed = true;
+					lngUserErrors++;
+				}
+
+				lngUserIterations++;
+				recordIteration(lngStartMillis, System.currentTimeMillis() - lngStartMillis, blnFailed);
+
+				long lngThinkTimeMillis = lngThinkTimeMaxMillis > lngThinkTimeMinMillis
+						? ThreadLocalRandom.current().nextLong(lngThinkTimeMinMillis, lngThinkTimeMaxMillis + 1)
+						: lngThinkTimeMinMillis;
+
+				sleepUntil(System.currentTimeMillis() + lngThinkTimeMillis, lngDeadlineMillis);
+			}
+		} finally {
+			atomicActiveUsers.decrementAndGet();
+			Base.clearExecutionVariables();
+			lngLoadEndMillis = Math.max(lngLoadEndMillis, System.currentTimeMillis());
+		}
+
+		if (lngUserIterations > 0 && lngUserErrors * 100.0 / lngUserIterations > dblMaxErrorRate)
+			throw new AssertionError(virtualUserPickleWrapper + " failed " + lngUserErrors + " of " + lngUserIterations
+					+ " iterations, above the " + dblMaxErrorRate + "% error rate limit");
+	}
+
+	/**
+	 * Records the latency of a finished step while load mode is on. Steps skipped
+	 * after an earlier failure did not run and are not counted.
+	 *
+	 * @param strStep           - step text.
+	 * @param strStatus         - result status.
+	 * @param lngDurationMillis - step duration.
+	 */
+	public static void recordStep(String strStep, String strStatus, long lngDurationMillis) {
+		if (!blnEnabled || "SKIPPED".equals(strStatus))
+			return;
+
+		StepLatency stepLatency = mapSteps.computeIfAbsent(strStep, strKey -> new StepLatency());
+
+		stepLatency.listDurations.add(lngDurationMillis);
+
+		if (!"PASSED".equals(strStatus))
+			stepLatency.atomicErrors.incrementAndGet();
+	}
+
+	private static void recordIteration(long lngStartMillis, long lngDurationMillis, boolean blnFailed) {
+		Interval interval = mapIntervals.computeIfAbsent((lngStartMillis - lngLoadStartMillis) / lngIntervalMillis,
+				lngKey -> new Interval());
+
+		interval.atomicIterations.incrementAndGet();
+		interval.atomicPeakUsers.accumulateAndGet(atomicActiveUsers.get(), Math::max);
+		interval.listDurations.add(lngDurationMillis);
+		atomicIterations.incrementAndGet();
+
+		if (blnFailed) {
+			interval.atomicErrors.incrementAndGet();
+			atomicErrors.incrementAndGet();
+		}
+	}
+
+	private static void sleepUntil(long lngWakeMillis, long lngDeadlineMillis) {
+		long lngSleepMillis = Math.min(lngWakeMillis, lngDeadlineMillis) - System.currentTimeMillis();
+
+		if (lngSleepMillis <= 0)
+			return;
+
+		try {
+			Thread.sleep(lngSleepMillis);
+		} catch (InterruptedException interruptedException) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	// ==================================================|Report|==================================================
+	public static String getSummary() {
+		if (atomicIterations.get() == 0)
+			return null;
+
+		File fileDirectory = new File(Base.configurationVariables("loadReportDirectory"));
+		StringBuilder stepsBuilder = new StringBuilder(
+				"Step,Count,Errors,Error Rate (%),p50 (ms),p90 (ms),p95 (ms),p99 (ms),Max (ms)\n");
+		StringBuilder timelineBuilder = new StringBuilder(
+				"Interval Start (s),Active Users,Iterations,Errors,Error Rate (%),Throughput (iterations/s),p50 (ms),p90 (ms)\n");
+
+		for (Map.Entry<String, StepLatency> entry : mapSteps.entrySet()) {
+			List<Long> listDurations = new ArrayList<>(entry.getValue().listDurations);
+			long lngErrors = entry.getValue().atomicErrors.get();
+
+			stepsBuilder.append('"').append(entry.getKey().replace("\"", "'")).append("\",").append(listDurations.size())
+					.append(',').append(lngErrors).append(',')
+					.append(Math.round(lngErrors * 1000.0 / listDurations.size()) / 10.0).append(',')
+					.append(PageTiming.getPercentile(listDurations, 50)).append(',')
+					.append(PageTiming.getPercentile(listDurations, 90)).append(',')
+					.append(PageTiming.getPercentile(listDurations, 95)).append(',')
+					.append(PageTiming.getPercentile(listDurations, 99)).append(',')
+					.append(Collections.max(listDurations)).append('\n');
+		}
+
+		for (Map.Entry<Long, Interval> entry : mapIntervals.entrySet()) {
+			Interval interval = entry.getValue();
+			List<Long> listDurations = new ArrayList<>(interval.listDurations);
+
+			timelineBuilder.append(entry.getKey() * lngIntervalMillis / 1000).append(',')
+					.append(interval.atomicPeakUsers.get()).append(',').append(interval.atomicIterations.get())
+					.append(',').append(interval.atomicErrors.get()).append(',')
+					.append(Math.round(interval.atomicErrors.get() * 1000.0 / interval.atomicIterations.get()) / 10.0)
+					.append(',').append(Math.round(interval.atomicIterations.get() * 100000.0 / lngIntervalMillis) / 100.0)
+					.append(',').append(PageTiming.getPercentile(listDurations, 50)).append(',')
+					.append(PageTiming.getPercentile(listDurations, 90)).append('\n');
+		}
+
+		try {
+			fileDirectory.mkdirs();
+			Files.write(new File(fileDirectory, "load-steps.csv").toPath(),
+					stepsBuilder.toString().getBytes(StandardCharsets.UTF_8));
+			Files.write(new File(fileDirectory, "load-timeline.csv").toPath(),
+					timelineBuilder.toString().getBytes(StandardCharsets.UTF_8));
+		} catch (Exception exception) {
+			exception.printStackTrace();
+		}
+
+		long lngElapsedMillis = Math.max(1, lngLoadEndMillis - lngLoadStartMillis);
+
+		return intUsers + " virtual users, " + atomicIterations.get() + " iterations in " + lngElapsedMillis / 1000
+				+ " s, " + Math.round(atomicIterations.get() * 100000.0 / lngElapsedMillis) / 100.0 + " iterations/s, "
+				+ Math.round(atomicErrors.get() * 1000.0 / atomicIterations.get()) / 10.0 + "% errors ("
+				+ fileDirectory.getPath() + ")";
+	}
+}
\ No newline at end of file
@@ -0,0 +1,139 @@
+package utilities;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import io.cucumber.java.Scenario;
+
+/**
+ * Collects Navigation Timing, Paint Timing and a resource timing summary of the
+ * current page with one asynchronous script call. The script waits (up to 5 s)
+ * for the load event to finish. Timings are kept per scenario and attached to
+ * it as JSON, and load times per page are summarised at the end of the run.
+ */
+public class PageTiming {
+	private static final String STR_SCRIPT = "var callback = arguments[arguments.length - 1];"
+			+ "var intPolls = 0;"
+			+ "(function collect() {"
+			+ "  var navigation = performance.getEntriesByType('navigation')[0];"
+			+ "  if (navigation && navigation.loadEventEnd === 0 && intPolls++ < 50) { setTimeout(collect, 100); return; }"
+			+ "  var timing = {};"
+			+ "  if (navigation) {"
+			+ "    timing.type = navigation.type;"
+			+ "    timing.timeToFirstByte = navigation.responseStart;"
+			+ "    timing.domContentLoaded = navigation.domContentLoadedEventEnd;"
+			+ "    timing.load = navigation.loadEventEnd;"
+			+ "    timing.transferSize = navigation.transferSize;"
+			+ "  } else {"
+			+ "    var legacy = performance.timing;"
+			+ "    timing.type = 'legacy';"
+			+ "    timing.timeToFirstByte = legacy.responseStart - legacy.navigationStart;"
+			+ "    timing.domContentLoaded = legacy.domContentLoadedEventEnd - legacy.navigationStart;"
+			+ "    timing.load = Math.max(0, legacy.loadEventEnd - legacy.navigationStart);"
+			+ "  }"
+			+ "  performance.getEntriesByType('paint').forEach(function(paint) { timing[paint.name] = paint.startTime; });"
+			+ "  var resources = performance.getEntriesByType('resource');"
+			+ "  timing.resourceCount = resources.length;"
+			+ "  timing.resourceTransferSize = resources.reduce(function(total, resource) { return total + (resource.transferSize || 0); }, 0);"
+			+ "  timing.slowestResources = resources.slice().sort(function(a, b) { return b.duration - a.duration; }).slice(0, 5)"
+			+ "    .map(function(resource) { return { name: resource.name, initiatorType: resource.initiatorType, duration: Math.round(resource.duration) }; });"
+			+ "  callback(JSON.stringify(timing));"
+			+ "})();";
+
+	// ==================================================|State|==================================================
+	private static final ThreadLocal<JsonArray> threadLocalTimings = ThreadLocal.withInitial(JsonArray::new);
+	private static final Map<String, List<Long>> mapPageLoadMillis = new ConcurrentSkipListMap<>();
+
+	static {
+		RunSummary.register("Page Load Times", PageTiming::getSummary);
+	}
+
+	// ==================================================|Capture|==================================================
+	/**
+	 * Captures the timings of the page that is loaded in the browser.
+	 *
+	 * @param webDriver   - web driver showing the page.
+	 * @param strPageName - page name or URL the timings are stored under.
+	 * @return Returns the timings; load, domContentLoaded, timeToFirstByte and the
+	 *         paint entries are milliseconds from the start of the navigation.
+	 */
+	public static JsonObject capture(WebDriver webDriver, String strPageName) {
+		JsonObject jsonTiming = JsonParser
+				.parseString((String) ((JavascriptExecutor) webDriver).executeAsyncScript(STR_SCRIPT))
+				.getAsJsonObject();
+
+		jsonTiming.addProperty("page", strPageName);
+		jsonTiming.addProperty("url", webDriver.getCurrentUrl());
+		threadLocalTimings.get().add(jsonTiming);
+		mapPageLoadMillis.computeIfAbsent(strPageName, strKey -> new CopyOnWriteArrayList<>())
+				.add(jsonTiming.get("load").getAsLong());
+
+		return jsonTiming;
+	}
+
+	/**
+	 * Attaches the timings captured during the scenario as JSON and clears them.
+	 *
+	 * @param scenario - scenario that is finishing.
+	 */
+	public static void attachToScenario(Scenario scenario) {
+		JsonArray jsonTimings = threadLocalTimings.get();
+
+		threadLocalTimings.remove();
+
+		if (jsonTimings.size() > 0)
+			scenario.attach(jsonTimings.toString().getBytes(StandardCharsets.UTF_8), "application/json",
+					"page-timings.json");
+	}
+
+	/**
+	 * Gets the load times captured so far in this run.
+	 *
+	 * @return Returns the load times in milliseconds per page name or URL.
+	 */
+	public static Map<String, List<Long>> getPageLoadMillis() {
+		return Collections.unmodifiableMap(mapPageLoadMillis);
+	}
+
+	/**
+	 * Gets the nearest-rank percentile of the values.
+	 *
+	 * @param listValues    - values, in any order.
+	 * @param intPercentile - percentile from 1 to 100.
+	 * @return Returns the value at the percentile.
+	 */
+	public static long getPercentile(List<Long> listValues, int intPercentile) {
+		List<Long> listSorted = new ArrayList<>(listValues);
+
+		Collections.sort(listSorted);
+
+		return listSorted.get(Math.max(0, (int) Math.ceil(intPercentile / 100.0 * listSorted.size()) - 1));
+	}
+
+	// ==================================================|Report|==================================================
+	public static String getSummary() {
+		if (mapPageLoadMillis.isEmpty())
+			return null;
+
+		StringBuilder stringBuilder = new StringBuilder();
+
+		for (Map.Entry<String, List<Long>> entry : mapPageLoadMillis.entrySet())
+			stringBuilder.append(entry.getKey()).append(": ").append(entry.getValue().size()).append(" loads, p50 ")
+					.append(getPercentile(entry.getValue(), 50)).append(" ms, p90 ")
+					.append(getPercentile(entry.getValue(), 90)).append(" ms; ");
+
+		return stringBuilder.toString().trim();
+	}
+}
\ No newline at end of file
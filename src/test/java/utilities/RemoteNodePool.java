@@ -0,0 +1,260 @@
+package utilities;
+
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.openqa.selenium.Capabilities;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.remote.RemoteWebDriver;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+/**
+ * Dispatches RemoteWebDriver sessions to the Selenium standalone or grid
+ * endpoints listed in remoteNodes. Every node has a slot capacity; a session
+ * goes to the node with the most free slots and waits in a queue while every
+ * node is full. Selenium 4 nodes also report their busy slots through /status,
+ * which is taken into account when other clients share the node.
+ */
+public class RemoteNodePool {
+	static final class Node {
+		final URL url;
+		final int intCapacity;
+		int intInUse;
+		int intPeakInUse;
+		long lngSessions;
+		long lngBusySinceMillis;
+		long lngBusyMillis;
+		long lngCreateMillis;
+		long lngMaxCreateMillis;
+
+		Node(URL url, int intCapacity) {
+			this.url = url;
+			this.intCapacity = intCapacity;
+		}
+	}
+
+	// ==================================================|Settings|==================================================
+	private static final List<Node> listNodes = parseNodes(Base.configurationVariables("remoteNodes"));
+	private static final long lngQueueTimeoutMillis = Long
+			.parseLong(Base.configurationVariables("remoteSessionQueueTimeoutSeconds")) * 1000;
+	private static final boolean blnQueryNodeStatus = Base.configurationVariables("remoteNodeStatusQuery")
+			.equals("true");
+
+	// ==================================================|State|==================================================
+	private static final Object objLock = new Object();
+	private static final Map<WebDriver, Node> mapSessionNodes = new ConcurrentHashMap<>();
+	private static final long lngStartMillis = System.currentTimeMillis();
+	private static long lngQueuedSessions;
+	private static long lngQueueWaitMillis;
+
+	static {
+		RunSummary.register("Remote Nodes", RemoteNodePool::getSummary);
+	}
+
+	// ==================================================|Sessions|==================================================
+	public static boolean isEnabled() {
+		return !listNodes.isEmpty();
+	}
+
+	/**
+	 * Creates a RemoteWebDriver session on the node with the most free slots.
+	 * Waits for a free slot when every node is full.
+	 *
+	 * @param capabilities - browser options (ChromeOptions, FirefoxOptions).
+	 * @return Returns the remote web driver.
+	 */
+	public static WebDriver createWebDriver(Capabilities capabilities) throws Exception {
+		Node node = acquire();
+		long lngCreateStartMillis = System.currentTimeMillis();
+		WebDriver webDriver;
+
+		try {
+			webDriver = new RemoteWebDriver(node.url, capabilities);
+		} catch (RuntimeException runtimeException) {
+			release(node);
+			throw runtimeException;
+		}
+
+		long lngCreateMillis = System.currentTimeMillis() - lngCreateStartMillis;
+
+		synchronized (objLock) {
+			node.lngSessions++;
+			node.lngCreateMillis += lngCreateMillis;
+			node.lngMaxCreateMillis = Math.max(node.lngMaxCreateMillis, lngCreateMillis);
+		}
+
+		mapSessionNodes.put(webDriver, node);
+
+		return webDriver;
+	}
+
+	/**
+	 * Frees the node slot of a remote web driver. Does nothing for local drivers.
+	 *
+	 * @param webDriver - web driver that was quit.
+	 */
+	public static void release(WebDriver webDriver) {
+		Node node = mapSessionNodes.remove(webDriver);
+
+		if (node != null)
+			release(node);
+	}
+
+	// ==================================================|Helpers|==================================================
+	private static Node acquire() throws Exception {
+		long lngWaitStartMillis = System.currentTimeMillis();
+		long lngDeadlineMillis = lngWaitStartMillis + lngQueueTimeoutMillis;
+		boolean blnQueued = false;
+		Map<Node, Integer> mapRemoteBusy = blnQueryNodeStatus ? queryRemoteBusySlots() : Map.of();
+
+		synchronized (objLock) {
+			while (true) {
+				Node bestNode = null;
+				int intBestFree = 0;
+
+				for (Node node : listNodes) {
+					int intBusy = Math.max(node.intInUse, mapRemoteBusy.getOrDefault(node, 0));
+					int intFree = node.intCapacity - intBusy;
+
+					if (intFree > intBestFree) {
+						bestNode = node;
+						intBestFree = intFree;
+					}
+				}
+
+				if (bestNode != null) {
+					if (bestNode.intInUse == 0)
+						bestNode.lngBusySinceMillis = System.currentTimeMillis();
+
+					bestNode.intInUse++;
+					bestNode.intPeakInUse = Math.max(bestNode.intPeakInUse, bestNode.intInUse);
+
+					if (blnQueued) {
+						lngQueuedSessions++;
+						lngQueueWaitMillis += System.currentTimeMillis() - lngWaitStartMillis;
+					}
+
+					return bestNode;
+				}
+
+				long lngRemainingMillis = lngDeadlineMillis - System.currentTimeMillis();
+
+				if (lngRemainingMillis <= 0)
+					throw new Exception("No free Selenium node slot within " + lngQueueTimeoutMillis / 1000 + " s");
+
+				blnQueued = true;
+				objLock.wait(lngRemainingMillis);
+				mapRemoteBusy = Map.of();
+			}
+		}
+	}
+
+	private static void release(Node node) {
+		synchronized (objLock) {
+			node.intInUse--;
+
+			if (node.intInUse == 0)
+				node.lngBusyMillis += System.currentTimeMillis() - node.lngBusySinceMillis;
+
+			objLock.notifyAll();
+		}
+	}
+
+	/**
+	 * Reads the busy slot count from the Selenium 4 /status endpoint of every node.
+	 * Nodes that do not answer in that format are left out.
+	 */
+	private static Map<Node, Integer> queryRemoteBusySlots() {
+		Map<Node, Integer> mapBusy = new ConcurrentHashMap<>();
+
+		for (Node node : listNodes) {
+			try {
+				String strBase = node.url.toString().replaceAll("/wd/hub/?$", "").replaceAll("/$", "");
+				HttpURLConnection httpURLConnection = (HttpURLConnection) new URL(strBase + "/status").openConnection();
+
+				httpURLConnection.setConnectTimeout(1000);
+				httpURLConnection.setReadTimeout(1000);
+
+				try (InputStreamReader inputStreamReader = new InputStreamReader(httpURLConnection.getInputStream(),
+						StandardCharsets.UTF_8)) {
+					JsonObject jsonValue = JsonParser.parseReader(inputStreamReader).getAsJsonObject()
+							.getAsJsonObject("value");
+					int intBusy = 0;
+
+					if (jsonValue == null || !jsonValue.has("nodes"))
+						continue;
+
+					for (JsonElement jsonNode : jsonValue.getAsJsonArray("nodes")) {
+						for (JsonElement jsonSlot : jsonNode.getAsJsonObject().getAsJsonArray("slots")) {
+							JsonElement jsonSession = jsonSlot.getAsJsonObject().get("session");
+
+							if (jsonSession != null && !jsonSession.isJsonNull())
+								intBusy++;
+						}
+					}
+
+					mapBusy.put(node, intBusy);
+				}
+			} catch (Exception exception) {
+				// Status is optional; local slot accounting still applies.
+			}
+		}
+
+		return mapBusy;
+	}
+
+	public static String getSummary() {
+		if (listNodes.isEmpty())
+			return null;
+
+		long lngElapsedMillis = Math.max(1, System.currentTimeMillis() - lngStartMillis);
+		StringBuilder stringBuilder = new StringBuilder();
+
+		synchronized (objLock) {
+			for (Node node : listNodes) {
+				long lngBusyMillis = node.lngBusyMillis
+						+ (node.intInUse > 0 ? System.currentTimeMillis() - node.lngBusySinceMillis : 0);
+
+				stringBuilder.append(node.url).append(": ").append(node.lngSessions).append(" sessions, peak ")
+						.append(node.intPeakInUse).append("/").append(node.intCapacity).append(" slots, busy ")
+						.append(lngBusyMillis * 100 / lngElapsedMillis).append("% of run, session create avg ")
+						.append(node.lngSessions == 0 ? 0 : node.lngCreateMillis / node.lngSessions)
+						.append(" ms max ").append(node.lngMaxCreateMillis).append(" ms; ");
+			}
+
+			stringBuilder.append(lngQueuedSessions).append(" sessions queued, ").append(lngQueueWaitMillis)
+					.append(" ms total queue wait");
+		}
+
+		return stringBuilder.toString();
+	}
+
+	private static List<Node> parseNodes(String strNodes) {
+		List<Node> listParsed = new ArrayList<>();
+
+		for (String strNode : strNodes.split(";")) {
+			if (strNode.isBlank())
+				continue;
+
+			String[] strParts = strNode.trim().split("\\|");
+
+			try {
+				listParsed.add(new Node(new URL(strParts[0].trim()),
+						strParts.length > 1 ? Integer.parseInt(strParts[1].trim()) : 1));
+			} catch (Exception exception) {
+				exception.printStackTrace();
+			}
+		}
+
+		return listParsed;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,185 @@
+package utilities;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Offline merge of the shard files written by ShardReportPlugin into a single
+ * JSON and HTML report. Shards are read line by line twice (totals, then rows),
+ * so memory does not depend on the number of scenarios.
+ *
+ * Usage: java -cp [test classpath] utilities.ReportMerger [runDirectory]
+ * [outputDirectory]
+ *
+ * Without arguments the latest run directory under reportShardDirectory is
+ * merged, shards of earlier runs are left out.
+ */
+public class ReportMerger {
+	private final Gson gson = new Gson();
+	private long lngScenarios;
+	private long lngDurationMillis;
+	private final Map<String, Long> mapStatusCounts = new TreeMap<>();
+	private final Map<String, Long> mapWorkerCounts = new TreeMap<>();
+
+	public static void main(String[] args) throws Exception {
+		File fileShardDirectory = args.length > 0 ? new File(args[0]) : getLatestRunDirectory();
+		String strOutputDirectory = args.length > 1 ? args[1] : Base.configurationVariables("reportMergeDirectory");
+
+		new ReportMerger().merge(fileShardDirectory, new File(strOutputDirectory));
+	}
+
+	/**
+	 * Gets the most recently modified run directory under reportShardDirectory,
+	 * or reportShardDirectory itself when it has no run directories.
+	 */
+	static File getLatestRunDirectory() {
+		File fileShardRoot = new File(Base.configurationVariables("reportShardDirectory"));
+		File[] fileRuns = fileShardRoot.listFiles(File::isDirectory);
+		File fileLatest = fileShardRoot;
+
+		if (fileRuns != null)
+			for (File fileRun : fileRuns)
+				if (fileLatest == fileShardRoot || fileRun.lastModified() > fileLatest.lastModified())
+					fileLatest = fileRun;
+
+		return fileLatest;
+	}
+
+	// ==================================================|Merge|==================================================
+	/**
+	 * Merges every *.ndjson shard directly in the shard directory (one run) into
+	 * report.json and report.html in the output directory.
+	 *
+	 * @param fileShardDirectory  - directory with the shard files.
+	 * @param fileOutputDirectory - directory for the merged report.
+	 */
+	public void merge(File fileShardDirectory, File fileOutputDirectory) throws Exception {
+		File[] fileShards = fileShardDirectory.listFiles((directory, strName) -> strName.endsWith(".ndjson"));
+
+		if (fileShards == null || fileShards.length == 0) {
+			System.out.println("No report shards found in " + fileShardDirectory.getPath());
+			return;
+		}
+
+		Arrays.sort(fileShards);
+		fileOutputDirectory.mkdirs();
+
+		for (File fileShard : fileShards)
+			readShard(fileShard, null, null);
+
+		try (JsonWriter jsonWriter = new JsonWriter(openWriter(new File(fileOutputDirectory, "report.json")));
+				Writer htmlWriter = openWriter(new File(fileOutputDirectory, "report.html"))) {
+			jsonWriter.beginObject();
+			jsonWriter.name("scenarios").value(lngScenarios);
+			jsonWriter.name("durationMillis").value(lngDurationMillis);
+			writeCounts(jsonWriter, "statuses", mapStatusCounts);
+			writeCounts(jsonWriter, "workers", mapWorkerCounts);
+			jsonWriter.name("results").beginArray();
+
+			writeHtmlHeader(htmlWriter);
+
+			for (File fileShard : fileShards)
+				readShard(fileShard, jsonWriter, htmlWriter);
+
+			jsonWriter.endArray();
+			jsonWriter.endObject();
+			htmlWriter.write("</tbody></table></body></html>\n");
+		}
+
+		System.out.println("Merged " + lngScenarios + " scenarios from " + fileShards.length + " shards into "
+				+ fileOutputDirectory.getPath());
+	}
+
+	// ==================================================|Helpers|==================================================
+	private void readShard(File fileShard, JsonWriter jsonWriter, Writer htmlWriter) throws Exception {
+		try (BufferedReader bufferedReader = new BufferedReader(
+				new InputStreamReader(new FileInputStream(fileShard), StandardCharsets.UTF_8))) {
+			String strLine;
+
+			while ((strLine = bufferedReader.readLine()) != null) {
+				if (strLine.isBlank())
+					continue;
+
+				JsonObject jsonScenario;
+
+				try {
+					jsonScenario = JsonParser.parseString(strLine).getAsJsonObject();
+				} catch (Exception exception) {
+					// A JVM that was killed mid-write can leave a partial last line.
+					continue;
+				}
+
+				if (jsonWriter == null) {
+					lngScenarios++;
+					lngDurationMillis += jsonScenario.get("durationMillis").getAsLong();
+					mapStatusCounts.merge(jsonScenario.get("status").getAsString(), 1L, Long::sum);
+					mapWorkerCounts.merge(jsonScenario.get("worker").getAsString(), 1L, Long::sum);
+				} else {
+					gson.toJson(jsonScenario, jsonWriter);
+					writeHtmlRow(htmlWriter, jsonScenario);
+				}
+			}
+		}
+	}
+
+	private void writeCounts(JsonWriter jsonWriter, String strName, Map<String, Long> mapCounts) throws Exception {
+		jsonWriter.name(strName).beginObject();
+
+		for (Map.Entry<String, Long> entry : mapCounts.entrySet())
+			jsonWriter.name(entry.getKey()).value(entry.getValue());
+
+		jsonWriter.endObject();
+	}
+
+	private void writeHtmlHeader(Writer htmlWriter) throws Exception {
+		htmlWriter.write("<!DOCTYPE html><html><head><meta charset=\"UTF-8\"><title>Merged Report</title>"
+				+ "<style>body{font-family:sans-serif}table{border-collapse:collapse}td,th{border:1px solid #ccc;"
+				+ "padding:4px 8px}.PASSED{color:green}.FAILED{color:red}.SKIPPED{color:gray}</style></head><body>\n");
+		htmlWriter.write("<h1>Merged Report</h1><p>Scenarios: " + lngScenarios + " | Total duration: "
+				+ lngDurationMillis / 1000 + " s</p><ul>\n");
+
+		for (Map.Entry<String, Long> entry : mapStatusCounts.entrySet())
+			htmlWriter.write("<li class=\"" + entry.getKey() + "\">" + entry.getKey() + ": " + entry.getValue()
+					+ "</li>\n");
+
+		for (Map.Entry<String, Long> entry : mapWorkerCounts.entrySet())
+			htmlWriter.write("<li>Worker " + escape(entry.getKey()) + ": " + entry.getValue() + "</li>\n");
+
+		htmlWriter.write("</ul><table><thead><tr><th>Feature</th><th>Scenario</th><th>Status</th>"
+				+ "<th>Duration (ms)</th><th>Worker</th><th>Error</th></tr></thead><tbody>\n");
+	}
+
+	private void writeHtmlRow(Writer htmlWriter, JsonObject jsonScenario) throws Exception {
+		String strStatus = jsonScenario.get("status").getAsString();
+
+		htmlWriter.write("<tr><td>" + escape(jsonScenario.get("uri").getAsString()) + ":"
+				+ jsonScenario.get("line").getAsInt() + "</td><td>" + escape(jsonScenario.get("name").getAsString())
+				+ "</td><td class=\"" + strStatus + "\">" + strStatus + "</td><td>"
+				+ jsonScenario.get("durationMillis").getAsLong() + "</td><td>"
+				+ escape(jsonScenario.get("worker").getAsString()) + "</td><td>"
+				+ (jsonScenario.has("error") ? escape(jsonScenario.get("error").getAsString()) : "") + "</td></tr>\n");
+	}
+
+	private static Writer openWriter(File file) throws Exception {
+		return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8));
+	}
+
+	private static String escape(String strValue) {
+		return strValue.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+	}
+}
\ No newline at end of file
@@ -0,0 +1,311 @@
+package utilities;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+/**
+ * Non-blocking bus for live run events. Test threads only offer events to a
+ * bounded queue; when it is full the event is dropped and counted. A single
+ * daemon thread drains the queue to an NDJSON file and to any dashboard
+ * connected to the optional local socket, and emits a stats event every second
+ * with throughput, active threads and the slowest in-flight steps. Each
+ * dashboard has its own bounded queue and writer thread, so a slow dashboard
+ * never blocks the drain thread; lines that do not fit in its queue are dropped
+ * and counted.
+ */
+public class RunEventBus {
+	// ==================================================|Event|==================================================
+	public static final class Event {
+		final String strType;
+		final String strThread;
+		final long lngTimestampMillis;
+		final String strScenario;
+		final String strStep;
+		final String strStatus;
+		final long lngDurationMillis;
+
+		Event(String strType, String strScenario, String strStep, String strStatus, long lngDurationMillis) {
+			this.strType = strType;
+			this.strThread = Thread.currentThread().getName();
+			this.lngTimestampMillis = System.currentTimeMillis();
+			this.strScenario = strScenario;
+			this.strStep = strStep;
+			this.strStatus = strStatus;
+			this.lngDurationMillis = lngDurationMillis;
+		}
+	}
+
+	// ==================================================|Client|==================================================
+	private static final class Client {
+		final Socket socket;
+		final ArrayBlockingQueue<String> queueLines;
+		final Thread threadWriter;
+
+		Client(Socket socket, int intCapacity) {
+			this.socket = socket;
+			this.queueLines = new ArrayBlockingQueue<>(intCapacity);
+			this.threadWriter = new Thread(() -> {
+				try {
+					while (true)
+						socket.getOutputStream().write(queueLines.take().getBytes(StandardCharsets.UTF_8));
+				} catch (Exception exception) {
+					close();
+				}
+			}, "run-event-client-" + socket.getPort());
+			this.threadWriter.setDaemon(true);
+		}
+
+		/**
+		 * Queues the line for this dashboard. Drops and counts it if the queue is
+		 * full.
+		 */
+		void offer(String strLine) {
+			if (!queueLines.offer(strLine))
+				atomicDashboardDropped.incrementAndGet();
+		}
+
+		void close() {
+			listClients.remove(this);
+			// Wakes the writer if it is waiting for a line.
+			threadWriter.interrupt();
+
+			try {
+				socket.close();
+			} catch (Exception exception) {
+				// Already closed.
+			}
+		}
+	}
+
+	// ==================================================|Settings|==================================================
+	private static final int INT_SLOWEST_STEPS = 5;
+	private static final long LNG_STATS_INTERVAL_MILLIS = 1000;
+
+	private static final int INT_BUFFER_SIZE = Integer.parseInt(Base.configurationVariables("runEventBufferSize"));
+	private static final ArrayBlockingQueue<Event> queue = new ArrayBlockingQueue<>(INT_BUFFER_SIZE);
+	private static final AtomicLong atomicPublished = new AtomicLong();
+	private static final AtomicLong atomicDropped = new AtomicLong();
+	private static final AtomicLong atomicDashboardDropped = new AtomicLong();
+	private static final List<Client> listClients = new CopyOnWriteArrayList<>();
+
+	// Only touched by the drain thread.
+	private static final Map<String, Event> mapInFlightSteps = new HashMap<>();
+	private static final Map<String, Event> mapInFlightScenarios = new HashMap<>();
+	private static long lngFinishedScenarios;
+	private static long lngFailedScenarios;
+	private static final long lngStartMillis = System.currentTimeMillis();
+	private static Writer writer;
+
+	static {
+		startDrainThread();
+		startSocketServer(Integer.parseInt(Base.configurationVariables("runEventSocketPort")));
+		RunSummary.register("Run Events", () -> atomicPublished.get() + " published, " + atomicDropped.get()
+				+ " dropped, " + atomicDashboardDropped.get() + " dashboard lines dropped");
+	}
+
+	// ==================================================|Publish|==================================================
+	/**
+	 * Offers the event to the bus without blocking. Drops and counts the event if
+	 * the buffer is full.
+	 *
+	 * @param strType           - scenarioStarted, scenarioFinished, stepStarted,
+	 *                          stepFinished.
+	 * @param strScenario       - scenario name.
+	 * @param strStep           - step text, empty for scenario events.
+	 * @param strStatus         - result status, empty for start events.
+	 * @param lngDurationMillis - duration for finish events.
+	 */
+	public static void publish(String strType, String strScenario, String strStep, String strStatus,
+			long lngDurationMillis) {
+		if (queue.offer(new Event(strType, strScenario, strStep, strStatus, lngDurationMillis)))
+			atomicPublished.incrementAndGet();
+		else
+			atomicDropped.incrementAndGet();
+	}
+
+	public static long getDroppedEvents() {
+		return atomicDropped.get();
+	}
+
+	/**
+	 * Waits briefly for the drain thread to write the remaining events. Called when
+	 * the run finishes.
+	 */
+	public static void flush() {
+		long lngDeadline = System.currentTimeMillis() + 2000;
+
+		while (!queue.isEmpty() && System.currentTimeMillis() < lngDeadline) {
+			try {
+				Thread.sleep(10);
+			} catch (InterruptedException interruptedException) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	// ==================================================|Drain|==================================================
+	private static void startDrainThread() {
+		Thread thread = new Thread(() -> {
+			long lngNextStatsMillis = System.currentTimeMillis() + LNG_STATS_INTERVAL_MILLIS;
+
+			while (true) {
+				try {
+					Event event = queue.poll(LNG_STATS_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+
+					if (event != null)
+						handle(event);
+
+					if (System.currentTimeMillis() >= lngNextStatsMillis) {
+						emit(getStats());
+						lngNextStatsMillis = System.currentTimeMillis() + LNG_STATS_INTERVAL_MILLIS;
+					}
+				} catch (InterruptedException interruptedException) {
+					return;
+				} catch (Exception exception) {
+					exception.printStackTrace();
+				}
+			}
+		}, "run-event-bus");
+
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	private static void handle(Event event) {
+		switch (event.strType) {
+		case "scenarioStarted":
+			mapInFlightScenarios.put(event.strThread, event);
+			break;
+		case "scenarioFinished":
+			mapInFlightScenarios.remove(event.strThread);
+			lngFinishedScenarios++;
+
+			if ("FAILED".equals(event.strStatus))
+				lngFailedScenarios++;
+
+			break;
+		case "stepStarted":
+			mapInFlightSteps.put(event.strThread, event);
+			break;
+		case "stepFinished":
+			mapInFlightSteps.remove(event.strThread);
+			break;
+		}
+
+		JsonObject jsonEvent = new JsonObject();
+
+		jsonEvent.addProperty("type", event.strType);
+		jsonEvent.addProperty("timestamp", event.lngTimestampMillis);
+		jsonEvent.addProperty("thread", event.strThread);
+		jsonEvent.addProperty("scenario", event.strScenario);
+
+		if (!event.strStep.isEmpty())
+			jsonEvent.addProperty("step", event.strStep);
+
+		if (!event.strStatus.isEmpty()) {
+			jsonEvent.addProperty("status", event.strStatus);
+			jsonEvent.addProperty("durationMillis", event.lngDurationMillis);
+		}
+
+		emit(jsonEvent);
+	}
+
+	private static JsonObject getStats() {
+		long lngNowMillis = System.currentTimeMillis();
+		double dblElapsedMinutes = Math.max(1, lngNowMillis - lngStartMillis) / 60000.0;
+		JsonObject jsonStats = new JsonObject();
+		JsonArray jsonSlowestSteps = new JsonArray();
+		List<Event> listSteps = new ArrayList<>(mapInFlightSteps.values());
+
+		listSteps.sort((first, second) -> Long.compare(first.lngTimestampMillis, second.lngTimestampMillis));
+
+		for (Event event : listSteps.subList(0, Math.min(INT_SLOWEST_STEPS, listSteps.size()))) {
+			JsonObject jsonStep = new JsonObject();
+
+			jsonStep.addProperty("thread", event.strThread);
+			jsonStep.addProperty("scenario", event.strScenario);
+			jsonStep.addProperty("step", event.strStep);
+			jsonStep.addProperty("elapsedMillis", lngNowMillis - event.lngTimestampMillis);
+			jsonSlowestSteps.add(jsonStep);
+		}
+
+		jsonStats.addProperty("type", "stats");
+		jsonStats.addProperty("timestamp", lngNowMillis);
+		jsonStats.addProperty("finishedScenarios", lngFinishedScenarios);
+		jsonStats.addProperty("failedScenarios", lngFailedScenarios);
+		jsonStats.addProperty("scenariosPerMinute", Math.round(lngFinishedScenarios / dblElapsedMinutes * 10) / 10.0);
+		jsonStats.addProperty("activeThreads", mapInFlightScenarios.size());
+		jsonStats.addProperty("droppedEvents", atomicDropped.get());
+		jsonStats.addProperty("droppedDashboardLines", atomicDashboardDropped.get());
+		jsonStats.add("slowestInFlightSteps", jsonSlowestSteps);
+
+		return jsonStats;
+	}
+
+	private static void emit(JsonObject jsonEvent) {
+		String strLine = jsonEvent.toString() + "\n";
+
+		try {
+			if (writer == null) {
+				File fileEvents = new File(Base.configurationVariables("runEventFile"));
+
+				if (fileEvents.getParentFile() != null)
+					fileEvents.getParentFile().mkdirs();
+
+				writer = new BufferedWriter(
+						new OutputStreamWriter(new FileOutputStream(fileEvents, true), StandardCharsets.UTF_8));
+			}
+
+			writer.write(strLine);
+
+			if (queue.isEmpty())
+				writer.flush();
+		} catch (Exception exception) {
+			exception.printStackTrace();
+		}
+
+		for (Client client : listClients)
+			client.offer(strLine);
+	}
+
+	// ==================================================|Socket|==================================================
+	private static void startSocketServer(int intPort) {
+		if (intPort <= 0)
+			return;
+
+		Thread thread = new Thread(() -> {
+			try (ServerSocket serverSocket = new ServerSocket(intPort, 50, InetAddress.getLoopbackAddress())) {
+				while (true) {
+					Client client = new Client(serverSocket.accept(), INT_BUFFER_SIZE);
+
+					listClients.add(client);
+					client.threadWriter.start();
+				}
+			} catch (Exception exception) {
+				exception.printStackTrace();
+			}
+		}, "run-event-socket");
+
+		thread.setDaemon(true);
+		thread.start();
+	}
+}
\ No newline at end of file
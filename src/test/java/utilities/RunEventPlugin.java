@@ -0,0 +1,46 @@
+package utilities;
+
+import io.cucumber.plugin.ConcurrentEventListener;
+import io.cucumber.plugin.event.EventPublisher;
+import io.cucumber.plugin.event.PickleStepTestStep;
+import io.cucumber.plugin.event.TestCaseFinished;
+import io.cucumber.plugin.event.TestCaseStarted;
+import io.cucumber.plugin.event.TestRunFinished;
+import io.cucumber.plugin.event.TestStepFinished;
+import io.cucumber.plugin.event.TestStepStarted;
+
+/**
+ * Publishes scenario and step start/finish events to the RunEventBus, and step
+ * latencies to LoadMode. Hooks are not published as steps.
+ */
+public class RunEventPlugin implements ConcurrentEventListener {
+	@Override
+	public void setEventPublisher(EventPublisher eventPublisher) {
+		eventPublisher.registerHandlerFor(TestCaseStarted.class,
+				event -> RunEventBus.publish("scenarioStarted", event.getTestCase().getName(), "", "", 0));
+		eventPublisher.registerHandlerFor(TestCaseFinished.class,
+				event -> RunEventBus.publish("scenarioFinished", event.getTestCase().getName(), "",
+						event.getResult().getStatus().name(), event.getResult().getDuration().toMillis()));
+		eventPublisher.registerHandlerFor(TestStepStarted.class, this::handleTestStepStarted);
+		eventPublisher.registerHandlerFor(TestStepFinished.class, this::handleTestStepFinished);
+		eventPublisher.registerHandlerFor(TestRunFinished.class, event -> RunEventBus.flush());
+	}
+
+	// ==================================================|Handlers|==================================================
+	private void handleTestStepStarted(TestStepStarted event) {
+		if (event.getTestStep() instanceof PickleStepTestStep)
+			RunEventBus.publish("stepStarted", event.getTestCase().getName(),
+					((PickleStepTestStep) event.getTestStep()).getStep().getText(), "", 0);
+	}
+
+	private void handleTestStepFinished(TestStepFinished event) {
+		if (event.getTestStep() instanceof PickleStepTestStep) {
+			String strStep = ((PickleStepTestStep) event.getTestStep()).getStep().getText();
+
+			RunEventBus.publish("stepFinished", event.getTestCase().getName(), strStep,
+					event.getResult().getStatus().name(), event.getResult().getDuration().toMillis());
+			LoadMode.recordStep(strStep, event.getResult().getStatus().name(),
+					event.getResult().getDuration().toMillis());
+		}
+	}
+}
\ No newline at end of file
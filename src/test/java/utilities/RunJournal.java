@@ -0,0 +1,310 @@
+package utilities;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import io.cucumber.plugin.ConcurrentEventListener;
+import io.cucumber.plugin.event.EmbedEvent;
+import io.cucumber.plugin.event.EventPublisher;
+import io.cucumber.plugin.event.TestCase;
+import io.cucumber.plugin.event.TestCaseFinished;
+import io.cucumber.plugin.event.TestCaseStarted;
+import io.cucumber.testng.PickleWrapper;
+
+/**
+ * Checkpoints the run in a journal under runJournalDirectory. Every finished
+ * scenario row is appended to journal.ndjson and synced to disk, together with
+ * its attachments, so a killed run loses at most the scenarios that were
+ * running. A resumed run (runResume=true, or mvn test -Dresume) skips the rows
+ * already in the journal, appends the rest, and merges all of them into
+ * runJournalReportDirectory with ReportMerger. A run that is not resumed starts
+ * a new journal.
+ */
+public class RunJournal implements ConcurrentEventListener {
+	// ==================================================|Settings|==================================================
+	private static final boolean blnEnabled = Base.configurationVariables("runJournal").equals("true")
+			&& !LoadMode.isEnabled();
+	private static final boolean blnResume = System.getProperty("resume") != null
+			? !System.getProperty("resume").equals("false")
+			: Base.configurationVariables("runResume").equals("true");
+	private static final File fileDirectory = new File(Base.configurationVariables("runJournalDirectory"));
+	private static final File fileJournal = new File(fileDirectory, "journal.ndjson");
+	private static final File fileAttachmentDirectory = new File(fileDirectory, "attachments");
+
+	// ==================================================|State|==================================================
+	private static final Map<String, String> mapJournaled = new ConcurrentHashMap<>();
+	private static final Map<UUID, JsonArray> mapAttachments = new ConcurrentHashMap<>();
+	private static final ThreadLocal<JsonObject> threadLocalFinished = new ThreadLocal<>();
+	private static final AtomicLong atomicResumed = new AtomicLong();
+	private static final AtomicLong atomicRecorded = new AtomicLong();
+	private static FileOutputStream fileOutputStream;
+
+	static {
+		RunSummary.register("Run Journal", RunJournal::getSummary);
+	}
+
+	@Override
+	public void setEventPublisher(EventPublisher eventPublisher) {
+		if (!blnEnabled)
+			return;
+
+		eventPublisher.registerHandlerFor(TestCaseStarted.class, this::handleTestCaseStarted);
+		eventPublisher.registerHandlerFor(EmbedEvent.class, this::handleEmbed);
+		eventPublisher.registerHandlerFor(TestCaseFinished.class, this::handleTestCaseFinished);
+	}
+
+	// ==================================================|Handlers|==================================================
+	private void handleTestCaseStarted(TestCaseStarted event) {
+		threadLocalFinished.remove();
+		mapAttachments.put(event.getTestCase().getId(), new JsonArray());
+	}
+
+	private void handleEmbed(EmbedEvent event) {
+		JsonArray jsonAttachments = mapAttachments.get(event.getTestCase().getId());
+
+		if (jsonAttachments == null)
+			return;
+
+		String strFileName = event.getTestCase().getId() + "-" + (jsonAttachments.size() + 1)
+				+ getExtension(event.getMediaType());
+		JsonObject jsonAttachment = new JsonObject();
+
+		try {
+			fileAttachmentDirectory.mkdirs();
+			Files.write(new File(fileAttachmentDirectory, strFileName).toPath(), event.getData());
+		} catch (Exception exception) {
+			exception.printStackTrace();
+			return;
+		}
+
+		jsonAttachment.addProperty("name", event.getName());
+		jsonAttachment.addProperty("mediaType", event.getMediaType());
+		jsonAttachment.addProperty("file", fileAttachmentDirectory.getName() + "/" + strFileName);
+		jsonAttachments.add(jsonAttachment);
+	}
+
+	private void handleTestCaseFinished(TestCaseFinished event) {
+		TestCase testCase = event.getTestCase();
+		JsonArray jsonAttachments = mapAttachments.remove(testCase.getId());
+		JsonObject jsonScenario = new JsonObject();
+
+		jsonScenario.addProperty("worker", ShardReportPlugin.getWorkerId());
+		jsonScenario.addProperty("uri", testCase.getUri().toString());
+		jsonScenario.addProperty("line", testCase.getLocation().getLine());
+		jsonScenario.addProperty("name", testCase.getName());
+		jsonScenario.addProperty("startMillis", event.getInstant().toEpochMilli()
+				- event.getResult().getDuration().toMillis());
+		jsonScenario.addProperty("status", event.getResult().getStatus().name());
+		jsonScenario.addProperty("durationMillis", event.getResult().getDuration().toMillis());
+
+		if (event.getResult().getError() != null)
+			jsonScenario.addProperty("error", String.valueOf(event.getResult().getError().getMessage()));
+
+		jsonScenario.add("attachments", jsonAttachments != null ? jsonAttachments : new JsonArray());
+
+		// Cucumber publishes to concurrent listeners on the thread running the scenario.
+		threadLocalFinished.set(jsonScenario);
+	}
+
+	// ==================================================|Journal|==================================================
+	public static boolean isEnabled() {
+		return blnEnabled;
+	}
+
+	/**
+	 * Gets the key of a scenario row: feature path relative to the working
+	 * directory, line and row name. Keys are the same across runs and hosts.
+	 *
+	 * @param pickleWrapper - scenario row.
+	 * @return Returns the key.
+	 */
+	public static String getScenarioKey(PickleWrapper pickleWrapper) {
+		URI uriFeature = pickleWrapper.getPickle().getUri();
+		String strFeature = "file".equals(uriFeature.getScheme())
+				? Paths.get(System.getProperty("user.dir")).toUri().relativize(uriFeature).toString()
+				: uriFeature.toString();
+
+		return strFeature + ":" + pickleWrapper.getPickle().getLine() + " " + pickleWrapper;
+	}
+
+	/**
+	 * Opens the journal and, when resuming, leaves out the rows it already has.
+	 * Returns the rows unchanged when the journal is off.
+	 *
+	 * @param iteratorScenarios - rows of [PickleWrapper, FeatureWrapper].
+	 * @return Returns an iterator over the rows still to run.
+	 */
+	public static Iterator<Object[]> expand(Iterator<Object[]> iteratorScenarios) {
+		if (!blnEnabled)
+			return iteratorScenarios;
+
+		open();
+
+		if (mapJournaled.isEmpty())
+			return iteratorScenarios;
+
+		return new Iterator<Object[]>() {
+			private Object[] objNext;
+
+			@Override
+			public boolean hasNext() {
+				while (objNext == null && iteratorScenarios.hasNext()) {
+					Object[] objScenario = iteratorScenarios.next();
+
+					if (mapJournaled.containsKey(getScenarioKey((PickleWrapper) objScenario[0])))
+						atomicResumed.incrementAndGet();
+					else
+						objNext = objScenario;
+				}
+
+				return objNext != null;
+			}
+
+			@Override
+			public Object[] next() {
+				if (!hasNext())
+					throw new NoSuchElementException();
+
+				Object[] objScenario = objNext;
+
+				objNext = null;
+
+				return objScenario;
+			}
+		};
+	}
+
+	/**
+	 * Appends the scenario row that just finished on this thread to the journal.
+	 * Rows that never reached Cucumber are not recorded and run again on resume.
+	 *
+	 * @param pickleWrapper - scenario row that was run.
+	 */
+	public static void record(PickleWrapper pickleWrapper) {
+		JsonObject jsonScenario = threadLocalFinished.get();
+
+		threadLocalFinished.remove();
+
+		if (!blnEnabled || jsonScenario == null)
+			return;
+
+		jsonScenario.addProperty("key", getScenarioKey(pickleWrapper));
+
+		synchronized (RunJournal.class) {
+			try {
+				fileOutputStream.write((jsonScenario.toString() + "\n").getBytes(StandardCharsets.UTF_8));
+				fileOutputStream.getFD().sync();
+				atomicRecorded.incrementAndGet();
+			} catch (Exception exception) {
+				exception.printStackTrace();
+			}
+		}
+	}
+
+	private static synchronized void open() {
+		if (fileOutputStream != null)
+			return;
+
+		try {
+			if (blnResume)
+				readJournal();
+			else
+				clear();
+
+			fileDirectory.mkdirs();
+			fileOutputStream = new FileOutputStream(fileJournal, true);
+		} catch (Exception exception) {
+			exception.printStackTrace();
+		}
+	}
+
+	private static void readJournal() throws Exception {
+		if (!fileJournal.isFile())
+			return;
+
+		try (BufferedReader bufferedReader = new BufferedReader(
+				new InputStreamReader(new FileInputStream(fileJournal), StandardCharsets.UTF_8))) {
+			String strLine;
+
+			while ((strLine = bufferedReader.readLine()) != null) {
+				try {
+					JsonObject jsonScenario = JsonParser.parseString(strLine).getAsJsonObject();
+
+					mapJournaled.put(jsonScenario.get("key").getAsString(), jsonScenario.get("status").getAsString());
+				} catch (Exception exception) {
+					// A run killed mid-write can leave a partial last line; that scenario runs again.
+				}
+			}
+		}
+	}
+
+	private static void clear() {
+		File[] fileAttachments = fileAttachmentDirectory.listFiles();
+
+		if (fileAttachments != null) {
+			for (File fileAttachment : fileAttachments)
+				fileAttachment.delete();
+		}
+
+		fileJournal.delete();
+	}
+
+	private static String getExtension(String strMediaType) {
+		switch (String.valueOf(strMediaType).split(";")[0]) {
+		case "image/png":
+			return ".png";
+		case "image/jpeg":
+			return ".jpg";
+		case "application/json":
+			return ".json";
+		case "text/html":
+			return ".html";
+		case "text/plain":
+			return ".txt";
+		default:
+			return ".bin";
+		}
+	}
+
+	// ==================================================|Report|==================================================
+	public static String getSummary() {
+		if (!blnEnabled || atomicResumed.get() + atomicRecorded.get() == 0)
+			return null;
+
+		if (atomicResumed.get() == 0)
+			return atomicRecorded.get() + " scenarios recorded in " + fileJournal.getPath();
+
+		Map<String, Long> mapResumedCounts = new TreeMap<>();
+		File fileReportDirectory = new File(Base.configurationVariables("runJournalReportDirectory"));
+
+		for (String strStatus : mapJournaled.values())
+			mapResumedCounts.merge(strStatus, 1L, Long::sum);
+
+		try {
+			new ReportMerger().merge(fileDirectory, fileReportDirectory);
+		} catch (Exception exception) {
+			exception.printStackTrace();
+		}
+
+		return atomicResumed.get() + " scenarios resumed from the journal " + mapResumedCounts + ", "
+				+ atomicRecorded.get() + " run now (" + fileReportDirectory.getPath() + ")";
+	}
+}
\ No newline at end of file
@@ -0,0 +1,44 @@
+package utilities;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Supplier;
+
+import com.aventstack.extentreports.service.ExtentService;
+
+public class RunSummary {
+	// ==================================================|Entries|==================================================
+	private static final Map<String, Supplier<String>> mapEntries = new ConcurrentSkipListMap<>();
+
+	/**
+	 * Registers a suite level summary line. The value is read once when the run
+	 * finishes, so counters can keep changing until then.
+	 *
+	 * @param strName       - label shown in the report system info.
+	 * @param valueSupplier - supplies the value when the summary is published.
+	 */
+	public static void register(String strName, Supplier<String> valueSupplier) {
+		mapEntries.put(strName, valueSupplier);
+	}
+
+	/**
+	 * Writes every registered summary line to the Extent report system info and to
+	 * the console. Must be called before the Cucumber run finishes so the values
+	 * are part of the flushed report.
+	 */
+	public static void publish() {
+		for (Map.Entry<String, Supplier<String>> entry : mapEntries.entrySet()) {
+			try {
+				String strValue = entry.getValue().get();
+
+				if (strValue == null)
+					continue;
+
+				ExtentService.getInstance().setSystemInfo(entry.getKey(), strValue);
+				System.out.println("[Run Summary] " + entry.getKey() + ": " + strValue);
+			} catch (Exception exception) {
+				exception.printStackTrace();
+			}
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,734 @@
+package utilities;
+
+import java.io.File;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+import org.testng.SkipException;
+
+import io.cucumber.core.gherkin.Argument;
+import io.cucumber.core.gherkin.Feature;
+import io.cucumber.core.gherkin.Step;
+import io.cucumber.core.gherkin.StepType;
+import io.cucumber.plugin.event.Location;
+import io.cucumber.plugin.event.Node;
+import io.cucumber.testng.FeatureWrapper;
+import io.cucumber.testng.Pickle;
+import io.cucumber.testng.PickleWrapper;
+
+/**
+ * Expands Scenario Outlines tagged @DataSource:path/to/file.xlsx (or .csv, with
+ * an optional #SheetName) into one scenario per data row. The outline keeps a
+ * single Examples row whose values are the placeholders themselves (| <username>
+ * |), so the steps still contain &lt;username&gt; and are filled in from the
+ * row whose header matches. Data files are read one row at a time. TestNG
+ * collects every row of a parallel data provider before running any, so data
+ * rows are not handed to it: from the first data row on, the data provider
+ * yields one slot row per thread, and each slot pulls the next row when it is
+ * free. Only the rows being run and the reader's read-ahead are in memory,
+ * whatever the size of the data file. A data file that cannot be opened or
+ * read becomes one failing row naming it.
+ */
+public class ScenarioDataSource {
+	private static final String STR_TAG = "@DataSource:";
+
+	public static final class DataRowPickleWrapper implements PickleWrapper {
+		private final Pickle pickle;
+		private final String[] strHeader;
+		private final String[] strRow;
+		private final int intRowNumber;
+
+		DataRowPickleWrapper(Pickle pickle, String[] strHeader, String[] strRow, int intRowNumber) {
+			this.pickle = pickle;
+			this.strHeader = strHeader;
+			this.strRow = strRow;
+			this.intRowNumber = intRowNumber;
+		}
+
+		/**
+		 * Builds the scenario of this row from the outline. Built on every call
+		 * instead of kept, so the rows waiting for a slot stay small.
+		 */
+		@Override
+		public Pickle getPickle() {
+			return createPickle(new DataRowPickle(getCorePickle(pickle), this));
+		}
+
+		public int getRowNumber() {
+			return intRowNumber;
+		}
+
+		String substitute(String strText) {
+			for (int intIndex = 0; intIndex < strHeader.length; intIndex++)
+				strText = strText.replace("<" + strHeader[intIndex] + ">",
+						intIndex < strRow.length ? strRow[intIndex] : "");
+
+			return strText;
+		}
+
+		@Override
+		public String toString() {
+			return "\"" + substitute(pickle.getName()) + "\" [data row " + intRowNumber + "]";
+		}
+	}
+
+	/**
+	 * Row that stands for an outline whose data file could not be read. It fails
+	 * when run, so the outline is not silently left out.
+	 */
+	public static final class DataSourceErrorPickleWrapper implements PickleWrapper {
+		private final PickleWrapper pickleWrapper;
+		private final String strError;
+
+		DataSourceErrorPickleWrapper(PickleWrapper pickleWrapper, String strError) {
+			this.pickleWrapper = pickleWrapper;
+			this.strError = strError;
+		}
+
+		@Override
+		public Pickle getPickle() {
+			return pickleWrapper.getPickle();
+		}
+
+		@Override
+		public String toString() {
+			return pickleWrapper.toString() + " [data source error]";
+		}
+	}
+
+	/**
+	 * Data provider row that runs data rows one after another, pulled from the
+	 * rows shared by all slots.
+	 */
+	public static final class DataSlotPickleWrapper implements PickleWrapper {
+		private final int intSlot;
+		private final SharedRows sharedRows;
+
+		DataSlotPickleWrapper(int intSlot, SharedRows sharedRows) {
+			this.intSlot = intSlot;
+			this.sharedRows = sharedRows;
+		}
+
+		@Override
+		public Pickle getPickle() {
+			return ((PickleWrapper) sharedRows.objFirst[0]).getPickle();
+		}
+
+		@Override
+		public String toString() {
+			return "\"Data row slot " + (intSlot + 1) + "\"";
+		}
+	}
+
+	static final class SharedRows {
+		private final Object[] objFirst;
+		private final Iterator<Object[]> iteratorScenarios;
+		private boolean blnFirstTaken;
+
+		SharedRows(Object[] objFirst, Iterator<Object[]> iteratorScenarios) {
+			this.objFirst = objFirst;
+			this.iteratorScenarios = iteratorScenarios;
+		}
+
+		synchronized Object[] next() {
+			if (!blnFirstTaken) {
+				blnFirstTaken = true;
+				return objFirst;
+			}
+
+			return iteratorScenarios.hasNext() ? iteratorScenarios.next() : null;
+		}
+	}
+
+	// ==================================================|Settings|==================================================
+	private static final int[] intRowRange = parseRowRange(Base.configurationVariables("dataSourceRowRange"));
+	private static final String[][] strFilters = parseFilters(Base.configurationVariables("dataSourceFilter"));
+
+	// ==================================================|State|==================================================
+	private static final Map<String, long[]> mapSourceCounts = new ConcurrentSkipListMap<>();
+	private static final AtomicLong atomicScenarios = new AtomicLong();
+	private static final AtomicLong atomicErrors = new AtomicLong();
+	private static Method methodGetPickle;
+	private static Constructor<Pickle> constructorPickle;
+
+	static {
+		RunSummary.register("Data Sources", ScenarioDataSource::getSummary);
+	}
+
+	// ==================================================|Expand|==================================================
+	/**
+	 * Replaces every @DataSource outline row with one row per data row. Rows
+	 * without the tag pass through unchanged. Data files are opened one at a time
+	 * while TestNG pulls the rows.
+	 *
+	 * @param objScenarios - rows of [PickleWrapper, FeatureWrapper].
+	 * @return Returns an iterator over the expanded rows.
+	 */
+	public static Iterator<Object[]> expand(Object[][] objScenarios) {
+		return new Iterator<Object[]>() {
+			private int intScenarioIndex;
+			private Object[] objTemplate;
+			private DataRowReader dataRowReader;
+			private String[] strHeader;
+			private long[] lngCounts;
+			private int intRowNumber;
+			private Object[] objNext;
+
+			@Override
+			public boolean hasNext() {
+				while (objNext == null) {
+					if (dataRowReader != null) {
+						objNext = nextDataRow();
+						continue;
+					}
+
+					if (intScenarioIndex >= objScenarios.length)
+						return false;
+
+					Object[] objScenario = objScenarios[intScenarioIndex++];
+					String strSource = getDataSource(((PickleWrapper) objScenario[0]).getPickle());
+
+					if (strSource == null)
+						objNext = objScenario;
+					else
+						open(objScenario, strSource);
+				}
+
+				return true;
+			}
+
+			@Override
+			public Object[] next() {
+				if (!hasNext())
+					throw new NoSuchElementException();
+
+				Object[] objRow = objNext;
+
+				objNext = null;
+
+				return objRow;
+			}
+
+			private void open(Object[] objScenario, String strSource) {
+				String[] strParts = strSource.split("#", 2);
+
+				objTemplate = objScenario;
+
+				try {
+					dataRowReader = DataRowReader.open(new File(System.getProperty("user.dir"), strParts[0]),
+							strParts.length > 1 ? strParts[1] : "");
+					strHeader = dataRowReader.hasNext() ? trim(dataRowReader.next()) : new String[0];
+					intRowNumber = 0;
+					lngCounts = mapSourceCounts.computeIfAbsent(strSource, strKey -> new long[2]);
+				} catch (Exception exception) {
+					objNext = getErrorRow("Data source " + strSource + " could not be read: " + exception);
+					close();
+				}
+			}
+
+			private Object[] nextDataRow() {
+				try {
+					while (dataRowReader.hasNext()) {
+						String[] strRow = dataRowReader.next();
+
+						intRowNumber++;
+
+						if (intRowNumber < intRowRange[0])
+							continue;
+
+						if (intRowNumber > intRowRange[1])
+							break;
+
+						synchronized (lngCounts) {
+							lngCounts[0]++;
+						}
+
+						if (!matchesFilters(strHeader, strRow))
+							continue;
+
+						synchronized (lngCounts) {
+							lngCounts[1]++;
+						}
+
+						atomicScenarios.incrementAndGet();
+
+						return new Object[] { new DataRowPickleWrapper(((PickleWrapper) objTemplate[0]).getPickle(),
+								strHeader, strRow, intRowNumber), objTemplate[1] };
+					}
+				} catch (Exception exception) {
+					close();
+
+					return getErrorRow("Data source read failed after data row " + intRowNumber + ": " + exception);
+				}
+
+				close();
+
+				return null;
+			}
+
+			private Object[] getErrorRow(String strError) {
+				atomicErrors.incrementAndGet();
+
+				return new Object[] { new DataSourceErrorPickleWrapper((PickleWrapper) objTemplate[0], strError),
+						objTemplate[1] };
+			}
+
+			private void close() {
+				if (dataRowReader != null)
+					dataRowReader.close();
+
+				dataRowReader = null;
+			}
+		};
+	}
+
+	/**
+	 * Passes rows through until the first data row, then ends with one slot row per
+	 * thread instead of the remaining rows. The slots share the remaining rows and
+	 * pull them while they run, so TestNG never holds the data rows.
+	 *
+	 * @param iteratorScenarios - rows of [PickleWrapper, FeatureWrapper].
+	 * @param intSlots          - number of scenarios to run at once.
+	 * @return Returns an iterator over the plain rows and the slot rows.
+	 */
+	public static Iterator<Object[]> slots(Iterator<Object[]> iteratorScenarios, int intSlots) {
+		return new Iterator<Object[]>() {
+			private Object[] objNext;
+			private Iterator<Object[]> iteratorSlots;
+
+			@Override
+			public boolean hasNext() {
+				if (iteratorSlots != null)
+					return iteratorSlots.hasNext();
+
+				if (objNext != null)
+					return true;
+
+				if (!iteratorScenarios.hasNext())
+					return false;
+
+				Object[] objScenario = iteratorScenarios.next();
+
+				if (!isDataRow((PickleWrapper) objScenario[0])) {
+					objNext = objScenario;
+					return true;
+				}
+
+				SharedRows sharedRows = new SharedRows(objScenario, iteratorScenarios);
+				List<Object[]> listSlots = new ArrayList<>();
+
+				for (int intSlot = 0; intSlot < Math.max(1, intSlots); intSlot++)
+					listSlots.add(new Object[] { new DataSlotPickleWrapper(intSlot, sharedRows), objScenario[1] });
+
+				iteratorSlots = listSlots.iterator();
+
+				return true;
+			}
+
+			@Override
+			public Object[] next() {
+				if (!hasNext())
+					throw new NoSuchElementException();
+
+				if (iteratorSlots != null)
+					return iteratorSlots.next();
+
+				Object[] objRow = objNext;
+
+				objNext = null;
+
+				return objRow;
+			}
+		};
+	}
+
+	/**
+	 * Runs shared rows until none are left. A failed row does not stop the slot;
+	 * the slot fails at the end, naming every failed row.
+	 *
+	 * @param dataSlotPickleWrapper - slot row.
+	 * @param scenarioRunner        - runs one row.
+	 */
+	public static void runSlot(DataSlotPickleWrapper dataSlotPickleWrapper,
+			BiConsumer<PickleWrapper, FeatureWrapper> scenarioRunner) {
+		List<String> listFailed = new ArrayList<>();
+		Object[] objScenario;
+
+		while ((objScenario = dataSlotPickleWrapper.sharedRows.next()) != null) {
+			PickleWrapper pickleWrapper = (PickleWrapper) objScenario[0];
+
+			try {
+				scenarioRunner.accept(pickleWrapper, (FeatureWrapper) objScenario[1]);
+			} catch (SkipException skipException) {
+				// Reported as skipped by Cucumber.
+			} catch (Throwable throwable) {
+				listFailed.add(pickleWrapper.toString());
+			} finally {
+				RunJournal.record(pickleWrapper);
+			}
+		}
+
+		if (!listFailed.isEmpty())
+			throw new AssertionError(dataSlotPickleWrapper + " failed " + listFailed.size() + " scenarios: "
+					+ String.join(", ", listFailed));
+	}
+
+	private static boolean isDataRow(PickleWrapper pickleWrapper) {
+		if (pickleWrapper instanceof BrowserMatrix.BrowserPickleWrapper)
+			pickleWrapper = ((BrowserMatrix.BrowserPickleWrapper) pickleWrapper).getPickleWrapper();
+
+		return pickleWrapper instanceof DataRowPickleWrapper || pickleWrapper instanceof DataSourceErrorPickleWrapper;
+	}
+
+	/**
+	 * Expands the @DataSource outlines of a parsed feature, for runs that do not
+	 * go through the TestNG runner (TestDaemon). Those runs are small, so the
+	 * expanded scenarios are kept in a list.
+	 *
+	 * @param feature - parsed feature.
+	 * @return Returns the feature itself if it has no @DataSource outline,
+	 *         otherwise a feature with one scenario per data row.
+	 */
+	public static Feature expandFeature(Feature feature) {
+		List<io.cucumber.core.gherkin.Pickle> listPickles = feature.getPickles();
+		Object[][] objScenarios = new Object[listPickles.size()][];
+		boolean blnDataSource = false;
+
+		for (int intIndex = 0; intIndex < listPickles.size(); intIndex++) {
+			Pickle pickle = createPickle(listPickles.get(intIndex));
+			PickleWrapper pickleWrapper = () -> pickle;
+
+			objScenarios[intIndex] = new Object[] { pickleWrapper, null };
+			blnDataSource |= getDataSource(pickle) != null;
+		}
+
+		if (!blnDataSource)
+			return feature;
+
+		List<io.cucumber.core.gherkin.Pickle> listExpanded = new ArrayList<>();
+
+		expand(objScenarios).forEachRemaining(objScenario -> {
+			if (objScenario[0] instanceof DataSourceErrorPickleWrapper)
+				throw new IllegalStateException(((DataSourceErrorPickleWrapper) objScenario[0]).strError);
+
+			listExpanded.add(getCorePickle(((PickleWrapper) objScenario[0]).getPickle()));
+		});
+
+		return new DataSourceFeature(feature, listExpanded);
+	}
+
+	static final class DataSourceFeature implements Feature {
+		// Inside a Feature, the simple name resolves to the inherited Node.Feature.
+		private final io.cucumber.core.gherkin.Feature feature;
+		private final List<io.cucumber.core.gherkin.Pickle> listPickles;
+
+		DataSourceFeature(io.cucumber.core.gherkin.Feature feature, List<io.cucumber.core.gherkin.Pickle> listPickles) {
+			this.feature = feature;
+			this.listPickles = listPickles;
+		}
+
+		@Override
+		public List<io.cucumber.core.gherkin.Pickle> getPickles() {
+			return listPickles;
+		}
+
+		@Override
+		public io.cucumber.core.gherkin.Pickle getPickleAt(Node node) {
+			return feature.getPickleAt(node);
+		}
+
+		@Override
+		public URI getUri() {
+			return feature.getUri();
+		}
+
+		@Override
+		public String getSource() {
+			return feature.getSource();
+		}
+
+		@Override
+		public Iterable<?> getParseEvents() {
+			return feature.getParseEvents();
+		}
+
+		@Override
+		public Location getLocation() {
+			return feature.getLocation();
+		}
+
+		@Override
+		public Optional<String> getKeyword() {
+			return feature.getKeyword();
+		}
+
+		@Override
+		public Optional<String> getName() {
+			return feature.getName();
+		}
+
+		@Override
+		public Collection<Node> elements() {
+			return feature.elements();
+		}
+	}
+
+	/**
+	 * Fails the row if it stands for a data file that could not be read.
+	 *
+	 * @param pickleWrapper - scenario row about to run.
+	 */
+	public static void checkRow(PickleWrapper pickleWrapper) {
+		if (pickleWrapper instanceof BrowserMatrix.BrowserPickleWrapper)
+			pickleWrapper = ((BrowserMatrix.BrowserPickleWrapper) pickleWrapper).getPickleWrapper();
+
+		if (pickleWrapper instanceof DataSourceErrorPickleWrapper)
+			throw new IllegalStateException(((DataSourceErrorPickleWrapper) pickleWrapper).strError);
+	}
+
+	private static String getDataSource(Pickle pickle) {
+		for (String strTag : pickle.getTags()) {
+			if (strTag.startsWith(STR_TAG))
+				return strTag.substring(STR_TAG.length());
+		}
+
+		return null;
+	}
+
+	private static boolean matchesFilters(String[] strHeader, String[] strRow) {
+		for (String[] strFilter : strFilters) {
+			int intColumn = Arrays.asList(strHeader).indexOf(strFilter[0]);
+			String strValue = intColumn >= 0 && intColumn < strRow.length ? strRow[intColumn].trim() : "";
+
+			if (!strValue.equals(strFilter[1]))
+				return false;
+		}
+
+		return true;
+	}
+
+	// ==================================================|Pickles|==================================================
+	/**
+	 * Unwraps and wraps the Cucumber pickle inside the TestNG pickle. Its
+	 * constructor and getter are package private, so they are reached through
+	 * reflection.
+	 */
+	private static synchronized void initializePickleAccess() throws Exception {
+		if (constructorPickle == null) {
+			methodGetPickle = Pickle.class.getDeclaredMethod("getPickle");
+			methodGetPickle.setAccessible(true);
+			constructorPickle = Pickle.class.getDeclaredConstructor(io.cucumber.core.gherkin.Pickle.class);
+			constructorPickle.setAccessible(true);
+		}
+	}
+
+	private static io.cucumber.core.gherkin.Pickle getCorePickle(Pickle pickle) {
+		try {
+			initializePickleAccess();
+
+			return (io.cucumber.core.gherkin.Pickle) methodGetPickle.invoke(pickle);
+		} catch (Exception exception) {
+			throw new IllegalStateException(exception);
+		}
+	}
+
+	private static Pickle createPickle(io.cucumber.core.gherkin.Pickle pickle) {
+		try {
+			initializePickleAccess();
+
+			return constructorPickle.newInstance(pickle);
+		} catch (Exception exception) {
+			throw new IllegalStateException(exception);
+		}
+	}
+
+	static final class DataRowPickle implements io.cucumber.core.gherkin.Pickle {
+		private final io.cucumber.core.gherkin.Pickle pickle;
+		private final DataRowPickleWrapper dataRowPickleWrapper;
+
+		DataRowPickle(io.cucumber.core.gherkin.Pickle pickle, DataRowPickleWrapper dataRowPickleWrapper) {
+			this.pickle = pickle;
+			this.dataRowPickleWrapper = dataRowPickleWrapper;
+		}
+
+		@Override
+		public String getKeyword() {
+			return pickle.getKeyword();
+		}
+
+		@Override
+		public String getLanguage() {
+			return pickle.getLanguage();
+		}
+
+		@Override
+		public String getName() {
+			return dataRowPickleWrapper.substitute(pickle.getName()) + " [data row "
+					+ dataRowPickleWrapper.intRowNumber + "]";
+		}
+
+		@Override
+		public Location getLocation() {
+			return pickle.getLocation();
+		}
+
+		@Override
+		public Location getScenarioLocation() {
+			return pickle.getScenarioLocation();
+		}
+
+		@Override
+		public List<Step> getSteps() {
+			List<Step> listSteps = new ArrayList<>();
+
+			for (Step step : pickle.getSteps())
+				listSteps.add(new DataRowStep(step, dataRowPickleWrapper));
+
+			return listSteps;
+		}
+
+		@Override
+		public List<String> getTags() {
+			return pickle.getTags();
+		}
+
+		@Override
+		public URI getUri() {
+			return pickle.getUri();
+		}
+
+		@Override
+		public String getId() {
+			return UUID.nameUUIDFromBytes((pickle.getId() + "#" + dataRowPickleWrapper.intRowNumber)
+					.getBytes(StandardCharsets.UTF_8)).toString();
+		}
+	}
+
+	static final class DataRowStep implements Step {
+		private final Step step;
+		private final DataRowPickleWrapper dataRowPickleWrapper;
+
+		DataRowStep(Step step, DataRowPickleWrapper dataRowPickleWrapper) {
+			this.step = step;
+			this.dataRowPickleWrapper = dataRowPickleWrapper;
+		}
+
+		@Override
+		public StepType getType() {
+			return step.getType();
+		}
+
+		@Override
+		public String getPreviousGivenWhenThenKeyword() {
+			return step.getPreviousGivenWhenThenKeyword();
+		}
+
+		@Override
+		public String getId() {
+			return step.getId();
+		}
+
+		@Override
+		public Argument getArgument() {
+			return step.getArgument();
+		}
+
+		@Override
+		public String getKeyword() {
+			return step.getKeyword();
+		}
+
+		@Override
+		public String getText() {
+			return dataRowPickleWrapper.substitute(step.getText());
+		}
+
+		@Override
+		public int getLine() {
+			return step.getLine();
+		}
+
+		@Override
+		public Location getLocation() {
+			return step.getLocation();
+		}
+	}
+
+	// ==================================================|Report|==================================================
+	public static String getSummary() {
+		if (mapSourceCounts.isEmpty() && atomicErrors.get() == 0)
+			return null;
+
+		StringBuilder stringBuilder = new StringBuilder();
+
+		for (Map.Entry<String, long[]> entry : mapSourceCounts.entrySet()) {
+			synchronized (entry.getValue()) {
+				stringBuilder.append(entry.getKey()).append(": ").append(entry.getValue()[0])
+						.append(" rows in range, ").append(entry.getValue()[1]).append(" matched filters; ");
+			}
+		}
+
+		if (atomicErrors.get() > 0)
+			stringBuilder.append(atomicErrors.get()).append(" data sources failed to read; ");
+
+		return stringBuilder.append(atomicScenarios.get()).append(" data-driven scenarios").toString();
+	}
+
+	// ==================================================|Settings_Helpers|==================================================
+	/**
+	 * Parses first-last (1-based data rows, header excluded). Either side may be
+	 * left out; empty means every row.
+	 */
+	private static int[] parseRowRange(String strRange) {
+		int[] intRange = { 1, Integer.MAX_VALUE };
+
+		if (strRange.isBlank())
+			return intRange;
+
+		String[] strParts = strRange.split("-", -1);
+
+		if (!strParts[0].isBlank())
+			intRange[0] = Integer.parseInt(strParts[0].trim());
+
+		if (strParts.length > 1 && !strParts[1].isBlank())
+			intRange[1] = Integer.parseInt(strParts[1].trim());
+		else if (strParts.length == 1)
+			intRange[1] = intRange[0];
+
+		return intRange;
+	}
+
+	private static String[][] parseFilters(String strFilters) {
+		List<String[]> listFilters = new ArrayList<>();
+
+		for (String strFilter : strFilters.split(";")) {
+			String[] strParts = strFilter.split("=", 2);
+
+			if (strParts.length == 2)
+				listFilters.add(new String[] { strParts[0].trim(), strParts[1].trim() });
+		}
+
+		return listFilters.toArray(new String[0][]);
+	}
+
+	private static String[] trim(String[] strValues) {
+		for (int intIndex = 0; intIndex < strValues.length; intIndex++)
+			strValues[intIndex] = strValues[intIndex].trim();
+
+		return strValues;
+	}
+}
\ No newline at end of file
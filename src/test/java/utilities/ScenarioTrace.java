@@ -0,0 +1,420 @@
+package utilities;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.lang.StackWalker.StackFrame;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.remote.Command;
+import org.openqa.selenium.remote.CommandExecutor;
+import org.openqa.selenium.remote.DriverCommand;
+import org.openqa.selenium.remote.RemoteWebDriver;
+import org.openqa.selenium.remote.Response;
+
+import com.google.gson.stream.JsonWriter;
+
+import io.cucumber.plugin.ConcurrentEventListener;
+import io.cucumber.plugin.event.EventPublisher;
+import io.cucumber.plugin.event.HookTestStep;
+import io.cucumber.plugin.event.PickleStepTestStep;
+import io.cucumber.plugin.event.TestCase;
+import io.cucumber.plugin.event.TestCaseFinished;
+import io.cucumber.plugin.event.TestCaseStarted;
+import io.cucumber.plugin.event.TestStepFinished;
+import io.cucumber.plugin.event.TestStepStarted;
+
+/**
+ * Records a nested timeline of every scenario: the scenario, its hooks and
+ * steps, the Keywords calls inside each step, waits, browser launches and every
+ * WebDriver command. Events go to a buffer of the scenario's own thread and are
+ * written at scenario end as one Chrome Trace Event JSON file per scenario,
+ * which chrome://tracing and ui.perfetto.dev open directly. Keywords calls are
+ * found from the stack of their WebDriver commands and waits, so a keyword
+ * span runs from its first to its last traced call.
+ */
+public class ScenarioTrace implements ConcurrentEventListener {
+	static final class Event {
+		final String strCategory;
+		final String strName;
+		final String strArgs;
+		final long lngStartMicros;
+		long lngDurationMicros;
+
+		Event(String strCategory, String strName, String strArgs, long lngStartMicros) {
+			this.strCategory = strCategory;
+			this.strName = strName;
+			this.strArgs = strArgs;
+			this.lngStartMicros = lngStartMicros;
+		}
+	}
+
+	static final class Trace {
+		final List<Event> listEvents = new ArrayList<>(256);
+		final Deque<Event> dequeOpen = new ArrayDeque<>();
+		Event eventKeyword;
+		int intKeywordIndex;
+		String strKeywordSite;
+		long lngKeywordEndMicros;
+		int intDropped;
+	}
+
+	/**
+	 * Command executor that records every WebDriver command of the current
+	 * scenario before passing it on.
+	 */
+	static final class TracingCommandExecutor implements CommandExecutor {
+		final CommandExecutor commandExecutor;
+
+		TracingCommandExecutor(CommandExecutor commandExecutor) {
+			this.commandExecutor = commandExecutor;
+		}
+
+		@Override
+		public Response execute(Command command) throws IOException {
+			begin("webdriver", command.getName(), getCommandArguments(command));
+
+			try {
+				return commandExecutor.execute(command);
+			} finally {
+				end();
+			}
+		}
+	}
+
+	private static final String STR_KEYWORDS_CLASS = Keywords.class.getName();
+	private static final StackWalker stackWalker = StackWalker.getInstance();
+
+	// ==================================================|Settings|==================================================
+	private static final boolean blnEnabled = Base.configurationVariables("scenarioTrace").equals("true");
+	private static final File fileDirectory = new File(Base.configurationVariables("scenarioTraceDirectory"));
+	private static final int intMaxEvents = Integer.parseInt(Base.configurationVariables("scenarioTraceMaxEvents"));
+	private static final long lngBaseMicros = System.currentTimeMillis() * 1000;
+	private static final long lngBaseNanos = System.nanoTime();
+
+	// ==================================================|State|==================================================
+	private static final ThreadLocal<Trace> threadLocalTrace = new ThreadLocal<>();
+	private static final AtomicLong atomicTraces = new AtomicLong();
+	private static final AtomicLong atomicEvents = new AtomicLong();
+	private static final AtomicLong atomicDropped = new AtomicLong();
+	private static final AtomicLong atomicWriteMillis = new AtomicLong();
+
+	static {
+		RunSummary.register("Scenario Traces", ScenarioTrace::getSummary);
+	}
+
+	@Override
+	public void setEventPublisher(EventPublisher eventPublisher) {
+		if (!blnEnabled)
+			return;
+
+		eventPublisher.registerHandlerFor(TestCaseStarted.class, this::handleTestCaseStarted);
+		eventPublisher.registerHandlerFor(TestStepStarted.class, this::handleTestStepStarted);
+		eventPublisher.registerHandlerFor(TestStepFinished.class, event -> endStep());
+		eventPublisher.registerHandlerFor(TestCaseFinished.class, this::handleTestCaseFinished);
+	}
+
+	// ==================================================|Handlers|==================================================
+	private void handleTestCaseStarted(TestCaseStarted event) {
+		Trace trace = new Trace();
+
+		// Cucumber publishes to concurrent listeners on the thread running the scenario.
+		threadLocalTrace.set(trace);
+		trace.dequeOpen.push(new Event("scenario", event.getTestCase().getName(),
+				event.getTestCase().getUri() + ":" + event.getTestCase().getLocation().getLine(), getMicros()));
+	}
+
+	private void handleTestStepStarted(TestStepStarted event) {
+		if (event.getTestStep() instanceof PickleStepTestStep) {
+			PickleStepTestStep pickleStepTestStep = (PickleStepTestStep) event.getTestStep();
+
+			begin("step", pickleStepTestStep.getStep().getKeyword() + pickleStepTestStep.getStep().getText(),
+					"line " + pickleStepTestStep.getStep().getLine());
+		} else if (event.getTestStep() instanceof HookTestStep) {
+			String strCodeLocation = event.getTestStep().getCodeLocation();
+			int intParameters = strCodeLocation.indexOf('(');
+
+			begin("hook", ((HookTestStep) event.getTestStep()).getHookType().name() + " "
+					+ (intParameters > 0 ? strCodeLocation.substring(0, intParameters) : strCodeLocation), null);
+		}
+	}
+
+	private void handleTestCaseFinished(TestCaseFinished event) {
+		Trace trace = threadLocalTrace.get();
+
+		threadLocalTrace.remove();
+
+		if (trace == null)
+			return;
+
+		long lngNowMicros = getMicros();
+
+		closeKeyword(trace);
+
+		while (!trace.dequeOpen.isEmpty()) {
+			Event eventOpen = trace.dequeOpen.pop();
+
+			eventOpen.lngDurationMicros = lngNowMicros - eventOpen.lngStartMicros;
+			trace.listEvents.add(eventOpen);
+		}
+
+		write(event.getTestCase(), trace);
+	}
+
+	// ==================================================|Spans|==================================================
+	public static boolean isEnabled() {
+		return blnEnabled;
+	}
+
+	/**
+	 * Opens a span on the current thread's scenario timeline. Does nothing outside
+	 * a scenario. Every begin must be followed by an end in a finally block.
+	 *
+	 * @param strCategory - category shown in the trace viewer (wait, browser, ...).
+	 * @param strName     - span name.
+	 * @param strArgs     - detail shown with the span, or null.
+	 */
+	public static void begin(String strCategory, String strName, String strArgs) {
+		Trace trace = threadLocalTrace.get();
+
+		if (trace == null)
+			return;
+
+		long lngNowMicros = getMicros();
+
+		if (!strCategory.equals("step") && !strCategory.equals("hook"))
+			attributeKeyword(trace, lngNowMicros);
+
+		trace.dequeOpen.push(new Event(strCategory, strName, strArgs, lngNowMicros));
+	}
+
+	/**
+	 * Closes the span opened last on the current thread.
+	 */
+	public static void end() {
+		Trace trace = threadLocalTrace.get();
+
+		if (trace == null || trace.dequeOpen.size() <= 1)
+			return;
+
+		Event event = trace.dequeOpen.pop();
+		long lngNowMicros = getMicros();
+
+		event.lngDurationMicros = lngNowMicros - event.lngStartMicros;
+		add(trace, event);
+
+		if (trace.eventKeyword != null)
+			trace.lngKeywordEndMicros = lngNowMicros;
+	}
+
+	private static void endStep() {
+		Trace trace = threadLocalTrace.get();
+
+		if (trace == null)
+			return;
+
+		closeKeyword(trace);
+
+		// Spans left open by the step (none when every begin has its finally) end with it.
+		while (trace.dequeOpen.size() > 1) {
+			String strCategory = trace.dequeOpen.peek().strCategory;
+
+			end();
+
+			if (strCategory.equals("step") || strCategory.equals("hook"))
+				break;
+		}
+	}
+
+	/**
+	 * Opens a keyword span when the call being traced comes from a different
+	 * Keywords call than the last one. The outermost Keywords frame is the keyword;
+	 * its caller's method and bytecode index tell two calls of the same keyword
+	 * apart.
+	 */
+	private static void attributeKeyword(Trace trace, long lngNowMicros) {
+		String[] strKeyword = stackWalker.walk(streamFrames -> {
+			String strName = null;
+			String strSite = null;
+			boolean blnCallerNext = false;
+
+			for (Iterator<StackFrame> iterator = streamFrames.iterator(); iterator.hasNext();) {
+				StackFrame stackFrame = iterator.next();
+
+				if (stackFrame.getClassName().equals(STR_KEYWORDS_CLASS)) {
+					strName = stackFrame.getMethodName();
+					blnCallerNext = true;
+				} else if (blnCallerNext) {
+					strSite = stackFrame.getClassName() + "." + stackFrame.getMethodName() + "@"
+							+ stackFrame.getByteCodeIndex();
+					blnCallerNext = false;
+				} else if (stackFrame.getClassName().startsWith("io.cucumber.")) {
+					// Glue is called from Cucumber; there are no Keywords frames below it.
+					break;
+				}
+			}
+
+			return strName == null ? null : new String[] { strName, strSite };
+		});
+
+		if (strKeyword == null) {
+			closeKeyword(trace);
+			return;
+		}
+
+		String strSite = strKeyword[0] + "|" + strKeyword[1];
+
+		if (strSite.equals(trace.strKeywordSite))
+			return;
+
+		closeKeyword(trace);
+		trace.eventKeyword = new Event("keyword", strKeyword[0], strKeyword[1], lngNowMicros);
+		trace.intKeywordIndex = trace.listEvents.size();
+		trace.strKeywordSite = strSite;
+		trace.lngKeywordEndMicros = lngNowMicros;
+	}
+
+	private static void closeKeyword(Trace trace) {
+		if (trace.eventKeyword == null)
+			return;
+
+		trace.eventKeyword.lngDurationMicros = trace.lngKeywordEndMicros - trace.eventKeyword.lngStartMicros;
+
+		// Ahead of its calls, so viewers nest a call that spans the whole keyword inside it.
+		if (trace.listEvents.size() < intMaxEvents)
+			trace.listEvents.add(trace.intKeywordIndex, trace.eventKeyword);
+		else
+			trace.intDropped++;
+
+		trace.eventKeyword = null;
+		trace.strKeywordSite = null;
+	}
+
+	private static void add(Trace trace, Event event) {
+		if (trace.listEvents.size() < intMaxEvents)
+			trace.listEvents.add(event);
+		else
+			trace.intDropped++;
+	}
+
+	private static long getMicros() {
+		return lngBaseMicros + (System.nanoTime() - lngBaseNanos) / 1000;
+	}
+
+	// ==================================================|WebDriver|==================================================
+	/**
+	 * Records every command the web driver sends. Does nothing when tracing is off
+	 * or for drivers that are not RemoteWebDriver.
+	 *
+	 * @param webDriver - web driver that was just created (not a lazy handle).
+	 */
+	public static void instrument(WebDriver webDriver) {
+		if (!blnEnabled || !(webDriver instanceof RemoteWebDriver))
+			return;
+
+		try {
+			RemoteWebDriver remoteWebDriver = (RemoteWebDriver) webDriver;
+			Method method = RemoteWebDriver.class.getDeclaredMethod("setCommandExecutor", CommandExecutor.class);
+
+			method.setAccessible(true);
+			method.invoke(remoteWebDriver, new TracingCommandExecutor(remoteWebDriver.getCommandExecutor()));
+		} catch (Exception exception) {
+			exception.printStackTrace();
+		}
+	}
+
+	/**
+	 * Gets the command executor behind the tracing one.
+	 *
+	 * @param commandExecutor - command executor of a web driver.
+	 * @return Returns the original command executor.
+	 */
+	public static CommandExecutor unwrap(CommandExecutor commandExecutor) {
+		return commandExecutor instanceof TracingCommandExecutor
+				? ((TracingCommandExecutor) commandExecutor).commandExecutor
+				: commandExecutor;
+	}
+
+	private static String getCommandArguments(Command command) {
+		// Only locators and URLs; typed text and script arguments may hold secrets.
+		switch (command.getName()) {
+		case DriverCommand.FIND_ELEMENT:
+		case DriverCommand.FIND_ELEMENTS:
+		case DriverCommand.FIND_CHILD_ELEMENT:
+		case DriverCommand.FIND_CHILD_ELEMENTS:
+			return command.getParameters().get("using") + "=" + command.getParameters().get("value");
+		case DriverCommand.GET:
+			return String.valueOf(command.getParameters().get("url"));
+		default:
+			return null;
+		}
+	}
+
+	// ==================================================|Write|==================================================
+	private static void write(TestCase testCase, Trace trace) {
+		long lngStartMillis = System.currentTimeMillis();
+		String strFeature = new File(testCase.getUri().getPath()).getName().replace(".feature", "");
+		File fileTrace = new File(fileDirectory, (strFeature + "-" + testCase.getLocation().getLine() + "-" + testCase.getName())
+				.replaceAll("[^A-Za-z0-9._-]+", "_") + "-" + testCase.getId().toString().substring(0, 8) + ".json");
+		long lngThreadId = Thread.currentThread().getId();
+
+		fileDirectory.mkdirs();
+
+		try (JsonWriter jsonWriter = new JsonWriter(
+				new BufferedWriter(new OutputStreamWriter(new FileOutputStream(fileTrace), StandardCharsets.UTF_8)))) {
+			jsonWriter.beginObject();
+			jsonWriter.name("displayTimeUnit").value("ms");
+			jsonWriter.name("traceEvents").beginArray();
+			jsonWriter.beginObject().name("name").value("thread_name").name("ph").value("M").name("pid").value(1)
+					.name("tid").value(lngThreadId).name("args").beginObject().name("name")
+					.value(Thread.currentThread().getName()).endObject().endObject();
+
+			for (Event event : trace.listEvents) {
+				jsonWriter.beginObject();
+				jsonWriter.name("name").value(event.strName);
+				jsonWriter.name("cat").value(event.strCategory);
+				jsonWriter.name("ph").value("X");
+				jsonWriter.name("ts").value(event.lngStartMicros);
+				jsonWriter.name("dur").value(event.lngDurationMicros);
+				jsonWriter.name("pid").value(1);
+				jsonWriter.name("tid").value(lngThreadId);
+
+				if (event.strArgs != null)
+					jsonWriter.name("args").beginObject().name("detail").value(event.strArgs).endObject();
+
+				jsonWriter.endObject();
+			}
+
+			jsonWriter.endArray();
+			jsonWriter.name("droppedEvents").value(trace.intDropped);
+			jsonWriter.endObject();
+		} catch (Exception exception) {
+			exception.printStackTrace();
+		}
+
+		atomicTraces.incrementAndGet();
+		atomicEvents.addAndGet(trace.listEvents.size());
+		atomicDropped.addAndGet(trace.intDropped);
+		atomicWriteMillis.addAndGet(System.currentTimeMillis() - lngStartMillis);
+	}
+
+	// ==================================================|Report|==================================================
+	public static String getSummary() {
+		if (atomicTraces.get() == 0)
+			return null;
+
+		return atomicTraces.get() + " traces, " + atomicEvents.get() / atomicTraces.get() + " events avg, "
+				+ atomicDropped.get() + " dropped, " + atomicWriteMillis.get() / atomicTraces.get()
+				+ " ms avg write (" + fileDirectory.getPath() + ")";
+	}
+}
\ No newline at end of file
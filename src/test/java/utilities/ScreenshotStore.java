@@ -0,0 +1,164 @@
+package utilities;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.security.MessageDigest;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+
+import org.apache.commons.io.FileUtils;
+
+public class ScreenshotStore {
+	// ==================================================|Settings|==================================================
+	private static final String strStoreDirectory = Base.configurationVariables("screenshotStoreDirectory");
+	private static final String strStoreRelativePath = Base.configurationVariables("screenshotStoreRelativePath");
+	private static final float fltJpegQuality = Float
+			.parseFloat(Base.configurationVariables("screenshotStoreJpegQuality"));
+
+	// ==================================================|Statistics|==================================================
+	private static final Map<String, String> mapStoredFileNames = new ConcurrentHashMap<>();
+	private static final AtomicLong atomicOriginalBytes = new AtomicLong();
+	private static final AtomicLong atomicStoredBytes = new AtomicLong();
+	private static final AtomicLong atomicScreenshots = new AtomicLong();
+	private static final AtomicLong atomicDuplicates = new AtomicLong();
+
+	static {
+		RunSummary.register("Screenshot Store", ScreenshotStore::getSummary);
+	}
+
+	// ==================================================|Store|==================================================
+	/**
+	 * Stores the screenshot under its SHA-256 hash. The image is re-encoded as JPEG
+	 * when that is smaller than the original, and a screenshot that is already
+	 * stored is not written again.
+	 *
+	 * @param byteScreenshot - original PNG bytes.
+	 * @return Returns the file name of the stored screenshot ([hash].jpg or
+	 *         [hash].png).
+	 */
+	public static String store(byte[] byteScreenshot) throws Exception {
+		String strHash = getSha256(byteScreenshot);
+
+		atomicScreenshots.incrementAndGet();
+		atomicOriginalBytes.addAndGet(byteScreenshot.length);
+
+		String strFileName = mapStoredFileNames.get(strHash);
+
+		if (strFileName == null)
+			strFileName = findOnDisk(strHash);
+
+		if (strFileName != null) {
+			atomicDuplicates.incrementAndGet();
+			mapStoredFileNames.putIfAbsent(strHash, strFileName);
+
+			return strFileName;
+		}
+
+		synchronized (strHash.intern()) {
+			strFileName = mapStoredFileNames.get(strHash);
+
+			if (strFileName != null) {
+				atomicDuplicates.incrementAndGet();
+
+				return strFileName;
+			}
+
+			byte[] byteJpeg = encodeJpeg(byteScreenshot);
+			byte[] byteStored = (byteJpeg != null && byteJpeg.length < byteScreenshot.length) ? byteJpeg
+					: byteScreenshot;
+
+			strFileName = strHash + (byteStored == byteJpeg ? ".jpg" : ".png");
+
+			FileUtils.writeByteArrayToFile(new File(strStoreDirectory, strFileName), byteStored);
+			atomicStoredBytes.addAndGet(byteStored.length);
+			mapStoredFileNames.put(strHash, strFileName);
+		}
+
+		return strFileName;
+	}
+
+	/**
+	 * Gets the path of a stored screenshot relative to the Extent report.
+	 *
+	 * @param strFileName - file name returned by store.
+	 * @return Returns the report relative path.
+	 */
+	public static String getReportRelativePath(String strFileName) {
+		return strStoreRelativePath + strFileName;
+	}
+
+	public static long getBytesSaved() {
+		return atomicOriginalBytes.get() - atomicStoredBytes.get();
+	}
+
+	public static String getSummary() {
+		if (atomicScreenshots.get() == 0)
+			return null;
+
+		return atomicScreenshots.get() + " screenshots, " + atomicDuplicates.get() + " duplicates, "
+				+ (atomicOriginalBytes.get() / 1024) + " KB captured, " + (atomicStoredBytes.get() / 1024)
+				+ " KB stored, " + (getBytesSaved() / 1024) + " KB saved";
+	}
+
+	// ==================================================|Helpers|==================================================
+	private static String findOnDisk(String strHash) {
+		for (String strExtension : new String[] { ".jpg", ".png" }) {
+			if (new File(strStoreDirectory, strHash + strExtension).exists())
+				return strHash + strExtension;
+		}
+
+		return null;
+	}
+
+	private static byte[] encodeJpeg(byte[] bytePng) {
+		try {
+			BufferedImage pngImage = ImageIO.read(new ByteArrayInputStream(bytePng));
+			BufferedImage rgbImage = new BufferedImage(pngImage.getWidth(), pngImage.getHeight(),
+					BufferedImage.TYPE_INT_RGB);
+
+			rgbImage.createGraphics().drawImage(pngImage, 0, 0, null);
+
+			Iterator<ImageWriter> imageWriters = ImageIO.getImageWritersByFormatName("jpg");
+			ImageWriter imageWriter = imageWriters.next();
+			ImageWriteParam imageWriteParam = imageWriter.getDefaultWriteParam();
+			ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+
+			imageWriteParam.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+			imageWriteParam.setCompressionQuality(fltJpegQuality);
+
+			try (MemoryCacheImageOutputStream imageOutputStream = new MemoryCacheImageOutputStream(
+					byteArrayOutputStream)) {
+				imageWriter.setOutput(imageOutputStream);
+				imageWriter.write(null, new IIOImage(rgbImage, null, null), imageWriteParam);
+			} finally {
+				imageWriter.dispose();
+			}
+
+			return byteArrayOutputStream.toByteArray();
+		} catch (Exception exception) {
+			exception.printStackTrace();
+
+			return null;
+		}
+	}
+
+	private static String getSha256(byte[] byteData) throws Exception {
+		byte[] byteDigest = MessageDigest.getInstance("SHA-256").digest(byteData);
+		StringBuilder stringBuilder = new StringBuilder();
+
+		for (byte byteValue : byteDigest)
+			stringBuilder.append(String.format("%02x", byteValue));
+
+		return stringBuilder.toString();
+	}
+}
\ No newline at end of file
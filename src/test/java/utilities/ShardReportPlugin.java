@@ -0,0 +1,170 @@
+package utilities;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import io.cucumber.plugin.ConcurrentEventListener;
+import io.cucumber.plugin.event.EventPublisher;
+import io.cucumber.plugin.event.HookTestStep;
+import io.cucumber.plugin.event.PickleStepTestStep;
+import io.cucumber.plugin.event.Result;
+import io.cucumber.plugin.event.TestCase;
+import io.cucumber.plugin.event.TestCaseFinished;
+import io.cucumber.plugin.event.TestCaseStarted;
+import io.cucumber.plugin.event.TestRunFinished;
+import io.cucumber.plugin.event.TestStepFinished;
+
+/**
+ * Streams every finished scenario as one JSON line to an append-only shard file
+ * owned by this JVM. Only the scenarios that are still running are kept in
+ * memory. Shards are written to a subdirectory of reportShardDirectory named
+ * after the run id, so JVMs that take part in the same run share a directory
+ * (mvn test -DrunId=[id]) and ReportMerger never mixes in older runs.
+ */
+public class ShardReportPlugin implements ConcurrentEventListener {
+	private final Gson gson = new Gson();
+	private final Map<UUID, JsonArray> mapRunningSteps = new ConcurrentHashMap<>();
+	private final Map<UUID, Long> mapStartMillis = new ConcurrentHashMap<>();
+	private static final String strRunId = System.getProperty("runId") != null
+			? System.getProperty("runId").replaceAll("[^A-Za-z0-9._-]", "_")
+			: "run-" + ManagementFactory.getRuntimeMXBean().getStartTime();
+	private final String strWorker;
+	private BufferedWriter bufferedWriter;
+
+	public ShardReportPlugin() {
+		this.strWorker = getWorkerId();
+	}
+
+	@Override
+	public void setEventPublisher(EventPublisher eventPublisher) {
+		eventPublisher.registerHandlerFor(TestCaseStarted.class, this::handleTestCaseStarted);
+		eventPublisher.registerHandlerFor(TestStepFinished.class, this::handleTestStepFinished);
+		eventPublisher.registerHandlerFor(TestCaseFinished.class, this::handleTestCaseFinished);
+		eventPublisher.registerHandlerFor(TestRunFinished.class, event -> close());
+	}
+
+	// ==================================================|Handlers|==================================================
+	private void handleTestCaseStarted(TestCaseStarted event) {
+		mapRunningSteps.put(event.getTestCase().getId(), new JsonArray());
+		mapStartMillis.put(event.getTestCase().getId(), event.getInstant().toEpochMilli());
+	}
+
+	private void handleTestStepFinished(TestStepFinished event) {
+		JsonArray jsonSteps = mapRunningSteps.get(event.getTestCase().getId());
+
+		if (jsonSteps == null)
+			return;
+
+		JsonObject jsonStep = new JsonObject();
+
+		if (event.getTestStep() instanceof PickleStepTestStep) {
+			PickleStepTestStep pickleStepTestStep = (PickleStepTestStep) event.getTestStep();
+
+			jsonStep.addProperty("keyword", pickleStepTestStep.getStep().getKeyword());
+			jsonStep.addProperty("name", pickleStepTestStep.getStep().getText());
+			jsonStep.addProperty("line", pickleStepTestStep.getStep().getLine());
+		} else if (event.getTestStep() instanceof HookTestStep) {
+			jsonStep.addProperty("keyword", "Hook");
+			jsonStep.addProperty("name", ((HookTestStep) event.getTestStep()).getHookType().name());
+		}
+
+		addResult(jsonStep, event.getResult());
+		jsonSteps.add(jsonStep);
+	}
+
+	private void handleTestCaseFinished(TestCaseFinished event) {
+		TestCase testCase = event.getTestCase();
+		JsonArray jsonSteps = mapRunningSteps.remove(testCase.getId());
+		Long lngStartMillis = mapStartMillis.remove(testCase.getId());
+		JsonObject jsonScenario = new JsonObject();
+		JsonArray jsonTags = new JsonArray();
+
+		for (String strTag : testCase.getTags())
+			jsonTags.add(strTag);
+
+		jsonScenario.addProperty("worker", strWorker);
+		jsonScenario.addProperty("uri", testCase.getUri().toString());
+		jsonScenario.addProperty("line", testCase.getLocation().getLine());
+		jsonScenario.addProperty("name", testCase.getName());
+		jsonScenario.add("tags", jsonTags);
+		jsonScenario.addProperty("startMillis", lngStartMillis != null ? lngStartMillis : 0);
+		addResult(jsonScenario, event.getResult());
+		jsonScenario.add("steps", jsonSteps != null ? jsonSteps : new JsonArray());
+
+		write(gson.toJson(jsonScenario));
+	}
+
+	// ==================================================|Helpers|==================================================
+	private void addResult(JsonObject jsonObject, Result result) {
+		jsonObject.addProperty("status", result.getStatus().name());
+		jsonObject.addProperty("durationMillis", result.getDuration().toMillis());
+
+		if (result.getError() != null)
+			jsonObject.addProperty("error", String.valueOf(result.getError().getMessage()));
+	}
+
+	private synchronized void write(String strLine) {
+		try {
+			if (bufferedWriter == null) {
+				File fileShard = new File(getRunDirectory(),
+						"shard-" + strWorker + "-" + System.currentTimeMillis() + ".ndjson");
+
+				fileShard.getParentFile().mkdirs();
+				bufferedWriter = new BufferedWriter(
+						new OutputStreamWriter(new FileOutputStream(fileShard, true), StandardCharsets.UTF_8));
+			}
+
+			bufferedWriter.write(strLine);
+			bufferedWriter.newLine();
+			bufferedWriter.flush();
+		} catch (Exception exception) {
+			exception.printStackTrace();
+		}
+	}
+
+	private synchronized void close() {
+		try {
+			if (bufferedWriter != null) {
+				bufferedWriter.close();
+				bufferedWriter = null;
+			}
+		} catch (Exception exception) {
+			exception.printStackTrace();
+		}
+	}
+
+	/**
+	 * Gets the shard directory of the current run.
+	 */
+	static File getRunDirectory() {
+		return new File(Base.configurationVariables("reportShardDirectory"), strRunId);
+	}
+
+	/**
+	 * Gets the id of this JVM, host name and process id, as used in shard file
+	 * names and by the work queue.
+	 */
+	static String getWorkerId() {
+		return getHostName() + "-" + ManagementFactory.getRuntimeMXBean().getPid();
+	}
+
+	private static String getHostName() {
+		try {
+			return InetAddress.getLocalHost().getHostName();
+		} catch (Exception exception) {
+			return "localhost";
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,92 @@
+package utilities;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Breaks down the time between JVM start and the first scenario: JVM and TestNG
+ * start-up, Cucumber runner setup (options, plugins and feature parsing), the
+ * scenario matrix, and the glue loading Cucumber does on the first scenario of
+ * every thread.
+ */
+public class StartupProfiler {
+	private static final long lngJvmStartMillis = ManagementFactory.getRuntimeMXBean().getStartTime();
+	private static final Map<String, long[]> mapPhases = new ConcurrentHashMap<>();
+	private static final Map<Thread, Long> mapThreadStartMillis = new ConcurrentHashMap<>();
+	private static final AtomicLong atomicGlueMillis = new AtomicLong();
+	private static final AtomicLong atomicGlueThreads = new AtomicLong();
+	private static final AtomicLong atomicFirstScenarioMillis = new AtomicLong();
+
+	static {
+		RunSummary.register("Start-up", StartupProfiler::getSummary);
+	}
+
+	// ==================================================|Phases|==================================================
+	public static void begin(String strPhase) {
+		mapPhases.put(strPhase, new long[] { System.currentTimeMillis(), 0 });
+	}
+
+	public static void end(String strPhase) {
+		long[] lngTimes = mapPhases.get(strPhase);
+
+		if (lngTimes != null)
+			lngTimes[1] = System.currentTimeMillis();
+	}
+
+	/**
+	 * Marks the start of a scenario on the current thread. Only the first scenario
+	 * of each thread is tracked, because that is when Cucumber loads the glue.
+	 */
+	public static void scenarioStarting() {
+		mapThreadStartMillis.putIfAbsent(Thread.currentThread(), System.currentTimeMillis());
+	}
+
+	/**
+	 * Marks the first hook of a scenario. On the first scenario of a thread the
+	 * time since scenarioStarting is glue loading and step matching.
+	 */
+	public static void scenarioStarted() {
+		Long lngStartMillis = mapThreadStartMillis.replace(Thread.currentThread(), -1L);
+
+		if (lngStartMillis == null || lngStartMillis < 0)
+			return;
+
+		long lngNowMillis = System.currentTimeMillis();
+
+		atomicGlueMillis.addAndGet(lngNowMillis - lngStartMillis);
+		atomicGlueThreads.incrementAndGet();
+		atomicFirstScenarioMillis.compareAndSet(0, lngNowMillis);
+	}
+
+	// ==================================================|Report|==================================================
+	public static String getSummary() {
+		long[] lngSetup = mapPhases.get("Runner setup");
+
+		if (lngSetup == null)
+			return null;
+
+		StringBuilder stringBuilder = new StringBuilder();
+
+		stringBuilder.append("JVM to runner ").append(lngSetup[0] - lngJvmStartMillis).append(" ms, runner setup ")
+				.append(getDuration("Runner setup")).append(" ms (feature index load ")
+				.append(FeatureIndex.getLoadMillis()).append(" ms, feature parsing ")
+				.append(FeatureIndex.getParseMillis()).append(" ms, ").append(FeatureIndex.getHits())
+				.append(" features from index, ").append(FeatureIndex.getMisses()).append(" parsed), scenario matrix ")
+				.append(getDuration("Scenario matrix")).append(" ms");
+
+		if (atomicGlueThreads.get() > 0)
+			stringBuilder.append(", glue load ").append(atomicGlueMillis.get() / atomicGlueThreads.get())
+					.append(" ms avg over ").append(atomicGlueThreads.get()).append(" threads, first scenario at ")
+					.append(atomicFirstScenarioMillis.get() - lngJvmStartMillis).append(" ms");
+
+		return stringBuilder.toString();
+	}
+
+	private static long getDuration(String strPhase) {
+		long[] lngTimes = mapPhases.get(strPhase);
+
+		return lngTimes == null || lngTimes[1] == 0 ? 0 : lngTimes[1] - lngTimes[0];
+	}
+}
\ No newline at end of file
@@ -0,0 +1,157 @@
+package utilities;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openqa.selenium.ElementClickInterceptedException;
+import org.openqa.selenium.ElementNotInteractableException;
+import org.openqa.selenium.NoSuchElementException;
+import org.openqa.selenium.StaleElementReferenceException;
+
+import io.cucumber.java.Scenario;
+
+/**
+ * Retries idempotent keywords in place when they hit a transient WebDriver
+ * error. Each keyword has its own attempt limit and every scenario has a shared
+ * retry time budget. Nested keywords (a click that waits for visibility) are
+ * only retried by the outermost keyword.
+ */
+public class StepRetry {
+	@FunctionalInterface
+	public interface Action<E extends Exception> {
+		void run() throws E;
+	}
+
+	// ==================================================|Settings|==================================================
+	private static final Map<String, Integer> mapKeywordLimits = parseKeywordLimits(
+			Base.configurationVariables("retryKeywordLimits"));
+	private static final long lngScenarioBudgetMillis = Long
+			.parseLong(Base.configurationVariables("retryScenarioBudgetMillis"));
+	private static final long lngBackoffMillis = Long.parseLong(Base.configurationVariables("retryBackoffMillis"));
+
+	// ==================================================|State|==================================================
+	private static final ThreadLocal<long[]> threadLocalBudgetUsedMillis = ThreadLocal.withInitial(() -> new long[1]);
+	private static final ThreadLocal<int[]> threadLocalDepth = ThreadLocal.withInitial(() -> new int[1]);
+	private static final AtomicLong atomicRetries = new AtomicLong();
+	private static final AtomicLong atomicRecovered = new AtomicLong();
+	private static final AtomicLong atomicBudgetExhausted = new AtomicLong();
+
+	static {
+		RunSummary.register("Step Retries", () -> atomicRetries.get() == 0 ? null
+				: atomicRetries.get() + " retries, " + atomicRecovered.get() + " recovered, "
+						+ atomicBudgetExhausted.get() + " stopped by scenario budget");
+	}
+
+	// ==================================================|Run|==================================================
+	/**
+	 * Runs the keyword action and retries it on a transient WebDriver error while
+	 * the keyword limit and the scenario retry budget allow it.
+	 *
+	 * @param strKeyword - keyword name used to look up the retry limit.
+	 * @param action     - keyword body.
+	 */
+	public static <E extends Exception> void run(String strKeyword, Action<E> action) throws E {
+		int[] intDepth = threadLocalDepth.get();
+
+		if (intDepth[0] > 0) {
+			action.run();
+			return;
+		}
+
+		int intMaxRetries = mapKeywordLimits.getOrDefault(strKeyword, 0);
+		int intAttempt = 0;
+
+		intDepth[0]++;
+
+		try {
+			while (true) {
+				long lngAttemptStartMillis = System.currentTimeMillis();
+
+				try {
+					action.run();
+
+					if (intAttempt > 0) {
+						atomicRecovered.incrementAndGet();
+						log("Retry: " + strKeyword + " recovered on retry " + intAttempt + "/" + intMaxRetries);
+					}
+
+					return;
+				} catch (RuntimeException runtimeException) {
+					if (intAttempt > 0)
+						threadLocalBudgetUsedMillis.get()[0] += System.currentTimeMillis() - lngAttemptStartMillis;
+
+					if (!isTransient(runtimeException) || intAttempt >= intMaxRetries)
+						throw runtimeException;
+
+					if (threadLocalBudgetUsedMillis.get()[0] + lngBackoffMillis > lngScenarioBudgetMillis) {
+						atomicBudgetExhausted.incrementAndGet();
+						log("Retry: " + strKeyword + " not retried, scenario retry budget of "
+								+ lngScenarioBudgetMillis + " ms used up");
+						throw runtimeException;
+					}
+
+					intAttempt++;
+					atomicRetries.incrementAndGet();
+					log("Retry: " + strKeyword + " attempt " + intAttempt + "/" + intMaxRetries + " after "
+							+ runtimeException.getClass().getSimpleName());
+
+					sleepBackoff();
+				}
+			}
+		} finally {
+			intDepth[0]--;
+		}
+	}
+
+	/**
+	 * Resets the retry budget of the current thread. Called at scenario start.
+	 */
+	public static void resetScenarioBudget() {
+		threadLocalBudgetUsedMillis.get()[0] = 0;
+	}
+
+	// ==================================================|Helpers|==================================================
+	private static boolean isTransient(RuntimeException runtimeException) {
+		return runtimeException instanceof StaleElementReferenceException
+				|| runtimeException instanceof ElementClickInterceptedException
+				|| runtimeException instanceof ElementNotInteractableException
+				|| runtimeException instanceof NoSuchElementException;
+	}
+
+	private static void sleepBackoff() {
+		long lngStartMillis = System.currentTimeMillis();
+
+		ScenarioTrace.begin("wait", "Retry backoff", lngBackoffMillis + " ms");
+
+		try {
+			Thread.sleep(lngBackoffMillis);
+		} catch (InterruptedException interruptedException) {
+			Thread.currentThread().interrupt();
+		} finally {
+			ScenarioTrace.end();
+		}
+
+		threadLocalBudgetUsedMillis.get()[0] += System.currentTimeMillis() - lngStartMillis;
+	}
+
+	private static void log(String strMessage) {
+		Scenario scenario = Base.getScenario();
+
+		if (scenario != null)
+			scenario.log(strMessage);
+	}
+
+	private static Map<String, Integer> parseKeywordLimits(String strKeywordLimits) {
+		Map<String, Integer> mapLimits = new HashMap<>();
+
+		for (String strEntry : strKeywordLimits.split(";")) {
+			String[] strParts = strEntry.trim().split(":");
+
+			if (strParts.length == 2)
+				mapLimits.put(strParts[0].trim(), Integer.parseInt(strParts[1].trim()));
+		}
+
+		return mapLimits;
+	}
+}
\ No newline at end of file
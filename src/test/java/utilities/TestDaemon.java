@@ -0,0 +1,503 @@
+package utilities;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import io.cucumber.core.feature.FeatureParser;
+import io.cucumber.core.options.CommandlineOptionsParser;
+import io.cucumber.core.options.CucumberProperties;
+import io.cucumber.core.options.CucumberPropertiesParser;
+import io.cucumber.core.options.RuntimeOptions;
+import io.cucumber.core.runtime.FeaturePathFeatureSupplier;
+import io.cucumber.core.runtime.FeatureSupplier;
+import io.cucumber.core.runtime.Runtime;
+import io.cucumber.plugin.ConcurrentEventListener;
+import io.cucumber.plugin.event.EventPublisher;
+import io.cucumber.plugin.event.PickleStepTestStep;
+import io.cucumber.plugin.event.TestCaseFinished;
+import io.cucumber.plugin.event.TestRunStarted;
+import io.cucumber.plugin.event.TestStepStarted;
+
+/**
+ * Long-lived local JVM for fast inner-loop runs. The daemon listens on the
+ * loopback interface for run requests (feature paths with optional :line, and
+ * a tag expression) and runs them one at a time on a single warm thread with
+ * the Cucumber command line runtime. Step definition and page object classes
+ * are loaded fresh for every run from the compiled test classes, so recompiled
+ * glue is picked up without a restart. Browsers are parked between runs instead
+ * of quit: cookies and storage are cleared and the next scenario gets the same
+ * browser. With testDaemonWatch on, saved feature files are run again, and the
+ * last request is run again when step definition classes are recompiled. Every
+ * run reports the time from request to first step.
+ *
+ * Usage: java -cp [test classpath] utilities.TestDaemon, then from another
+ * shell java -cp [test classpath] utilities.TestDaemon run
+ * [feature[:line] ...] [--tags expression]. Any socket client can send the
+ * request as one JSON line instead, {"features": [...], "tags": "..."}, and
+ * skip the client JVM start.
+ */
+public class TestDaemon implements ConcurrentEventListener {
+	private static final String[] STR_GLUE_PACKAGES = { "stepDefinitions", "pageObjects" };
+
+	/**
+	 * Loads the glue packages from the compiled test classes before asking the
+	 * parent, so every run sees the classes as they are on disk now. All other
+	 * classes, including the utilities that hold the warm browsers, come from the
+	 * daemon.
+	 */
+	static final class GlueClassLoader extends URLClassLoader {
+		GlueClassLoader(URL urlClasses, ClassLoader classLoaderParent) {
+			super(new URL[] { urlClasses }, classLoaderParent);
+		}
+
+		@Override
+		protected Class<?> loadClass(String strName, boolean blnResolve) throws ClassNotFoundException {
+			synchronized (getClassLoadingLock(strName)) {
+				if (!isGlue(strName.replace('.', '/')))
+					return super.loadClass(strName, blnResolve);
+
+				Class<?> clsLoaded = findLoadedClass(strName);
+
+				if (clsLoaded == null) {
+					try {
+						clsLoaded = findClass(strName);
+					} catch (ClassNotFoundException classNotFoundException) {
+						return super.loadClass(strName, blnResolve);
+					}
+				}
+
+				if (blnResolve)
+					resolveClass(clsLoaded);
+
+				return clsLoaded;
+			}
+		}
+
+		@Override
+		public Enumeration<URL> getResources(String strName) throws IOException {
+			// The daemon's class path has the same packages; scanning both would find every step twice.
+			return isGlue(strName) ? findResources(strName) : super.getResources(strName);
+		}
+
+		private static boolean isGlue(String strPath) {
+			for (String strPackage : STR_GLUE_PACKAGES) {
+				if (strPath.equals(strPackage) || strPath.startsWith(strPackage + "/"))
+					return true;
+			}
+
+			return false;
+		}
+	}
+
+	// ==================================================|Settings|==================================================
+	private static final File fileTestClasses = new File("target/test-classes");
+	private static final File fileFeatures = new File("src/test/resources/features");
+
+	// ==================================================|State|==================================================
+	private static volatile boolean blnRunning;
+	private static final Map<String, Deque<WebDriver>> mapWarmBrowsers = new ConcurrentHashMap<>();
+	private static final AtomicLong atomicWarmReused = new AtomicLong();
+	private static final ExecutorService executorServiceRunner = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "test-daemon-runner");
+
+		thread.setDaemon(true);
+
+		return thread;
+	});
+	private static volatile JsonObject jsonLastRequest;
+	// Written by the plugin on the runner thread during a run.
+	private static volatile long lngRunStartedMillis;
+	private static volatile long lngFirstStepMillis;
+	private static final Map<String, Integer> mapStatusCounts = new ConcurrentHashMap<>();
+
+	public static void main(String[] args) throws Exception {
+		if (args.length > 0 && args[0].equals("run"))
+			System.exit(runClient(args));
+
+		new TestDaemon().serve();
+	}
+
+	// ==================================================|Plugin|==================================================
+	@Override
+	public void setEventPublisher(EventPublisher eventPublisher) {
+		eventPublisher.registerHandlerFor(TestRunStarted.class,
+				event -> lngRunStartedMillis = event.getInstant().toEpochMilli());
+		eventPublisher.registerHandlerFor(TestStepStarted.class, event -> {
+			if (lngFirstStepMillis == 0 && event.getTestStep() instanceof PickleStepTestStep)
+				lngFirstStepMillis = event.getInstant().toEpochMilli();
+		});
+		eventPublisher.registerHandlerFor(TestCaseFinished.class,
+				event -> mapStatusCounts.merge(event.getResult().getStatus().name(), 1, Integer::sum));
+	}
+
+	// ==================================================|Warm_Browsers|==================================================
+	/**
+	 * Takes a parked browser for the current thread's browser settings. Returns
+	 * null outside the daemon or when none is parked.
+	 *
+	 * @param strBrowser - browser name.
+	 * @return Returns the browser, or null to launch a new one.
+	 */
+	public static WebDriver takeWarmBrowser(String strBrowser) {
+		if (!blnRunning)
+			return null;
+
+		Deque<WebDriver> dequeBrowsers = mapWarmBrowsers.get(getBrowserKey(strBrowser));
+		WebDriver webDriver = dequeBrowsers != null ? dequeBrowsers.pollFirst() : null;
+
+		if (webDriver != null) {
+			WebDriverLifecycle.attach(webDriver);
+			atomicWarmReused.incrementAndGet();
+		}
+
+		return webDriver;
+	}
+
+	/**
+	 * Parks a browser instead of quitting it: extra windows are closed, cookies
+	 * and storage cleared and the page left blank. Returns false outside the
+	 * daemon, for remote browsers and browser contexts, when one is already parked,
+	 * or when the browser does not respond, and the caller quits it.
+	 *
+	 * @param webDriver - started browser (not a lazy handle).
+	 * @return True if the browser was parked, false otherwise.
+	 */
+	public static boolean parkWarmBrowser(WebDriver webDriver) {
+		if (!blnRunning || RemoteNodePool.isEnabled() || BrowserContextPool.isContext(webDriver))
+			return false;
+
+		Deque<WebDriver> dequeBrowsers = mapWarmBrowsers.computeIfAbsent(
+				getBrowserKey(Base.executionVariables("browser")), strKey -> new ArrayDeque<>());
+
+		if (!dequeBrowsers.isEmpty())
+			return false;
+
+		try {
+			List<String> listHandles = new ArrayList<>(webDriver.getWindowHandles());
+
+			for (String strHandle : listHandles.subList(1, listHandles.size())) {
+				webDriver.switchTo().window(strHandle);
+				webDriver.close();
+			}
+
+			webDriver.switchTo().window(listHandles.get(0));
+			webDriver.manage().deleteAllCookies();
+			((JavascriptExecutor) webDriver).executeScript(
+					"try { window.localStorage.clear(); window.sessionStorage.clear(); } catch (exception) {}");
+			webDriver.get("about:blank");
+		} catch (Exception exception) {
+			return false;
+		}
+
+		WebDriverLifecycle.detach(webDriver);
+		dequeBrowsers.addLast(webDriver);
+
+		return true;
+	}
+
+	private static String getBrowserKey(String strBrowser) {
+		return strBrowser.toLowerCase() + "|" + Base.executionVariables("browserHeadless");
+	}
+
+	// ==================================================|Serve|==================================================
+	private void serve() throws Exception {
+		int intPort = Integer.parseInt(Base.configurationVariables("testDaemonPort"));
+
+		blnRunning = true;
+
+		if (Base.configurationVariables("testDaemonPrelaunchBrowser").equals("true"))
+			executorServiceRunner.submit(TestDaemon::prelaunchBrowser).get();
+
+		if (Base.configurationVariables("testDaemonWatch").equals("true"))
+			startWatcher();
+
+		try (ServerSocket serverSocket = new ServerSocket(intPort, 50, InetAddress.getLoopbackAddress())) {
+			System.out.println("[Test Daemon] Listening on " + serverSocket.getLocalPort());
+
+			while (true) {
+				try (Socket socket = serverSocket.accept()) {
+					String strLine = new BufferedReader(
+							new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8)).readLine();
+
+					if (strLine == null)
+						continue;
+
+					JsonObject jsonRequest = JsonParser.parseString(strLine).getAsJsonObject();
+					JsonObject jsonReply = executorServiceRunner
+							.submit(() -> run(jsonRequest, System.currentTimeMillis(), "request")).get();
+					OutputStream outputStream = socket.getOutputStream();
+
+					jsonLastRequest = jsonRequest;
+					outputStream.write((jsonReply.toString() + "\n").getBytes(StandardCharsets.UTF_8));
+					outputStream.flush();
+				} catch (Exception exception) {
+					exception.printStackTrace();
+				}
+			}
+		}
+	}
+
+	private static void prelaunchBrowser() {
+		long lngStartMillis = System.currentTimeMillis();
+
+		try {
+			Base.quitWebDriver(Base.initializeWebDriver(Base.executionVariables("browser")));
+			System.out.println("[Test Daemon] Browser warmed up in " + (System.currentTimeMillis() - lngStartMillis)
+					+ " ms");
+		} catch (Exception exception) {
+			exception.printStackTrace();
+		}
+	}
+
+	/**
+	 * Does what io.cucumber.core.cli.Main.run does, with a feature supplier that
+	 * expands @DataSource outlines the way the TestNG runner does. Without it the
+	 * outline would run once with its placeholder Examples row.
+	 */
+	private static byte runCucumber(String[] strArguments, ClassLoader classLoader) {
+		RuntimeOptions propertiesFileOptions = new CucumberPropertiesParser()
+				.parse(CucumberProperties.fromPropertiesFile()).build();
+		RuntimeOptions environmentOptions = new CucumberPropertiesParser()
+				.parse(CucumberProperties.fromEnvironment()).build(propertiesFileOptions);
+		RuntimeOptions systemOptions = new CucumberPropertiesParser()
+				.parse(CucumberProperties.fromSystemProperties()).build(environmentOptions);
+		CommandlineOptionsParser commandlineOptionsParser = new CommandlineOptionsParser(System.out);
+		RuntimeOptions runtimeOptions = commandlineOptionsParser.parse(strArguments).addDefaultGlueIfAbsent()
+				.addDefaultFeaturePathIfAbsent().addDefaultFormatterIfAbsent().addDefaultSummaryPrinterIfAbsent()
+				.enablePublishPlugin().build(systemOptions);
+		Optional<Byte> optionalExitStatus = commandlineOptionsParser.exitStatus();
+
+		if (optionalExitStatus.isPresent())
+			return optionalExitStatus.get();
+
+		FeatureSupplier featureSupplier = new FeaturePathFeatureSupplier(() -> classLoader, runtimeOptions,
+				new FeatureParser(UUID::randomUUID));
+		Runtime runtime = Runtime.builder().withRuntimeOptions(runtimeOptions).withClassLoader(() -> classLoader)
+				.withFeatureSupplier(() -> featureSupplier.get().stream().map(ScenarioDataSource::expandFeature)
+						.collect(Collectors.toList()))
+				.build();
+
+		runtime.run();
+
+		return runtime.exitStatus();
+	}
+
+	/**
+	 * Runs one request with the Cucumber runtime on the runner thread.
+	 *
+	 * @param jsonRequest    - features (paths with optional :line) and tags.
+	 * @param lngRequestTime - when the request arrived.
+	 * @param strTrigger     - what asked for the run, for the log.
+	 * @return Returns the exit status, scenario counts and timings.
+	 */
+	private static JsonObject run(JsonObject jsonRequest, long lngRequestTime, String strTrigger) {
+		List<String> listArguments = new ArrayList<>(List.of("--glue", "stepDefinitions", "--plugin",
+				TestDaemon.class.getName(), "--plugin", ScenarioTrace.class.getName(), "--plugin", "summary",
+				"--monochrome"));
+		JsonObject jsonReply = new JsonObject();
+		byte bytExitStatus;
+
+		if (jsonRequest.has("tags") && !jsonRequest.get("tags").getAsString().isBlank())
+			listArguments.addAll(List.of("--tags", jsonRequest.get("tags").getAsString()));
+
+		if (jsonRequest.has("features") && jsonRequest.getAsJsonArray("features").size() > 0) {
+			for (JsonElement jsonElement : jsonRequest.getAsJsonArray("features"))
+				listArguments.add(jsonElement.getAsString());
+		} else {
+			listArguments.add(fileFeatures.getPath());
+		}
+
+		lngRunStartedMillis = 0;
+		lngFirstStepMillis = 0;
+		mapStatusCounts.clear();
+
+		System.out.println("[Test Daemon] Running (" + strTrigger + "): " + String.join(" ", listArguments));
+
+		try (GlueClassLoader glueClassLoader = new GlueClassLoader(fileTestClasses.toURI().toURL(),
+				TestDaemon.class.getClassLoader())) {
+			bytExitStatus = runCucumber(listArguments.toArray(new String[0]), glueClassLoader);
+		} catch (Exception exception) {
+			exception.printStackTrace();
+			bytExitStatus = 2;
+		}
+
+		long lngDoneMillis = System.currentTimeMillis();
+
+		jsonReply.addProperty("exitStatus", bytExitStatus);
+		jsonReply.add("scenarios", new GsonBuilder().create().toJsonTree(new TreeMap<>(mapStatusCounts)));
+		jsonReply.addProperty("requestToRunStartMillis",
+				lngRunStartedMillis > 0 ? lngRunStartedMillis - lngRequestTime : -1);
+		jsonReply.addProperty("requestToFirstStepMillis",
+				lngFirstStepMillis > 0 ? lngFirstStepMillis - lngRequestTime : -1);
+		jsonReply.addProperty("durationMillis", lngDoneMillis - lngRequestTime);
+		jsonReply.addProperty("warmBrowsersReused", atomicWarmReused.get());
+
+		System.out.println("[Test Daemon] " + jsonReply);
+
+		return jsonReply;
+	}
+
+	// ==================================================|Watch|==================================================
+	/**
+	 * Watches the feature files and the compiled glue. A saved feature file is run
+	 * again; recompiled step definitions or page objects run the last request
+	 * again. Changes are collected for half a second so one save or build triggers
+	 * one run.
+	 */
+	private static void startWatcher() throws IOException {
+		WatchService watchService = FileSystems.getDefault().newWatchService();
+		List<Path> listDirectories = new ArrayList<>();
+
+		if (fileFeatures.isDirectory()) {
+			try (Stream<Path> streamPaths = Files.walk(fileFeatures.toPath())) {
+				streamPaths.filter(Files::isDirectory).forEach(listDirectories::add);
+			}
+		}
+
+		for (String strPackage : STR_GLUE_PACKAGES) {
+			File fileDirectory = new File(fileTestClasses, strPackage);
+
+			if (fileDirectory.isDirectory())
+				listDirectories.add(fileDirectory.toPath());
+		}
+
+		for (Path pathDirectory : listDirectories)
+			pathDirectory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+					StandardWatchEventKinds.ENTRY_MODIFY);
+
+		Thread thread = new Thread(() -> {
+			while (true) {
+				try {
+					TreeSet<String> setFeatures = new TreeSet<>();
+					boolean blnGlueChanged = false;
+					WatchKey watchKey = watchService.take();
+
+					do {
+						for (WatchEvent<?> watchEvent : watchKey.pollEvents()) {
+							Path pathChanged = ((Path) watchKey.watchable()).resolve((Path) watchEvent.context());
+
+							if (pathChanged.toString().endsWith(".feature"))
+								setFeatures.add(Paths.get("").toAbsolutePath().relativize(pathChanged.toAbsolutePath())
+										.toString());
+							else if (pathChanged.toString().endsWith(".class"))
+								blnGlueChanged = true;
+						}
+
+						watchKey.reset();
+					} while ((watchKey = watchService.poll(500, TimeUnit.MILLISECONDS)) != null);
+
+					JsonObject jsonRequest = null;
+
+					if (blnGlueChanged && jsonLastRequest != null) {
+						jsonRequest = jsonLastRequest;
+					} else if (!setFeatures.isEmpty()) {
+						JsonArray jsonFeatures = new JsonArray();
+
+						setFeatures.forEach(jsonFeatures::add);
+						jsonRequest = new JsonObject();
+						jsonRequest.add("features", jsonFeatures);
+					}
+
+					if (jsonRequest != null) {
+						JsonObject jsonWatchRequest = jsonRequest;
+						String strTrigger = blnGlueChanged ? "glue changed" : "feature changed";
+						long lngChangeMillis = System.currentTimeMillis();
+
+						executorServiceRunner.submit(() -> run(jsonWatchRequest, lngChangeMillis, strTrigger));
+					}
+				} catch (InterruptedException interruptedException) {
+					return;
+				} catch (Exception exception) {
+					exception.printStackTrace();
+				}
+			}
+		}, "test-daemon-watcher");
+
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	// ==================================================|Client|==================================================
+	/**
+	 * Sends one run request to the daemon and prints the reply.
+	 *
+	 * @param args - "run", then feature paths and an optional --tags expression.
+	 * @return Returns the exit status of the run.
+	 */
+	private static int runClient(String[] args) throws IOException {
+		JsonObject jsonRequest = new JsonObject();
+		JsonArray jsonFeatures = new JsonArray();
+
+		for (int intArgument = 1; intArgument < args.length; intArgument++) {
+			if (args[intArgument].equals("--tags") && intArgument + 1 < args.length)
+				jsonRequest.addProperty("tags", args[++intArgument]);
+			else
+				jsonFeatures.add(args[intArgument]);
+		}
+
+		jsonRequest.add("features", jsonFeatures);
+
+		try (Socket socket = new Socket(InetAddress.getLoopbackAddress(),
+				Integer.parseInt(Base.configurationVariables("testDaemonPort")))) {
+			OutputStream outputStream = socket.getOutputStream();
+
+			outputStream.write((jsonRequest.toString() + "\n").getBytes(StandardCharsets.UTF_8));
+			outputStream.flush();
+
+			String strReply = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))
+					.readLine();
+
+			if (strReply == null)
+				return 2;
+
+			JsonObject jsonReply = JsonParser.parseString(strReply).getAsJsonObject();
+
+			System.out.println(new GsonBuilder().setPrettyPrinting().create().toJson(jsonReply));
+
+			return jsonReply.get("exitStatus").getAsInt();
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,298 @@
+package utilities;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.imageio.ImageIO;
+
+import org.apache.commons.io.FileUtils;
+
+import io.cucumber.java.Scenario;
+
+public class VisualComparison {
+	// ==================================================|Settings|==================================================
+	private static final int INT_TILE_SIZE = 256;
+	private static final int INT_DIFF_COLOR = 0xFFFF0000;
+
+	private static final ExecutorService executorService = Executors.newFixedThreadPool(
+			Runtime.getRuntime().availableProcessors(), runnable -> {
+				Thread thread = new Thread(runnable, "visual-diff");
+				thread.setDaemon(true);
+
+				return thread;
+			});
+
+	private static final ThreadLocal<int[][]> threadLocalTileBuffers = ThreadLocal
+			.withInitial(() -> new int[3][INT_TILE_SIZE * INT_TILE_SIZE]);
+
+	private final String strBaselineDirectory;
+	private final String strDiffDirectory;
+	private final int intPixelTolerance;
+	private final double dblMismatchTolerance;
+	private final int intHashThreshold;
+
+	public VisualComparison() {
+		this.strBaselineDirectory = Base.configurationVariables("visualBaselineDirectory");
+		this.strDiffDirectory = Base.configurationVariables("visualDiffDirectory");
+		this.intPixelTolerance = Integer.parseInt(Base.configurationVariables("visualPixelTolerance"));
+		this.dblMismatchTolerance = Double.parseDouble(Base.configurationVariables("visualMismatchTolerance"));
+		this.intHashThreshold = Integer.parseInt(Base.configurationVariables("visualHashThreshold"));
+	}
+
+	// ==================================================|Result|==================================================
+	public static class Result {
+		public boolean blnMatched;
+		public boolean blnBaselineCreated;
+		public boolean blnHashShortCircuit;
+		public int intHashDistance;
+		public long lngMismatchedPixels;
+		public long lngComparedPixels;
+		public double dblMismatchPercentage;
+		public long lngElapsedMillis;
+		public long lngAllocatedBytes;
+		public String strDiffFilePath;
+
+		@Override
+		public String toString() {
+			return "matched=" + blnMatched + ", baselineCreated=" + blnBaselineCreated + ", hashShortCircuit="
+					+ blnHashShortCircuit + ", hashDistance=" + intHashDistance + ", mismatchedPixels="
+					+ lngMismatchedPixels + "/" + lngComparedPixels + " ("
+					+ String.format("%.4f", dblMismatchPercentage) + "%), elapsed=" + lngElapsedMillis
+					+ " ms, allocated=" + (lngAllocatedBytes / 1024) + " KB"
+					+ (strDiffFilePath != null ? ", diff=" + strDiffFilePath : "");
+		}
+	}
+
+	// ==================================================|Compare|==================================================
+	/**
+	 * Compares the image against the baseline stored on disk under the given name.
+	 * If there is no baseline yet, the image is saved as the new baseline and the
+	 * comparison passes. A diff image is attached to the current scenario when the
+	 * images do not match.
+	 *
+	 * @param actualImage    - image to compare.
+	 * @param strName        - baseline name, saved as [name].png.
+	 * @param ignoreRegions  - regions excluded from the pixel diff, may be empty.
+	 * @return Returns the comparison result.
+	 */
+	public Result compareToBaseline(BufferedImage actualImage, String strName, List<Rectangle> ignoreRegions)
+			throws Exception {
+		long lngStartNanos = System.nanoTime();
+		long lngStartAllocatedBytes = getCurrentThreadAllocatedBytes();
+		AtomicLong atomicWorkerAllocatedBytes = new AtomicLong();
+		Result result = new Result();
+		File fileBaseline = new File(strBaselineDirectory, strName + ".png");
+
+		if (!fileBaseline.exists()) {
+			fileBaseline.getParentFile().mkdirs();
+			ImageIO.write(actualImage, "png", fileBaseline);
+
+			result.blnMatched = true;
+			result.blnBaselineCreated = true;
+		} else {
+			BufferedImage baselineImage = ImageIO.read(fileBaseline);
+
+			if (baselineImage.getWidth() != actualImage.getWidth()
+					|| baselineImage.getHeight() != actualImage.getHeight()) {
+				result.blnMatched = false;
+				result.lngComparedPixels = (long) actualImage.getWidth() * actualImage.getHeight();
+				result.lngMismatchedPixels = result.lngComparedPixels;
+				result.dblMismatchPercentage = 100;
+				result.strDiffFilePath = writeDiffImage(actualImage, null, strName);
+			} else {
+				result.intHashDistance = Long.bitCount(getDifferenceHash(baselineImage) ^ getDifferenceHash(actualImage));
+
+				// The hash only samples a 9x8 grid, so a match skips the pixel diff only when
+				// visualHashThreshold is enabled (0 or more).
+				if (intHashThreshold >= 0 && result.intHashDistance <= intHashThreshold && ignoreRegions.isEmpty()) {
+					result.blnMatched = true;
+					result.blnHashShortCircuit = true;
+				} else {
+					BufferedImage diffImage = new BufferedImage(actualImage.getWidth(), actualImage.getHeight(),
+							BufferedImage.TYPE_INT_ARGB);
+
+					diffPixels(baselineImage, actualImage, diffImage, ignoreRegions, result,
+							atomicWorkerAllocatedBytes);
+
+					result.dblMismatchPercentage = result.lngComparedPixels == 0 ? 0
+							: (result.lngMismatchedPixels * 100.0) / result.lngComparedPixels;
+					result.blnMatched = result.dblMismatchPercentage <= dblMismatchTolerance;
+
+					if (!result.blnMatched)
+						result.strDiffFilePath = writeDiffImage(actualImage, diffImage, strName);
+				}
+			}
+		}
+
+		result.lngElapsedMillis = (System.nanoTime() - lngStartNanos) / 1_000_000;
+		result.lngAllocatedBytes = Math.max(0, getCurrentThreadAllocatedBytes() - lngStartAllocatedBytes)
+				+ atomicWorkerAllocatedBytes.get();
+
+		logResult(strName, result);
+
+		return result;
+	}
+
+	// ==================================================|Helpers|==================================================
+	/**
+	 * 64-bit difference hash of a 9x8 grayscale thumbnail. Images that look the
+	 * same have a small Hamming distance between their hashes.
+	 */
+	private long getDifferenceHash(BufferedImage image) {
+		int intWidth = image.getWidth();
+		int intHeight = image.getHeight();
+		long lngHash = 0;
+
+		for (int y = 0; y < 8; y++) {
+			for (int x = 0; x < 8; x++) {
+				int intLeft = getLuminance(image.getRGB(x * intWidth / 9, y * intHeight / 8));
+				int intRight = getLuminance(image.getRGB((x + 1) * intWidth / 9, y * intHeight / 8));
+
+				lngHash = (lngHash << 1) | (intLeft > intRight ? 1 : 0);
+			}
+		}
+
+		return lngHash;
+	}
+
+	private int getLuminance(int intRGB) {
+		return (((intRGB >> 16) & 0xFF) * 299 + ((intRGB >> 8) & 0xFF) * 587 + (intRGB & 0xFF) * 114) / 1000;
+	}
+
+	private void diffPixels(BufferedImage baselineImage, BufferedImage actualImage, BufferedImage diffImage,
+			List<Rectangle> ignoreRegions, Result result, AtomicLong atomicWorkerAllocatedBytes) throws Exception {
+		AtomicLong atomicMismatched = new AtomicLong();
+		AtomicLong atomicCompared = new AtomicLong();
+		List<Future<?>> futures = new ArrayList<>();
+
+		for (int intTileY = 0; intTileY < actualImage.getHeight(); intTileY += INT_TILE_SIZE) {
+			for (int intTileX = 0; intTileX < actualImage.getWidth(); intTileX += INT_TILE_SIZE) {
+				Rectangle tile = new Rectangle(intTileX, intTileY,
+						Math.min(INT_TILE_SIZE, actualImage.getWidth() - intTileX),
+						Math.min(INT_TILE_SIZE, actualImage.getHeight() - intTileY));
+
+				futures.add(executorService.submit(() -> {
+					long lngStartAllocatedBytes = getCurrentThreadAllocatedBytes();
+
+					diffTile(baselineImage, actualImage, diffImage, tile, ignoreRegions, atomicMismatched,
+							atomicCompared);
+
+					atomicWorkerAllocatedBytes
+							.addAndGet(Math.max(0, getCurrentThreadAllocatedBytes() - lngStartAllocatedBytes));
+				}));
+			}
+		}
+
+		for (Future<?> future : futures)
+			future.get();
+
+		result.lngMismatchedPixels = atomicMismatched.get();
+		result.lngComparedPixels = atomicCompared.get();
+	}
+
+	private void diffTile(BufferedImage baselineImage, BufferedImage actualImage, BufferedImage diffImage,
+			Rectangle tile, List<Rectangle> ignoreRegions, AtomicLong atomicMismatched, AtomicLong atomicCompared) {
+		int intLength = tile.width * tile.height;
+		int[][] intTileBuffers = threadLocalTileBuffers.get();
+		int[] intBaselinePixels = baselineImage.getRGB(tile.x, tile.y, tile.width, tile.height, intTileBuffers[0], 0,
+				tile.width);
+		int[] intActualPixels = actualImage.getRGB(tile.x, tile.y, tile.width, tile.height, intTileBuffers[1], 0,
+				tile.width);
+		int[] intDiffPixels = intTileBuffers[2];
+		List<Rectangle> tileIgnoreRegions = new ArrayList<>();
+		long lngMismatched = 0;
+		long lngCompared = 0;
+
+		for (Rectangle ignoreRegion : ignoreRegions) {
+			if (ignoreRegion.intersects(tile))
+				tileIgnoreRegions.add(ignoreRegion);
+		}
+
+		for (int i = 0; i < intLength; i++) {
+			int intActual = intActualPixels[i];
+			int intFaded = 0x40000000 | (intActual & 0x00FFFFFF);
+
+			if (!tileIgnoreRegions.isEmpty()
+					&& isIgnored(tile.x + (i % tile.width), tile.y + (i / tile.width), tileIgnoreRegions)) {
+				intDiffPixels[i] = intFaded;
+				continue;
+			}
+
+			lngCompared++;
+
+			if (isPixelDifferent(intBaselinePixels[i], intActual)) {
+				intDiffPixels[i] = INT_DIFF_COLOR;
+				lngMismatched++;
+			} else {
+				intDiffPixels[i] = intFaded;
+			}
+		}
+
+		diffImage.setRGB(tile.x, tile.y, tile.width, tile.height, intDiffPixels, 0, tile.width);
+		atomicMismatched.addAndGet(lngMismatched);
+		atomicCompared.addAndGet(lngCompared);
+	}
+
+	private boolean isIgnored(int intX, int intY, List<Rectangle> ignoreRegions) {
+		for (Rectangle ignoreRegion : ignoreRegions) {
+			if (ignoreRegion.contains(intX, intY))
+				return true;
+		}
+
+		return false;
+	}
+
+	private boolean isPixelDifferent(int intBaseline, int intActual) {
+		if (intBaseline == intActual)
+			return false;
+
+		return Math.abs(((intBaseline >> 16) & 0xFF) - ((intActual >> 16) & 0xFF)) > intPixelTolerance
+				|| Math.abs(((intBaseline >> 8) & 0xFF) - ((intActual >> 8) & 0xFF)) > intPixelTolerance
+				|| Math.abs((intBaseline & 0xFF) - (intActual & 0xFF)) > intPixelTolerance;
+	}
+
+	private String writeDiffImage(BufferedImage actualImage, BufferedImage diffImage, String strName)
+			throws Exception {
+		BufferedImage outputImage = diffImage != null ? diffImage : actualImage;
+		File fileDiff = new File(strDiffDirectory, strName + "_diff_" + System.currentTimeMillis() + ".png");
+		ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+
+		fileDiff.getParentFile().mkdirs();
+		ImageIO.write(outputImage, "png", byteArrayOutputStream);
+		FileUtils.writeByteArrayToFile(fileDiff, byteArrayOutputStream.toByteArray());
+
+		Scenario scenario = Base.getScenario();
+
+		if (scenario != null)
+			scenario.attach(byteArrayOutputStream.toByteArray(), "image/png", "VisualDiff_" + strName);
+
+		return fileDiff.getPath();
+	}
+
+	private void logResult(String strName, Result result) {
+		Scenario scenario = Base.getScenario();
+
+		if (scenario != null)
+			scenario.log("Visual comparison [" + strName + "]: " + result);
+	}
+
+	private static long getCurrentThreadAllocatedBytes() {
+		ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+		if (threadMXBean instanceof com.sun.management.ThreadMXBean)
+			return ((com.sun.management.ThreadMXBean) threadMXBean)
+					.getThreadAllocatedBytes(Thread.currentThread().getId());
+
+		return 0;
+	}
+}
\ No newline at end of file
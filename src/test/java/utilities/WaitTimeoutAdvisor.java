@@ -0,0 +1,269 @@
+package utilities;
+
+import java.io.File;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.remote.RemoteWebElement;
+import org.openqa.selenium.support.pagefactory.internal.LocatingElementHandler;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+/**
+ * Learns a timeout per wait (page + locator) from the durations observed in
+ * earlier runs: p99 times a safety factor, kept between a floor and a cap. Waits
+ * without enough history use the global waitTimeout. Timed out waits are
+ * counted but kept out of the durations; a timeout under a learned value widens
+ * that key by one floor step, never past the global waitTimeout. History is
+ * loaded once and saved when the JVM exits.
+ */
+public class WaitTimeoutAdvisor {
+	private static final int INT_HISTORY_SIZE = 200;
+
+	static final class WaitHistory {
+		int[] intDurations = new int[INT_HISTORY_SIZE];
+		int intCount;
+		int intNext;
+		int intTimeouts;
+		long lngWidenMillis;
+
+		synchronized void add(long lngDurationMillis) {
+			intDurations[intNext] = (int) Math.min(Integer.MAX_VALUE, lngDurationMillis);
+			intNext = (intNext + 1) % INT_HISTORY_SIZE;
+			intCount = Math.min(INT_HISTORY_SIZE, intCount + 1);
+		}
+
+		synchronized long getPercentile(double dblPercentile) {
+			if (intCount == 0)
+				return 0;
+
+			int[] intSorted = Arrays.copyOf(intDurations, intCount);
+
+			Arrays.sort(intSorted);
+
+			return intSorted[(int) Math.min(intCount - 1, Math.ceil(dblPercentile * intCount) - 1)];
+		}
+	}
+
+	// ==================================================|Settings|==================================================
+	private static final boolean blnLearning = Base.configurationVariables("waitLearning").equals("true");
+	private static final long lngDefaultMillis = Long.parseLong(Base.configurationVariables("waitTimeout")) * 1000;
+	private static final int intMinSamples = Integer.parseInt(Base.configurationVariables("waitLearningMinSamples"));
+	private static final double dblSafetyFactor = Double
+			.parseDouble(Base.configurationVariables("waitLearningSafetyFactor"));
+	private static final long lngFloorMillis = Long.parseLong(Base.configurationVariables("waitLearningFloorSeconds"))
+			* 1000;
+	private static final long lngCapMillis = Long.parseLong(Base.configurationVariables("waitLearningCapSeconds"))
+			* 1000;
+	private static final File fileHistory = new File(Base.configurationVariables("waitHistoryFile"));
+
+	// ==================================================|State|==================================================
+	private static final Map<String, WaitHistory> mapHistory = load();
+	private static final Map<String, Long> mapAppliedTimeouts = new ConcurrentHashMap<>();
+	private static final ThreadLocal<String> threadLocalPage = ThreadLocal.withInitial(() -> "");
+
+	static {
+		Runtime.getRuntime().addShutdownHook(new Thread(WaitTimeoutAdvisor::save, "wait-history-save"));
+		RunSummary.register("Learned Wait Timeouts", WaitTimeoutAdvisor::getSummary);
+	}
+
+	// ==================================================|Timeouts|==================================================
+	/**
+	 * Sets the page part of the wait keys for the current thread.
+	 *
+	 * @param strURL - URL navigated to.
+	 */
+	public static void setCurrentPage(String strURL) {
+		int intQuery = strURL.indexOf('?');
+
+		threadLocalPage.set(intQuery >= 0 ? strURL.substring(0, intQuery) : strURL);
+	}
+
+	public static String getWaitKey(String strKeyword, Object locator) {
+		return threadLocalPage.get() + " | " + strKeyword + " | " + getLocatorKey(locator);
+	}
+
+	/**
+	 * Gets a key for a locator that is the same in every session. toString() is
+	 * not called on web elements: a PageFactory proxy would look the element up,
+	 * and a found element names the session it belongs to.
+	 *
+	 * @param locator - By, PageFactory web element, found web element or text.
+	 * @return Returns the By of the element, or the text.
+	 */
+	static String getLocatorKey(Object locator) {
+		if (!(locator instanceof WebElement))
+			return String.valueOf(locator);
+
+		try {
+			if (Proxy.isProxyClass(locator.getClass())) {
+				InvocationHandler invocationHandler = Proxy.getInvocationHandler(locator);
+
+				if (invocationHandler instanceof LocatingElementHandler)
+					return String.valueOf(getField(getField(invocationHandler, "locator"), "by"));
+			} else if (locator instanceof RemoteWebElement) {
+				String strFoundBy = String.valueOf(getField(locator, "foundBy"));
+				int intSeparator = strFoundBy.lastIndexOf(" -> ");
+
+				// "[ChromeDriver: chrome on LINUX (session)] -> xpath: //a"; the session part differs per run.
+				if (intSeparator >= 0)
+					return strFoundBy.substring(intSeparator + 4);
+			}
+		} catch (Exception exception) {
+			// Custom element locators without a By field share the fallback key.
+		}
+
+		return locator.getClass().getSimpleName();
+	}
+
+	private static Object getField(Object objTarget, String strField) throws Exception {
+		for (Class<?> classTarget = objTarget.getClass(); classTarget != null; classTarget = classTarget
+				.getSuperclass()) {
+			try {
+				Field field = classTarget.getDeclaredField(strField);
+
+				field.setAccessible(true);
+
+				return field.get(objTarget);
+			} catch (NoSuchFieldException noSuchFieldException) {
+				// Declared on a superclass.
+			}
+		}
+
+		throw new NoSuchFieldException(strField);
+	}
+
+	/**
+	 * Gets the timeout for the wait key. Uses the learned value when learning is
+	 * on and the key has enough history, otherwise the global waitTimeout.
+	 *
+	 * @param strWaitKey - key from getWaitKey.
+	 * @return Returns the timeout in milliseconds.
+	 */
+	public static long getTimeoutMillis(String strWaitKey) {
+		WaitHistory waitHistory = mapHistory.get(strWaitKey);
+
+		if (!blnLearning || waitHistory == null || waitHistory.intCount < Math.max(1, intMinSamples))
+			return lngDefaultMillis;
+
+		long lngLearnedMillis = Math.max(lngFloorMillis,
+				Math.min(lngCapMillis, (long) (waitHistory.getPercentile(0.99) * dblSafetyFactor)));
+		long lngTimeoutMillis = lngLearnedMillis;
+
+		// Widening after timeouts only moves a learned timeout back towards the default.
+		if (waitHistory.lngWidenMillis > 0)
+			lngTimeoutMillis = Math.min(lngLearnedMillis + waitHistory.lngWidenMillis,
+					Math.max(lngLearnedMillis, lngDefaultMillis));
+
+		mapAppliedTimeouts.put(strWaitKey, lngTimeoutMillis);
+
+		return lngTimeoutMillis;
+	}
+
+	/**
+	 * Records how long a successful wait took.
+	 *
+	 * @param strWaitKey        - key from getWaitKey.
+	 * @param lngDurationMillis - observed duration.
+	 */
+	public static void record(String strWaitKey, long lngDurationMillis) {
+		mapHistory.computeIfAbsent(strWaitKey, strKey -> new WaitHistory()).add(lngDurationMillis);
+	}
+
+	/**
+	 * Counts a timed out wait. Its duration is only the timeout, so it is not added
+	 * to the samples. If the timeout was a learned one below the default, the key
+	 * is widened by one floor step for later waits.
+	 *
+	 * @param strWaitKey       - key from getWaitKey.
+	 * @param lngTimeoutMillis - timeout the wait used.
+	 */
+	public static void recordTimeout(String strWaitKey, long lngTimeoutMillis) {
+		WaitHistory waitHistory = mapHistory.computeIfAbsent(strWaitKey, strKey -> new WaitHistory());
+		Long lngAppliedMillis = mapAppliedTimeouts.get(strWaitKey);
+
+		synchronized (waitHistory) {
+			waitHistory.intTimeouts++;
+
+			if (lngAppliedMillis != null && lngAppliedMillis == lngTimeoutMillis
+					&& lngTimeoutMillis < lngDefaultMillis)
+				waitHistory.lngWidenMillis += lngFloorMillis;
+		}
+	}
+
+	// ==================================================|Report|==================================================
+	public static String getSummary() {
+		if (mapAppliedTimeouts.isEmpty())
+			return null;
+
+		int intTightened = 0;
+		int intWidened = 0;
+		StringBuilder stringBuilder = new StringBuilder("Wait key,Learned timeout (ms),Default timeout (ms),Change\n");
+
+		for (Map.Entry<String, Long> entry : new TreeMap<>(mapAppliedTimeouts).entrySet()) {
+			String strChange = entry.getValue() < lngDefaultMillis ? "tightened"
+					: entry.getValue() > lngDefaultMillis ? "widened" : "unchanged";
+
+			if (entry.getValue() < lngDefaultMillis)
+				intTightened++;
+			else if (entry.getValue() > lngDefaultMillis)
+				intWidened++;
+
+			stringBuilder.append('"').append(entry.getKey().replace("\"", "'")).append("\",").append(entry.getValue())
+					.append(',').append(lngDefaultMillis).append(',').append(strChange).append('\n');
+		}
+
+		File fileReport = new File(fileHistory.getParentFile(), "wait-timeouts.csv");
+
+		try {
+			if (fileReport.getParentFile() != null)
+				fileReport.getParentFile().mkdirs();
+
+			Files.write(fileReport.toPath(), stringBuilder.toString().getBytes(StandardCharsets.UTF_8));
+		} catch (Exception exception) {
+			exception.printStackTrace();
+		}
+
+		return intTightened + " tightened, " + intWidened + " widened (" + fileReport.getPath() + ")";
+	}
+
+	// ==================================================|Persistence|==================================================
+	private static Map<String, WaitHistory> load() {
+		if (fileHistory.exists()) {
+			try (Reader reader = Files.newBufferedReader(fileHistory.toPath(), StandardCharsets.UTF_8)) {
+				Map<String, WaitHistory> mapLoaded = new Gson().fromJson(reader,
+						new TypeToken<ConcurrentHashMap<String, WaitHistory>>() {
+						}.getType());
+
+				if (mapLoaded != null)
+					return mapLoaded;
+			} catch (Exception exception) {
+				exception.printStackTrace();
+			}
+		}
+
+		return new ConcurrentHashMap<>();
+	}
+
+	private static void save() {
+		if (fileHistory.getParentFile() != null)
+			fileHistory.getParentFile().mkdirs();
+
+		try (Writer writer = Files.newBufferedWriter(fileHistory.toPath(), StandardCharsets.UTF_8)) {
+			new Gson().toJson(mapHistory, writer);
+		} catch (Exception exception) {
+			exception.printStackTrace();
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,304 @@
+package utilities;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.remote.CommandExecutor;
+import org.openqa.selenium.remote.HttpCommandExecutor;
+import org.openqa.selenium.remote.RemoteWebDriver;
+
+/**
+ * Tracks every web driver session together with its local driver process
+ * (chromedriver, geckodriver) and the browser processes below it. Sessions that
+ * are still open when their scenario ends, whose thread died, or that outlive
+ * webDriverMaxSessionMinutes while their thread is not running a scenario are
+ * leaked: their process tree is killed, or a remote session is quit. A long
+ * scenario keeps its browser however old the session is. A watchdog checks every webDriverWatchdogSeconds and a
+ * shutdown hook reaps whatever is left, including driver processes that were
+ * never tracked.
+ */
+public class WebDriverLifecycle {
+	static final class Session {
+		final WebDriver webDriver;
+		final ProcessHandle processHandle;
+		final Thread thread;
+		final long lngCreatedMillis = System.currentTimeMillis();
+		volatile boolean blnParked;
+
+		Session(WebDriver webDriver, ProcessHandle processHandle, Thread thread) {
+			this.webDriver = webDriver;
+			this.processHandle = processHandle;
+			this.thread = thread;
+		}
+	}
+
+	// ==================================================|Settings|==================================================
+	private static final long lngWatchdogSeconds = Long.parseLong(Base.configurationVariables("webDriverWatchdogSeconds"));
+	private static final long lngMaxSessionMillis = Long
+			.parseLong(Base.configurationVariables("webDriverMaxSessionMinutes")) * 60000;
+
+	// ==================================================|State|==================================================
+	private static final Map<WebDriver, Session> mapSessions = new ConcurrentHashMap<>();
+	private static final Set<Thread> setScenarioThreads = ConcurrentHashMap.newKeySet();
+	private static final AtomicLong atomicCreated = new AtomicLong();
+	private static final AtomicLong atomicQuit = new AtomicLong();
+	private static final AtomicLong atomicLeaked = new AtomicLong();
+	private static final AtomicLong atomicReapedProcesses = new AtomicLong();
+	private static final ScheduledExecutorService scheduledExecutorService = Executors
+			.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "webdriver-watchdog");
+
+				thread.setDaemon(true);
+
+				return thread;
+			});
+
+	static {
+		scheduledExecutorService.scheduleWithFixedDelay(WebDriverLifecycle::watch, lngWatchdogSeconds,
+				lngWatchdogSeconds, TimeUnit.SECONDS);
+		Runtime.getRuntime().addShutdownHook(new Thread(WebDriverLifecycle::reapAll, "webdriver-reaper"));
+		RunSummary.register("WebDriver Lifecycle", WebDriverLifecycle::getSummary);
+	}
+
+	// ==================================================|Sessions|==================================================
+	/**
+	 * Starts tracking a new session for the current thread.
+	 *
+	 * @param webDriver - web driver that was just created (not a lazy handle).
+	 */
+	public static void register(WebDriver webDriver) {
+		attach(webDriver);
+		atomicCreated.incrementAndGet();
+	}
+
+	/**
+	 * Tracks an existing session for the current thread, for example a warm
+	 * browser handed to a new scenario.
+	 *
+	 * @param webDriver - web driver to track (not a lazy handle).
+	 */
+	public static void attach(WebDriver webDriver) {
+		mapSessions.put(webDriver, new Session(webDriver, findDriverProcess(webDriver), Thread.currentThread()));
+	}
+
+	/**
+	 * Parks a session that is kept open for a later scenario: it is no longer
+	 * reaped with its thread or for its age, but its driver process still counts
+	 * as owned. The shutdown hook reaps it like any other session.
+	 *
+	 * @param webDriver - web driver kept open (not a lazy handle).
+	 */
+	public static void detach(WebDriver webDriver) {
+		Session session = mapSessions.get(webDriver);
+
+		if (session != null)
+			session.blnParked = true;
+	}
+
+	/**
+	 * Stops tracking a session that was quit. Kills the driver process tree if it
+	 * is still running after quit.
+	 *
+	 * @param webDriver - web driver that was quit (not a lazy handle).
+	 */
+	public static void unregister(WebDriver webDriver) {
+		Session session = mapSessions.remove(webDriver);
+
+		if (session == null)
+			return;
+
+		atomicQuit.incrementAndGet();
+
+		if (session.processHandle != null) {
+			try {
+				session.processHandle.onExit().get(5, TimeUnit.SECONDS);
+			} catch (Exception exception) {
+				destroyProcessTree(session.processHandle);
+			}
+		}
+	}
+
+	/**
+	 * Reaps every session still open on the current thread. Called when a scenario
+	 * ends and before the next one starts, so a skipped After hook does not leave
+	 * a browser behind.
+	 */
+	public static void reapThread() {
+		for (Session session : new ArrayList<>(mapSessions.values())) {
+			if (session.thread == Thread.currentThread() && !session.blnParked)
+				reap(session);
+		}
+	}
+
+	/**
+	 * Marks the current thread as running a scenario. Its sessions are not reaped
+	 * for their age until the scenario finishes.
+	 */
+	public static void scenarioStarted() {
+		setScenarioThreads.add(Thread.currentThread());
+	}
+
+	/**
+	 * Marks the current thread as no longer running a scenario.
+	 */
+	public static void scenarioFinished() {
+		setScenarioThreads.remove(Thread.currentThread());
+	}
+
+	/**
+	 * Gets the local driver process of the session opened by the thread.
+	 *
+	 * @param thread - thread that owns the session.
+	 * @return Returns the driver process, or null for no session or a remote one.
+	 */
+	public static ProcessHandle getDriverProcess(Thread thread) {
+		for (Session session : mapSessions.values()) {
+			if (session.thread == thread && !session.blnParked && session.processHandle != null)
+				return session.processHandle;
+		}
+
+		return null;
+	}
+
+	/**
+	 * Gets the local driver process of a session, parked or not.
+	 *
+	 * @param webDriver - tracked web driver (not a lazy handle).
+	 * @return Returns the driver process, or null for no session or a remote one.
+	 */
+	static ProcessHandle getDriverProcess(WebDriver webDriver) {
+		Session session = mapSessions.get(webDriver);
+
+		return session != null ? session.processHandle : null;
+	}
+
+	// ==================================================|Reaping|==================================================
+	private static void watch() {
+		try {
+			long lngNowMillis = System.currentTimeMillis();
+
+			for (Session session : new ArrayList<>(mapSessions.values())) {
+				if (!session.blnParked && (!session.thread.isAlive()
+						|| (!setScenarioThreads.contains(session.thread)
+								&& lngNowMillis - session.lngCreatedMillis > lngMaxSessionMillis)))
+					reap(session);
+			}
+
+			setScenarioThreads.removeIf(thread -> !thread.isAlive());
+			reapUntrackedDriverProcesses(Duration.ofSeconds(lngWatchdogSeconds));
+		} catch (Exception exception) {
+			exception.printStackTrace();
+		}
+	}
+
+	private static void reapAll() {
+		for (Session session : new ArrayList<>(mapSessions.values()))
+			reap(session);
+
+		reapUntrackedDriverProcesses(Duration.ZERO);
+	}
+
+	private static void reap(Session session) {
+		if (mapSessions.remove(session.webDriver) == null)
+			return;
+
+		atomicLeaked.incrementAndGet();
+
+		if (session.processHandle != null) {
+			destroyProcessTree(session.processHandle);
+		} else {
+			try {
+				session.webDriver.quit();
+			} catch (Exception exception) {
+				// The remote session may already be gone.
+			}
+		}
+
+		RemoteNodePool.release(session.webDriver);
+	}
+
+	/**
+	 * Kills chromedriver and geckodriver processes started by this JVM that no
+	 * session owns. Processes younger than the minimum age may still be starting
+	 * a session and are left alone.
+	 */
+	private static void reapUntrackedDriverProcesses(Duration durationMinimumAge) {
+		List<ProcessHandle> listTracked = new ArrayList<>();
+
+		for (Session session : mapSessions.values()) {
+			if (session.processHandle != null)
+				listTracked.add(session.processHandle);
+		}
+
+		Instant instantLatestStart = Instant.now().minus(durationMinimumAge);
+
+		ProcessHandle.current().children().filter(processHandle -> !listTracked.contains(processHandle))
+				.filter(processHandle -> processHandle.info().commandLine().map(
+						strCommandLine -> strCommandLine.contains("chromedriver") || strCommandLine.contains("geckodriver"))
+						.orElse(false))
+				.filter(processHandle -> processHandle.info().startInstant().map(instantLatestStart::isAfter)
+						.orElse(false))
+				.forEach(processHandle -> {
+					atomicLeaked.incrementAndGet();
+					destroyProcessTree(processHandle);
+				});
+	}
+
+	private static void destroyProcessTree(ProcessHandle processHandle) {
+		processHandle.descendants().forEach(descendantHandle -> {
+			if (descendantHandle.destroyForcibly())
+				atomicReapedProcesses.incrementAndGet();
+		});
+
+		if (processHandle.destroyForcibly())
+			atomicReapedProcesses.incrementAndGet();
+	}
+
+	/**
+	 * Finds the local driver process by the port its session talks to. Remote
+	 * sessions have no local process.
+	 */
+	private static ProcessHandle findDriverProcess(WebDriver webDriver) {
+		if (!(webDriver instanceof RemoteWebDriver))
+			return null;
+
+		CommandExecutor commandExecutor = ScenarioTrace.unwrap(((RemoteWebDriver) webDriver).getCommandExecutor());
+
+		if (!(commandExecutor instanceof HttpCommandExecutor))
+			return null;
+
+		String strPort = String.valueOf(((HttpCommandExecutor) commandExecutor).getAddressOfRemoteServer().getPort());
+		Optional<ProcessHandle> optionalProcessHandle = ProcessHandle.current().children()
+				.filter(processHandle -> processHandle.info().arguments().map(strArguments -> {
+					for (int intIndex = 0; intIndex < strArguments.length; intIndex++) {
+						if (strArguments[intIndex].equals("--port=" + strPort) || (strArguments[intIndex].equals("--port")
+								&& intIndex + 1 < strArguments.length && strArguments[intIndex + 1].equals(strPort)))
+							return true;
+					}
+
+					return false;
+				}).orElse(false)).findFirst();
+
+		return optionalProcessHandle.orElse(null);
+	}
+
+	// ==================================================|Report|==================================================
+	public static String getSummary() {
+		if (atomicCreated.get() == 0 && atomicLeaked.get() == 0)
+			return null;
+
+		return atomicCreated.get() + " sessions created, " + atomicQuit.get() + " quit cleanly, " + atomicLeaked.get()
+				+ " leaked, " + atomicReapedProcesses.get() + " processes reaped, " + mapSessions.size() + " still open";
+	}
+}
\ No newline at end of file
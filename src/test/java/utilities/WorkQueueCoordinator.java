@@ -0,0 +1,330 @@
+package utilities;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+/**
+ * Hands out scenarios to worker JVMs over a TCP socket, one JSON line per
+ * request. The first worker to register supplies the scenario keys. Workers
+ * pull one scenario at a time, send heartbeats and report results. A worker
+ * that misses heartbeats for workQueueWorkerTimeoutSeconds is dead, and its
+ * scenarios go back to the front of the queue (up to workQueueMaxAttempts runs
+ * per scenario). When every scenario has a result, the aggregated outcome is
+ * written to workQueueOutcomeFile. The exit code is 0 only if every scenario
+ * passed.
+ *
+ * Usage: java -cp [test classpath] utilities.WorkQueueCoordinator [port], then
+ * start the workers (mvn test, or java -cp [test classpath] org.testng.TestNG
+ * testng.xml) with workQueueCoordinator=host:port.
+ */
+public class WorkQueueCoordinator {
+	static final class Lease {
+		final String strWorker;
+		final String strRequestId;
+		final long lngStartMillis = System.currentTimeMillis();
+
+		Lease(String strWorker, String strRequestId) {
+			this.strWorker = strWorker;
+			this.strRequestId = strRequestId;
+		}
+	}
+
+	static final class Worker {
+		long lngLastSeenMillis = System.currentTimeMillis();
+		boolean blnToldDone;
+		boolean blnDead;
+		int intScenarios;
+		long lngBusyMillis;
+	}
+
+	private final long lngWorkerTimeoutMillis = Long
+			.parseLong(Base.configurationVariables("workQueueWorkerTimeoutSeconds")) * 1000;
+	private final int intMaxAttempts = Integer.parseInt(Base.configurationVariables("workQueueMaxAttempts"));
+	private final File fileOutcome = new File(Base.configurationVariables("workQueueOutcomeFile"));
+
+	// Guarded by this.
+	private final Deque<String> dequeQueue = new ArrayDeque<>();
+	private final Map<String, Lease> mapLeases = new HashMap<>();
+	private final Map<String, String> mapLeaseRequests = new HashMap<>();
+	private final Map<String, Integer> mapAttempts = new HashMap<>();
+	private final Map<String, JsonObject> mapResults = new LinkedHashMap<>();
+	private final Map<String, Worker> mapWorkers = new TreeMap<>();
+	private final List<String> listScenarios = new ArrayList<>();
+	private long lngStartMillis;
+	private long lngLastRequestMillis;
+	private long lngRequeued;
+
+	public static void main(String[] args) throws Exception {
+		int intPort = Integer.parseInt(args.length > 0 ? args[0] : Base.configurationVariables("workQueuePort"));
+
+		System.exit(new WorkQueueCoordinator().run(intPort));
+	}
+
+	// ==================================================|Serve|==================================================
+	/**
+	 * Serves workers until every scenario has a result and every live worker was
+	 * told the queue is done.
+	 *
+	 * @param intPort - port to listen on, on all interfaces.
+	 * @return Returns 0 if every scenario passed, 1 otherwise.
+	 */
+	public int run(int intPort) throws Exception {
+		ExecutorService executorService = Executors.newCachedThreadPool(runnable -> {
+			Thread thread = new Thread(runnable, "work-queue-connection");
+
+			thread.setDaemon(true);
+
+			return thread;
+		});
+
+		try (ServerSocket serverSocket = new ServerSocket(intPort)) {
+			serverSocket.setSoTimeout(1000);
+			System.out.println("[Work Queue] Coordinator listening on port " + serverSocket.getLocalPort());
+
+			while (!isFinished()) {
+				try {
+					Socket socket = serverSocket.accept();
+
+					executorService.execute(() -> serve(socket));
+				} catch (java.net.SocketTimeoutException socketTimeoutException) {
+					// Checks for dead workers once a second.
+				}
+
+				reapDeadWorkers();
+			}
+		} finally {
+			executorService.shutdownNow();
+		}
+
+		return writeOutcome();
+	}
+
+	private void serve(Socket socket) {
+		try (Socket socketClient = socket) {
+			socketClient.setSoTimeout(30000);
+
+			String strLine = new BufferedReader(
+					new InputStreamReader(socketClient.getInputStream(), StandardCharsets.UTF_8)).readLine();
+
+			if (strLine == null)
+				return;
+
+			JsonObject jsonReply = handle(JsonParser.parseString(strLine).getAsJsonObject());
+			OutputStream outputStream = socketClient.getOutputStream();
+
+			outputStream.write((jsonReply.toString() + "\n").getBytes(StandardCharsets.UTF_8));
+			outputStream.flush();
+		} catch (Exception exception) {
+			exception.printStackTrace();
+		}
+	}
+
+	// ==================================================|Queue|==================================================
+	synchronized JsonObject handle(JsonObject jsonRequest) {
+		String strType = jsonRequest.get("type").getAsString();
+		String strWorkerId = jsonRequest.get("worker").getAsString();
+		Worker worker = mapWorkers.computeIfAbsent(strWorkerId, strKey -> new Worker());
+		JsonObject jsonReply = new JsonObject();
+
+		worker.lngLastSeenMillis = System.currentTimeMillis();
+		worker.blnDead = false;
+		lngLastRequestMillis = worker.lngLastSeenMillis;
+
+		switch (strType) {
+		case "register":
+			if (listScenarios.isEmpty()) {
+				lngStartMillis = System.currentTimeMillis();
+
+				for (JsonElement jsonElement : jsonRequest.getAsJsonArray("scenarios")) {
+					listScenarios.add(jsonElement.getAsString());
+					dequeQueue.addLast(jsonElement.getAsString());
+				}
+
+				System.out.println("[Work Queue] " + listScenarios.size() + " scenarios queued by " + strWorkerId);
+			}
+
+			System.out.println("[Work Queue] Worker registered: " + strWorkerId);
+			break;
+		case "next":
+			String strRequestId = jsonRequest.has("requestId") ? jsonRequest.get("requestId").getAsString() : null;
+			String strLeasedKey = strRequestId != null ? mapLeaseRequests.get(strRequestId) : null;
+
+			// A retried request whose reply was lost gets the same scenario again, not a second lease.
+			if (strLeasedKey != null) {
+				jsonReply.addProperty("key", strLeasedKey);
+				break;
+			}
+
+			String strKey = dequeQueue.pollFirst();
+
+			if (strKey != null) {
+				mapLeases.put(strKey, new Lease(strWorkerId, strRequestId));
+
+				if (strRequestId != null)
+					mapLeaseRequests.put(strRequestId, strKey);
+
+				mapAttempts.merge(strKey, 1, Integer::sum);
+				jsonReply.addProperty("key", strKey);
+			} else if (mapLeases.isEmpty() && !listScenarios.isEmpty()) {
+				worker.blnToldDone = true;
+				jsonReply.addProperty("done", true);
+			} else {
+				jsonReply.addProperty("wait", true);
+			}
+
+			break;
+		case "result":
+			String strResultKey = jsonRequest.get("key").getAsString();
+			Lease lease = mapLeases.remove(strResultKey);
+
+			if (lease != null && lease.strRequestId != null)
+				mapLeaseRequests.remove(lease.strRequestId);
+
+			if (!mapResults.containsKey(strResultKey)) {
+				jsonRequest.remove("type");
+				jsonRequest.addProperty("attempts", mapAttempts.getOrDefault(strResultKey, 1));
+				mapResults.put(strResultKey, jsonRequest);
+				dequeQueue.remove(strResultKey);
+				worker.intScenarios++;
+				worker.lngBusyMillis += lease != null ? System.currentTimeMillis() - lease.lngStartMillis : 0;
+			}
+
+			break;
+		case "heartbeat":
+			break;
+		}
+
+		jsonReply.addProperty("ok", true);
+
+		return jsonReply;
+	}
+
+	/**
+	 * Requeues the scenarios of workers that stopped sending heartbeats. A scenario
+	 * that already used all its attempts fails instead.
+	 */
+	synchronized void reapDeadWorkers() {
+		long lngNowMillis = System.currentTimeMillis();
+
+		for (Map.Entry<String, Worker> entry : mapWorkers.entrySet()) {
+			Worker worker = entry.getValue();
+
+			// A worker told the queue is done holds no scenarios and may already have exited.
+			if (worker.blnDead || worker.blnToldDone
+					|| lngNowMillis - worker.lngLastSeenMillis < lngWorkerTimeoutMillis)
+				continue;
+
+			worker.blnDead = true;
+			System.out.println("[Work Queue] Worker lost: " + entry.getKey());
+
+			for (Map.Entry<String, Lease> leaseEntry : new ArrayList<>(mapLeases.entrySet())) {
+				if (!leaseEntry.getValue().strWorker.equals(entry.getKey()))
+					continue;
+
+				String strKey = leaseEntry.getKey();
+
+				mapLeases.remove(strKey);
+
+				if (leaseEntry.getValue().strRequestId != null)
+					mapLeaseRequests.remove(leaseEntry.getValue().strRequestId);
+
+				if (mapAttempts.getOrDefault(strKey, 0) < intMaxAttempts) {
+					dequeQueue.addFirst(strKey);
+					lngRequeued++;
+					System.out.println("[Work Queue] Requeued: " + strKey);
+				} else {
+					JsonObject jsonResult = new JsonObject();
+
+					jsonResult.addProperty("worker", entry.getKey());
+					jsonResult.addProperty("key", strKey);
+					jsonResult.addProperty("status", "FAILED");
+					jsonResult.addProperty("error", "Worker lost after " + intMaxAttempts + " attempts");
+					jsonResult.addProperty("attempts", mapAttempts.get(strKey));
+					mapResults.put(strKey, jsonResult);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Checks if every scenario has a result and every live worker was told so. The
+	 * coordinator keeps answering until requests stop for a few seconds, so the
+	 * other waiting slots of a worker are told too.
+	 */
+	private synchronized boolean isFinished() {
+		if (listScenarios.isEmpty() || mapResults.size() < listScenarios.size()
+				|| System.currentTimeMillis() - lngLastRequestMillis < 3000)
+			return false;
+
+		for (Worker worker : mapWorkers.values()) {
+			if (!worker.blnToldDone && !worker.blnDead)
+				return false;
+		}
+
+		return true;
+	}
+
+	// ==================================================|Outcome|==================================================
+	private synchronized int writeOutcome() throws Exception {
+		Map<String, Integer> mapStatusCounts = new TreeMap<>();
+		JsonObject jsonOutcome = new JsonObject();
+		JsonObject jsonWorkers = new JsonObject();
+		JsonArray jsonResults = new JsonArray();
+
+		for (String strKey : listScenarios) {
+			JsonObject jsonResult = mapResults.get(strKey);
+
+			mapStatusCounts.merge(jsonResult.get("status").getAsString(), 1, Integer::sum);
+			jsonResults.add(jsonResult);
+		}
+
+		for (Map.Entry<String, Worker> entry : mapWorkers.entrySet()) {
+			JsonObject jsonWorker = new JsonObject();
+
+			jsonWorker.addProperty("scenarios", entry.getValue().intScenarios);
+			jsonWorker.addProperty("busyMillis", entry.getValue().lngBusyMillis);
+			jsonWorker.addProperty("lost", entry.getValue().blnDead);
+			jsonWorkers.add(entry.getKey(), jsonWorker);
+		}
+
+		jsonOutcome.addProperty("scenarios", listScenarios.size());
+		jsonOutcome.addProperty("durationMillis", System.currentTimeMillis() - lngStartMillis);
+		jsonOutcome.addProperty("requeued", lngRequeued);
+		jsonOutcome.add("statusCounts", new GsonBuilder().create().toJsonTree(mapStatusCounts));
+		jsonOutcome.add("workers", jsonWorkers);
+		jsonOutcome.add("results", jsonResults);
+
+		if (fileOutcome.getParentFile() != null)
+			fileOutcome.getParentFile().mkdirs();
+
+		Files.write(fileOutcome.toPath(),
+				new GsonBuilder().setPrettyPrinting().create().toJson(jsonOutcome).getBytes(StandardCharsets.UTF_8));
+		System.out.println("[Work Queue] " + listScenarios.size() + " scenarios on " + mapWorkers.size() + " workers in "
+				+ (System.currentTimeMillis() - lngStartMillis) / 1000 + " s: " + mapStatusCounts + ", " + lngRequeued
+				+ " requeued (" + fileOutcome.getPath() + ")");
+
+		return mapStatusCounts.keySet().stream().allMatch(strStatus -> strStatus.equals("PASSED")) ? 0 : 1;
+	}
+}
\ No newline at end of file
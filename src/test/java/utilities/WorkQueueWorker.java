@@ -0,0 +1,294 @@
+package utilities;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+import org.testng.SkipException;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import io.cucumber.testng.FeatureWrapper;
+import io.cucumber.testng.Pickle;
+import io.cucumber.testng.PickleWrapper;
+
+/**
+ * Pulls scenarios from a WorkQueueCoordinator instead of running every scenario
+ * row of this JVM. With workQueueCoordinator set, the rows are registered with
+ * the coordinator by key (feature path relative to the working directory, line
+ * and row name) and replaced by one worker slot row per data provider thread.
+ * Each slot asks the coordinator for the next key, runs the matching local row
+ * and reports the result, until the queue is drained. A daemon thread sends a
+ * heartbeat every workQueueHeartbeatSeconds so the coordinator can requeue the
+ * scenarios of workers that died.
+ */
+public class WorkQueueWorker {
+	public static final class WorkerSlotPickleWrapper implements PickleWrapper {
+		private final int intSlot;
+		private final Map<String, Object[]> mapRows;
+
+		WorkerSlotPickleWrapper(int intSlot, Map<String, Object[]> mapRows) {
+			this.intSlot = intSlot;
+			this.mapRows = mapRows;
+		}
+
+		@Override
+		public Pickle getPickle() {
+			return ((PickleWrapper) mapRows.values().iterator().next()[0]).getPickle();
+		}
+
+		@Override
+		public String toString() {
+			return "\"Work queue slot " + (intSlot + 1) + "\"";
+		}
+	}
+
+	// ==================================================|Settings|==================================================
+	private static final String strCoordinator = Base.configurationVariables("workQueueCoordinator").trim();
+	private static final boolean blnEnabled = !strCoordinator.isEmpty();
+	private static final long lngHeartbeatMillis = Long
+			.parseLong(Base.configurationVariables("workQueueHeartbeatSeconds")) * 1000;
+	private static final String strWorkerId = ShardReportPlugin.getWorkerId();
+
+	// ==================================================|State|==================================================
+	private static final AtomicLong atomicScenarios = new AtomicLong();
+	private static final AtomicLong atomicFailed = new AtomicLong();
+
+	static {
+		RunSummary.register("Work Queue", WorkQueueWorker::getSummary);
+	}
+
+	// ==================================================|Expand|==================================================
+	public static boolean isEnabled() {
+		return blnEnabled;
+	}
+
+	/**
+	 * Registers the scenario rows with the coordinator and replaces them by one
+	 * worker slot row per parallel thread. Returns the rows unchanged when no
+	 * coordinator is set.
+	 *
+	 * @param iteratorScenarios - rows of [PickleWrapper, FeatureWrapper].
+	 * @param intSlots          - number of scenarios to run at once.
+	 * @return Returns an iterator over the worker slot rows.
+	 */
+	public static Iterator<Object[]> expand(Iterator<Object[]> iteratorScenarios, int intSlots) {
+		if (!blnEnabled)
+			return iteratorScenarios;
+
+		Map<String, Object[]> mapRows = new LinkedHashMap<>();
+		List<Object[]> listSlots = new ArrayList<>();
+		JsonArray jsonScenarios = new JsonArray();
+		JsonObject jsonRequest = new JsonObject();
+
+		while (iteratorScenarios.hasNext()) {
+			Object[] objScenario = iteratorScenarios.next();
+			String strKey = RunJournal.getScenarioKey((PickleWrapper) objScenario[0]);
+
+			for (int intDuplicate = 2; mapRows.containsKey(strKey); intDuplicate++)
+				strKey = RunJournal.getScenarioKey((PickleWrapper) objScenario[0]) + " #" + intDuplicate;
+
+			mapRows.put(strKey, objScenario);
+			jsonScenarios.add(strKey);
+		}
+
+		if (mapRows.isEmpty())
+			return listSlots.iterator();
+
+		jsonRequest.addProperty("type", "register");
+		jsonRequest.add("scenarios", jsonScenarios);
+
+		try {
+			send(jsonRequest);
+		} catch (IOException ioException) {
+			throw new IllegalStateException("Work queue coordinator " + strCoordinator + " is not reachable",
+					ioException);
+		}
+
+		startHeartbeat();
+
+		for (int intSlot = 0; intSlot < Math.max(1, intSlots); intSlot++)
+			listSlots.add(new Object[] { new WorkerSlotPickleWrapper(intSlot, mapRows),
+					mapRows.values().iterator().next()[1] });
+
+		return listSlots.iterator();
+	}
+
+	// ==================================================|Run|==================================================
+	/**
+	 * Runs scenarios pulled from the coordinator on the current thread until the
+	 * queue is drained. Every result is reported to the coordinator; the slot fails
+	 * at the end if any of its scenarios failed.
+	 *
+	 * @param workerSlotPickleWrapper - worker slot row.
+	 * @param scenarioRunner          - runs one scenario row on the current thread
+	 *                                and throws if it fails.
+	 */
+	public static void runSlot(WorkerSlotPickleWrapper workerSlotPickleWrapper,
+			BiConsumer<PickleWrapper, FeatureWrapper> scenarioRunner) {
+		List<String> listFailed = new ArrayList<>();
+
+		while (true) {
+			JsonObject jsonRequest = new JsonObject();
+			JsonObject jsonReply;
+
+			jsonRequest.addProperty("type", "next");
+			// Kept across send retries, so a lost reply does not lease a second scenario.
+			jsonRequest.addProperty("requestId", UUID.randomUUID().toString());
+
+			try {
+				jsonReply = send(jsonRequest);
+			} catch (IOException ioException) {
+				System.out.println("[Work Queue] Coordinator " + strCoordinator + " is gone, " + workerSlotPickleWrapper
+						+ " stops: " + ioException.getMessage());
+				break;
+			}
+
+			if (jsonReply.has("done"))
+				break;
+
+			if (!jsonReply.has("key")) {
+				sleep(1000);
+				continue;
+			}
+
+			String strKey = jsonReply.get("key").getAsString();
+			Object[] objScenario = workerSlotPickleWrapper.mapRows.get(strKey);
+			JsonObject jsonResult = new JsonObject();
+			long lngStartMillis = System.currentTimeMillis();
+
+			jsonResult.addProperty("type", "result");
+			jsonResult.addProperty("key", strKey);
+
+			try {
+				if (objScenario == null)
+					throw new IllegalStateException("Scenario not found on " + strWorkerId);
+
+				scenarioRunner.accept((PickleWrapper) objScenario[0], (FeatureWrapper) objScenario[1]);
+				jsonResult.addProperty("status", "PASSED");
+			} catch (SkipException skipException) {
+				jsonResult.addProperty("status", "SKIPPED");
+			} catch (Throwable throwable) {
+				jsonResult.addProperty("status", "FAILED");
+				jsonResult.addProperty("error", String.valueOf(throwable.getMessage()).split("\n")[0]);
+				listFailed.add(strKey);
+				atomicFailed.incrementAndGet();
+			}
+
+			atomicScenarios.incrementAndGet();
+			jsonResult.addProperty("durationMillis", System.currentTimeMillis() - lngStartMillis);
+
+			try {
+				send(jsonResult);
+			} catch (IOException ioException) {
+				System.out.println("[Work Queue] Result of " + strKey + " not delivered: " + ioException.getMessage());
+			}
+		}
+
+		if (!listFailed.isEmpty())
+			throw new AssertionError(workerSlotPickleWrapper + " failed " + listFailed.size() + " scenarios: "
+					+ String.join(", ", listFailed));
+	}
+
+	// ==================================================|Coordinator|==================================================
+	private static void startHeartbeat() {
+		JsonObject jsonHeartbeat = new JsonObject();
+
+		jsonHeartbeat.addProperty("type", "heartbeat");
+
+		Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "work-queue-heartbeat");
+
+			thread.setDaemon(true);
+
+			return thread;
+		}).scheduleWithFixedDelay(() -> {
+			try {
+				send(jsonHeartbeat);
+			} catch (IOException ioException) {
+				// The coordinator finished or is restarting; the next heartbeat tries again.
+			}
+		}, lngHeartbeatMillis, lngHeartbeatMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Sends one request to the coordinator, retrying three times a second apart.
+	 * Retries are safe: results are kept once per scenario, and next requests carry
+	 * a request id the coordinator answers with the same lease.
+	 *
+	 * @param jsonRequest - request without the worker id.
+	 * @return Returns the reply.
+	 */
+	private static JsonObject send(JsonObject jsonRequest) throws IOException {
+		String strLine;
+		IOException ioExceptionLast = null;
+
+		synchronized (jsonRequest) {
+			jsonRequest.addProperty("worker", strWorkerId);
+			strLine = jsonRequest.toString();
+		}
+
+		for (int intAttempt = 0; intAttempt < 3; intAttempt++) {
+			if (intAttempt > 0)
+				sleep(1000);
+
+			int intSeparator = strCoordinator.lastIndexOf(':');
+
+			try (Socket socket = new Socket()) {
+				socket.connect(new InetSocketAddress(strCoordinator.substring(0, intSeparator),
+						Integer.parseInt(strCoordinator.substring(intSeparator + 1))), 10000);
+				socket.setSoTimeout(30000);
+
+				OutputStream outputStream = socket.getOutputStream();
+
+				outputStream.write((strLine + "\n").getBytes(StandardCharsets.UTF_8));
+				outputStream.flush();
+
+				String strReply = new BufferedReader(
+						new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8)).readLine();
+
+				if (strReply == null)
+					throw new IOException("No reply from " + strCoordinator);
+
+				return JsonParser.parseString(strReply).getAsJsonObject();
+			} catch (IOException ioException) {
+				ioExceptionLast = ioException;
+			}
+		}
+
+		throw ioExceptionLast;
+	}
+
+	private static void sleep(long lngMillis) {
+		try {
+			Thread.sleep(lngMillis);
+		} catch (InterruptedException interruptedException) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	// ==================================================|Report|==================================================
+	public static String getSummary() {
+		if (atomicScenarios.get() == 0)
+			return null;
+
+		return atomicScenarios.get() + " scenarios pulled from " + strCoordinator + " by " + strWorkerId + ", "
+				+ atomicFailed.get() + " failed";
+	}
+}
\ No newline at end of file
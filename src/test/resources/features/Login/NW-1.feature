@@ -1,14 +1,15 @@
 @Regression
 Feature: NW-1: Login-Logout
 
+  @DataSource:src/test/resources/testData/logins.csv
   Scenario Outline: 1: Successful Login
     Given the user is on the login page
     When the user logs in with the credentials <username> and <password>
     Then the user <user> will be logged in successfully
 
     Examples: 
-      | username  | password  | user           |
-      | northwind | enterlang | Northwind User |
+      | username   | password   | user   |
+      | <username> | <password> | <user> |
 
   Scenario: 2: Logout
     Given the user is logged in
@@ -23,3 +24,8 @@ Feature: NW-1: Login-Logout
     Examples: 
       | username  | password      |
       | northwind | wrongPassword |
+
+  @Performance
+  Scenario: 4: Login Page Performance
+    Given the user is on the login page
+    Then the login page loads within 2000 ms
\ No newline at end of file